@@ -0,0 +1,127 @@
+package org.example.marksmanfx.bench;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ServerMessageType;
+import org.example.marksmanfx.common.protocol.WireCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Лёгкий клиент нагрузочного теста: одно неблокирующее соединение без декодирования сообщений.
+ * Из входящего потока разбираются только заголовки кадров, чтобы считать снимки состояния,
+ * поэтому тысячи таких клиентов обслуживает один поток с общим буфером чтения.
+ */
+final class BenchClient {
+
+    private static final int GAME_STATE_TAG  = ServerMessageType.GAME_STATE.tag();
+    /** Подтверждений клиент не шлёт, поэтому сервер присылает ему ключевые кадры. */
+    private static final int GAME_DELTA_TAG  = ServerMessageType.GAME_STATE_DELTA.tag();
+    private static final int ROOM_JOINED_TAG = ServerMessageType.ROOM_JOINED.tag();
+
+    private final SocketChannel     channel;
+    private final WireCodec         codec;
+    private final SelectionKey      key;
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+
+    private final byte[] header = new byte[Frames.HEADER_SIZE];
+    private int          headerFill;
+    private int          bodyRemaining;
+
+    private boolean registered;
+    private boolean inRoom;
+    private boolean closed;
+    private long    snapshots;
+
+    BenchClient(SocketChannel channel, WireCodec codec, Selector selector) throws IOException {
+        this.channel = channel;
+        this.codec   = codec;
+        channel.configureBlocking(false);
+        this.key = channel.register(selector, SelectionKey.OP_READ, this);
+
+        ByteArrayOutputStream preamble = new ByteArrayOutputStream(Frames.PREAMBLE_SIZE);
+        Frames.writePreamble(preamble, codec);
+        enqueue(ByteBuffer.wrap(preamble.toByteArray()));
+    }
+
+    void send(ClientEvent event) {
+        enqueue(ByteBuffer.wrap(Frames.encode(codec, event)));
+    }
+
+    private void enqueue(ByteBuffer buf) {
+        if (closed) return;
+        outbound.add(buf);
+        flush();
+    }
+
+    void flush() {
+        try {
+            ByteBuffer buf;
+            while ((buf = outbound.peek()) != null) {
+                channel.write(buf);
+                if (buf.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbound.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /** Читаем всё доступное через общий буфер и считаем кадры по их заголовкам. */
+    void onReadable(ByteBuffer shared) {
+        try {
+            int n;
+            while ((n = channel.read(shared.clear())) > 0) {
+                shared.flip();
+                consume(shared);
+            }
+            if (n < 0) close();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void consume(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            if (bodyRemaining > 0) {
+                int skip = Math.min(bodyRemaining, buf.remaining());
+                buf.position(buf.position() + skip);
+                bodyRemaining -= skip;
+                continue;
+            }
+            header[headerFill++] = buf.get();
+            if (headerFill == Frames.HEADER_SIZE) {
+                headerFill    = 0;
+                bodyRemaining = ByteBuffer.wrap(header, 2, 4).getInt();
+                registered    = true;
+                int tag = header[0] & 0xFF;
+                if (tag == GAME_STATE_TAG || tag == GAME_DELTA_TAG) snapshots++;
+                if (tag == ROOM_JOINED_TAG) inRoom = true;
+            }
+        }
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        key.cancel();
+        try { channel.close(); } catch (IOException ignored) {}
+    }
+
+    /** @return {@code true}, если сервер принял вход и прислал хотя бы один кадр */
+    boolean isRegistered() { return registered && !closed; }
+    boolean isInRoom()     { return inRoom; }
+    boolean isClosed()     { return closed; }
+    long    snapshots()    { return snapshots; }
+}
@@ -0,0 +1,295 @@
+package org.example.marksmanfx.bench;
+
+import org.example.marksmanfx.common.event.HeartbeatEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
+import org.example.marksmanfx.common.event.JoinLobbyEvent;
+import org.example.marksmanfx.common.event.PlayerReadyEvent;
+import org.example.marksmanfx.common.event.QuickMatchEvent;
+import org.example.marksmanfx.common.protocol.Capabilities;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.common.protocol.WireCodecs;
+import org.example.marksmanfx.server.game.GameLoopEngine;
+import org.example.marksmanfx.server.lobby.LobbyManager;
+import org.example.marksmanfx.server.network.NetworkServer;
+import org.example.marksmanfx.server.network.TransportMode;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Сколько соединений держит один процесс сервера в каждом транспортном режиме.
+ *
+ * <p>Для каждого режима сервер поднимается в этом же процессе, после чего открываются
+ * {@code idle} соединений, которые только входят в лобби, и {@code active} игроков,
+ * которые через быстрый матч рассаживаются по комнатам, начинают игру и двигаются.
+ * Клиентская сторона — один поток с селектором, поэтому прирост потоков ОС и памяти
+ * почти целиком приходится на сервер.</p>
+ *
+ * <p>Использование:
+ * {@code java -jar bench/target/bench-1.0-SNAPSHOT-fat.jar [--transport=blocking|virtual|nio|all]
+ * [--idle=N] [--active=M] [--seconds=S] [--io-threads=K] [--port=P]}.
+ * Для больших N может понадобиться поднять лимит открытых файлов ({@code ulimit -n}).</p>
+ */
+public final class ConnectionCapacityBenchmark {
+
+    /** Ниже диапазона эфемерных портов: тысячи клиентских сокетов не займут порт следующего режима. */
+    private static final int  DEFAULT_PORT     = 25555;
+    private static final long SETTLE_TIMEOUT   = 60_000;
+    private static final long POLL_MILLIS      = 50;
+    private static final long MOVE_TOGGLE_MS   = 250;
+    /** Как у настоящего клиента: иначе сервер отключит простаивающие соединения как молчащие. */
+    private static final long HEARTBEAT_MS     = 5_000;
+    private static final int  READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Стенд говорит только по TCP и шлёт сигналы активности: UDP-токен и замеры задержки ему не нужны.
+     * Без возобновления сервер освобождает соединения стенда сразу, а не после ожидания возврата.
+     */
+    private static final int  BENCH_CAPABILITIES = Capabilities.ALL & ~Capabilities.DATAGRAMS & ~Capabilities.CLOCK_SYNC
+            & ~Capabilities.RESUME;
+
+    private final int idle;
+    private final int active;
+    private final int seconds;
+    private final int ioThreads;
+
+    private ConnectionCapacityBenchmark(int idle, int active, int seconds, int ioThreads) {
+        this.idle      = idle;
+        this.active    = active;
+        this.seconds   = seconds;
+        this.ioThreads = ioThreads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Журнал сервера о каждом подключении исказил бы замеры.
+        Logger.getLogger("").setLevel(Level.WARNING);
+
+        String transport = "all";
+        int    idle      = 1_000;
+        int    active    = 100;
+        int    seconds   = 5;
+        int    ioThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        int    port      = DEFAULT_PORT;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if      (arg.startsWith("--transport="))  transport = value;
+            else if (arg.startsWith("--idle="))       idle      = Integer.parseInt(value);
+            else if (arg.startsWith("--active="))     active    = Integer.parseInt(value);
+            else if (arg.startsWith("--seconds="))    seconds   = Integer.parseInt(value);
+            else if (arg.startsWith("--io-threads=")) ioThreads = Integer.parseInt(value);
+            else if (arg.startsWith("--port="))       port      = Integer.parseInt(value);
+            else throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+        }
+
+        List<TransportMode> modes = new ArrayList<>();
+        if (transport.equalsIgnoreCase("all")) {
+            modes.addAll(List.of(TransportMode.values()));
+        } else {
+            TransportMode mode = TransportMode.byName(transport);
+            if (mode == null) throw new IllegalArgumentException("Неизвестный транспорт: " + transport);
+            modes.add(mode);
+        }
+
+        ConnectionCapacityBenchmark bench = new ConnectionCapacityBenchmark(idle, active, seconds, ioThreads);
+        System.out.printf("idle=%d active=%d seconds=%d io-threads=%d codec=%s%n",
+                idle, active, seconds, ioThreads, WireCodecs.configured().name());
+        System.out.printf("%-9s %12s %12s %10s %10s %12s %12s%n",
+                "mode", "connected", "os-threads", "heap-MiB", "settle-s", "snapshots/s", "per-player");
+        for (TransportMode mode : modes) {
+            // Каждый режим на своём порту: закрытый порт предыдущего прогона может быть ещё в TIME_WAIT.
+            bench.run(mode, port++).print();
+        }
+    }
+
+    private Result run(TransportMode mode, int port) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int  threadsBefore = threads.getThreadCount();
+        long heapBefore    = usedHeap();
+
+        // Свой игровой цикл на каждый прогон, чтобы его потоки ушли вместе с сервером.
+        GameLoopEngine gameLoop = GameLoopEngine.start(Runtime.getRuntime().availableProcessors());
+        NetworkServer  server   = mode.create(port, ioThreads, new LobbyManager(gameLoop));
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.err.println("[Бенчмарк] Сервер " + mode + " не запустился: " + e.getMessage());
+            }
+        }, "bench-server-" + mode);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        awaitListening(port);
+
+        WireCodec codec = WireCodecs.configured();
+        List<BenchClient> idleClients   = new ArrayList<>(idle);
+        List<BenchClient> activeClients = new ArrayList<>(active);
+        try (Selector selector = Selector.open()) {
+            ByteBuffer shared = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            InetSocketAddress address = new InetSocketAddress("localhost", port);
+
+            for (int i = 0; i < idle; i++) {
+                BenchClient c = connect(address, codec, selector);
+                if (c == null) break;
+                c.send(new JoinLobbyEvent("idle-" + i, Capabilities.VERSION, BENCH_CAPABILITIES, 0));
+                idleClients.add(c);
+                if (i % 256 == 0) pump(selector, shared, 0);
+            }
+            for (int i = 0; i < active; i++) {
+                BenchClient c = connect(address, codec, selector);
+                if (c == null) break;
+                c.send(new JoinLobbyEvent("active-" + i, Capabilities.VERSION, BENCH_CAPABILITIES, 0));
+                c.send(new QuickMatchEvent());
+                activeClients.add(c);
+                pump(selector, shared, 0);
+            }
+
+            // Готовность отправляем после того, как быстрый матч заполнил комнаты,
+            // а замер начинаем, когда снимки дошли до каждого игрока.
+            long settleStart = System.nanoTime();
+            awaitAll(selector, shared, activeClients, BenchClient::isInRoom);
+            for (BenchClient c : activeClients) c.send(new PlayerReadyEvent(true));
+            awaitAll(selector, shared, activeClients, c -> c.snapshots() > 0);
+            double settle = (System.nanoTime() - settleStart) / 1e9;
+
+            long snapshotsStart = totalSnapshots(activeClients);
+            long start = System.nanoTime();
+            long end   = start + seconds * 1_000_000_000L;
+            boolean right = false;
+            int     seq   = 0;
+            long    nextHeartbeat = start;
+            HeartbeatEvent ping = new HeartbeatEvent();
+            while (System.nanoTime() < end) {
+                if (System.nanoTime() >= nextHeartbeat) {
+                    for (BenchClient c : idleClients)   c.send(ping);
+                    for (BenchClient c : activeClients) c.send(ping);
+                    nextHeartbeat += HEARTBEAT_MS * 1_000_000L;
+                }
+                InputFrameEvent frame = new InputFrameEvent(++seq,
+                        right ? InputFrameEvent.MOVE_RIGHT : InputFrameEvent.MOVE_LEFT);
+                for (BenchClient c : activeClients) c.send(frame);
+                right = !right;
+                pump(selector, shared, MOVE_TOGGLE_MS);
+            }
+            double elapsed   = (System.nanoTime() - start) / 1e9;
+            long   snapshots = totalSnapshots(activeClients) - snapshotsStart;
+
+            int connected = 0;
+            for (BenchClient c : idleClients)   if (c.isRegistered()) connected++;
+            for (BenchClient c : activeClients) if (c.isRegistered()) connected++;
+
+            Result result = new Result(mode, connected, idle + active,
+                    threads.getThreadCount() - threadsBefore,
+                    usedHeap() - heapBefore,
+                    settle,
+                    snapshots / elapsed,
+                    activeClients.isEmpty() ? 0 : snapshots / elapsed / activeClients.size());
+
+            for (BenchClient c : idleClients)   c.close();
+            for (BenchClient c : activeClients) c.close();
+            return result;
+        } finally {
+            server.stop();
+            gameLoop.stop();
+            acceptor.join(1_000);
+            awaitThreadsGone(threads, threadsBefore);
+        }
+    }
+
+    /** Обслуживаем соединения, пока условие не выполнится для всех живых клиентов или не истечёт таймаут. */
+    private static void awaitAll(Selector selector, ByteBuffer shared, List<BenchClient> clients,
+                                 Predicate<BenchClient> condition) throws IOException {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            boolean done = true;
+            for (BenchClient c : clients) {
+                if (!c.isClosed() && !condition.test(c)) { done = false; break; }
+            }
+            if (done) return;
+            pump(selector, shared, POLL_MILLIS);
+        }
+        System.err.println("[Бенчмарк] Не все клиенты дошли до нужного состояния за " + SETTLE_TIMEOUT + " мс");
+    }
+
+    /** Ждём завершения потоков остановленного сервера, чтобы они не попали в замер следующего режима. */
+    private static void awaitThreadsGone(ThreadMXBean threads, int baseline) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (threads.getThreadCount() > baseline && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    private static BenchClient connect(InetSocketAddress address, WireCodec codec, Selector selector) {
+        try {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            return new BenchClient(channel, codec, selector);
+        } catch (IOException e) {
+            System.err.println("[Бенчмарк] Подключение не удалось: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Обслуживаем чтение и отложенную запись всех клиентов в течение {@code millis}. */
+    private static void pump(Selector selector, ByteBuffer shared, long millis) throws IOException {
+        long deadline = System.currentTimeMillis() + millis;
+        do {
+            long left = deadline - System.currentTimeMillis();
+            if (left > 0) selector.select(left); else selector.selectNow();
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                BenchClient c = (BenchClient) key.attachment();
+                if (key.isValid() && key.isReadable()) c.onReadable(shared);
+                if (key.isValid() && key.isWritable()) c.flush();
+            }
+        } while (System.currentTimeMillis() < deadline);
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Сервер не начал слушать порт " + port);
+    }
+
+    private static long totalSnapshots(List<BenchClient> clients) {
+        long total = 0;
+        for (BenchClient c : clients) total += c.snapshots();
+        return total;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        Thread.sleep(100);
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private record Result(TransportMode mode, int connected, int requested, int threadDelta,
+                          long heapDelta, double settleSeconds, double snapshotsPerSecond, double perPlayer) {
+        void print() {
+            System.out.printf("%-9s %12s %12d %10.1f %10.2f %12.0f %12.1f%n",
+                    mode, connected + "/" + requested, threadDelta,
+                    heapDelta / (1024.0 * 1024.0), settleSeconds, snapshotsPerSecond, perPlayer);
+        }
+    }
+}
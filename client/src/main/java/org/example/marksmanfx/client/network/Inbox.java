@@ -0,0 +1,72 @@
+package org.example.marksmanfx.client.network;
+
+import org.example.marksmanfx.common.concurrent.MpscRing;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.ServerMessage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Входящие сообщения, ждущие потока JavaFX.
+ *
+ * <p>Потоки чтения TCP и UDP кладут сюда сообщения без блокировок, поток JavaFX забирает
+ * накопившееся разом ({@link #drain}). Снимки не копятся: непрочитанный снимок заменяется более
+ * новым, и после подвисания интерфейса рисуется сразу последний, а не очередь устаревших.
+ * Пропущенные снимки не подтверждаются, поэтому база следующей дельты у клиента остаётся.
+ * Остальные сообщения идут строго по порядку.</p>
+ */
+final class Inbox {
+
+    /** Сообщений лобби и комнаты за один кадр бывает единицы; очередь не заполняется, пока интерфейс жив. */
+    private static final int  CAPACITY   = 1_024;
+    private static final long FULL_PAUSE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MpscRing<ServerMessage>        control  = new MpscRing<>(CAPACITY);
+    private final AtomicReference<ServerMessage> snapshot = new AtomicReference<>();
+
+    /**
+     * Кладём сообщение. Если очередь полна, поток чтения ждёт, пока интерфейс её разберёт:
+     * так сервер упирается в окно TCP, а не теряются сообщения.
+     */
+    void offer(ServerMessage msg) {
+        if (isSnapshot(msg)) {
+            snapshot.accumulateAndGet(msg, Inbox::newer);
+            return;
+        }
+        while (!control.offer(msg)) {
+            if (Thread.currentThread().isInterrupted()) return;
+            LockSupport.parkNanos(this, FULL_PAUSE);
+        }
+    }
+
+    /** Передаём всё накопившееся: сообщения по порядку, затем последний снимок. Только поток JavaFX. */
+    void drain(Consumer<ServerMessage> sink) {
+        control.drain(sink, CAPACITY);
+        ServerMessage s = snapshot.getAndSet(null);
+        if (s != null) sink.accept(s);
+    }
+
+    boolean isEmpty() {
+        return control.isEmpty() && snapshot.get() == null;
+    }
+
+    private static boolean isSnapshot(ServerMessage msg) {
+        return msg instanceof GameStateMessage || msg instanceof GameStateDeltaMessage;
+    }
+
+    /**
+     * По UDP снимки приходят не по порядку: опоздавшая дельта не вытесняет более свежую.
+     * Ключевой кадр вытесняет всё — после смены комнаты счёт тиков начинается заново.
+     */
+    private static ServerMessage newer(ServerMessage current, ServerMessage next) {
+        if (current instanceof GameStateDeltaMessage c && next instanceof GameStateDeltaMessage n
+                && !n.isKeyframe() && n.tick() < c.tick()) {
+            return current;
+        }
+        return next;
+    }
+}
@@ -9,5 +9,13 @@ public interface MessageListener {
 
     /** Вызывается в потоке JavaFX Application Thread при разрыве соединения. */
     void onDisconnected();
+
+    /**
+     * {@code true}, если слушатель сам забирает сообщения раз в кадр через
+     * {@link ServerConnection#drainInbox()}; тогда соединение не ставит задачи в очередь JavaFX.
+     */
+    default boolean drainsOnPulse() {
+        return false;
+    }
 }
 
@@ -1,96 +1,493 @@
 package org.example.marksmanfx.client.network;
 
 import javafx.application.Platform;
+import org.example.marksmanfx.common.concurrent.MpscRing;
 import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.event.HeartbeatEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
+import org.example.marksmanfx.common.event.JoinLobbyEvent;
+import org.example.marksmanfx.common.event.PingEvent;
+import org.example.marksmanfx.common.event.PongEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
+import org.example.marksmanfx.common.message.ConnectedMessage;
+import org.example.marksmanfx.common.message.ErrorMessage;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.HeartbeatMessage;
+import org.example.marksmanfx.common.message.PingMessage;
+import org.example.marksmanfx.common.message.PongMessage;
 import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.protocol.Capabilities;
+import org.example.marksmanfx.common.protocol.ClockSync;
+import org.example.marksmanfx.common.protocol.Frame;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.common.protocol.WireCodecs;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
  * Управляем постоянным TCP-соединением с игровым сервером.
  *
  * Фоновый поток-демон читает входящие {@link ServerMessage} и
- * передаёт их активному {@link MessageListener} в потоке JavaFX.
- * Исходящие {@link ClientEvent} отправляются синхронно из потока вызывающей стороны.
+ * передаёт их активному {@link MessageListener} в потоке JavaFX через {@link Inbox}:
+ * слушатель с игровым циклом ({@link MessageListener#drainsOnPulse()}) сам забирает их раз в кадр
+ * вызовом {@link #drainInbox()}, для остальных в очереди JavaFX стоит не больше одной задачи разбора.
+ * Исходящие {@link ClientEvent} пишет в сокет отдельный поток: вызывающая сторона (обычно поток
+ * JavaFX) только ставит событие в очередь без блокировок ({@link MpscRing}) и никогда не ждёт сети.
+ * Кадры ввода и подтверждения снимков не копятся: ещё не отправленный заменяется более новым.
+ * Всё накопившееся поток записи отправляет одним сбросом буфера.
+ * Кодек задаётся системным свойством {@code marksman.codec}, см. {@link WireCodecs}.
+ *
+ * Если сервер выдал UDP-токен, рядом поднимается {@link UdpChannel}: после его подтверждения
+ * снимки приходят датаграммами, а кадры ввода и подтверждения снимков уходят ими же.
+ * {@code -Dmarksman.udp=false} оставляет только TCP, {@code -Dmarksman.compress=false} отказывается
+ * от сжатия крупных сообщений сервера.
+ *
+ * Раз в {@link #HEARTBEAT_INTERVAL_MS} мс по TCP уходит {@link HeartbeatEvent}, а сервер отвечает
+ * {@link HeartbeatMessage}. Если по TCP дольше {@link #READ_TIMEOUT_MS} мс не пришло ни одного кадра,
+ * соединение считается потерянным, даже когда ОС этого ещё не заметила (например, после сна ноутбука).
+ *
+ * Если сервер согласовал {@link Capabilities#CLOCK_SYNC}, вместо сигналов раз в {@link #PING_INTERVAL_MS} мс
+ * уходит {@link PingEvent}, а по ответам {@link PongMessage} ведётся {@link #clock()}: задержка, джиттер
+ * и смещение часов сервера. На {@link PingMessage} сервера клиент сразу отвечает {@link PongEvent}.
+ *
+ * Если сервер выдал токен возобновления ({@link Capabilities#RESUME}), обрыв соединения слушателю не виден:
+ * поток чтения {@link #RESUME_WINDOW_MS} мс переподключается и входит с этим токеном, сервер возвращает
+ * игрока в его комнату и слот и присылает ключевой кадр. События, поставленные в очередь за это время,
+ * уходят в новое соединение; те, что успели уйти в оборванное, могут пропасть.
+ * Только если вернуться не вышло, слушатель получает {@link MessageListener#onDisconnected()}.
  */
 public final class ServerConnection {
 
-    private static final Logger LOG = Logger.getLogger(ServerConnection.class.getName());
+    private static final Logger  LOG         = Logger.getLogger(ServerConnection.class.getName());
+    private static final boolean UDP_ENABLED = Boolean.parseBoolean(System.getProperty("marksman.udp", "true"));
+    private static final boolean COMPRESS    = Boolean.parseBoolean(System.getProperty("marksman.compress", "true"));
+    /** Интервал сигналов «на связи»; в три раза меньше тайм-аута простоя сервера по умолчанию. */
+    private static final long    HEARTBEAT_INTERVAL_MS = 5_000;
+    private static final int     READ_TIMEOUT_MS       = 15_000;
+    /** Интервал замеров задержки; ответ на замер заодно держит соединение живым. */
+    private static final long    PING_INTERVAL_MS      = 1_000;
+    /** Очередь событий переполняется, только если сервер не читает их много секунд. */
+    private static final int     OUTBOX_CAPACITY       = 1_024;
+    /** Сколько пытаться вернуться в сессию; по умолчанию столько же сервер держит место игрока. */
+    private static final long    RESUME_WINDOW_MS      = Long.getLong("marksman.resume.graceMillis", 10_000);
+    private static final long    RESUME_RETRY_MS       = 250;
+    private static final int     CONNECT_TIMEOUT_MS    = 5_000;
 
-    private Socket             socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream  in;
-    private Thread             readerThread;
+    private volatile Socket socket;
+    private WireCodec       codec;
+    private OutputStream    out;
+    private DataInputStream in;
+    private Thread          readerThread;
+    private volatile Thread writerThread;
+    private ScheduledExecutorService heartbeat;
+    private String          host;
+    private int             port;
+    /** С чем входили: при возобновлении вход повторяется с токеном. */
+    private String          nickname;
+    private int             offered;
+    private volatile long   resumeToken;
+    private volatile UdpChannel      udp;
     private volatile MessageListener listener;
+    /** Номер кадра ввода растёт всю сессию, и после возобновления тоже: по нему сервер отбрасывает устаревшие кадры. */
+    private final AtomicInteger      inputSeq = new AtomicInteger();
+    /** Задержка и смещение часов сервера; замеры записывает только поток чтения. */
+    private final ClockSync          clock    = new ClockSync();
+    private volatile boolean         clockSync;
+    private volatile long            pendingPingNanos;
+
+    private final MpscRing<ClientEvent>             outbox       = new MpscRing<>(OUTBOX_CAPACITY);
+    /** Последние кадр ввода и подтверждение снимка для TCP; более новые заменяют неотправленные. */
+    private final AtomicReference<InputFrameEvent>  pendingInput = new AtomicReference<>();
+    private final AtomicReference<SnapshotAckEvent> pendingAck   = new AtomicReference<>();
+    private volatile boolean                        closed;
+
+    private final Inbox         inbox       = new Inbox();
+    /** В очереди JavaFX уже стоит задача разбора входящих. */
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
 
     /** @throws IOException если не удалось установить TCP-соединение. */
     public void connect(String host, int port) throws IOException {
-        socket = new Socket(host, port);
-        socket.setTcpNoDelay(true);
-
-        // Сначала создаём ObjectOutputStream, чтобы избежать взаимной блокировки.
-        out = new ObjectOutputStream(socket.getOutputStream());
-        out.flush();
-        in  = new ObjectInputStream(socket.getInputStream());
+        this.host = host;
+        this.port = port;
+        codec = WireCodecs.configured();
+        open();
+        startWriter();
 
         readerThread = new Thread(this::readLoop, "marksman-client-reader");
         readerThread.setDaemon(true);
         readerThread.start();
 
-        LOG.info("[Клиент] Подключение к " + host + ":" + port + " установлено");
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "marksman-client-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        HeartbeatEvent ping = new HeartbeatEvent();
+        heartbeat.scheduleAtFixedRate(() -> { if (!clockSync) sendTcp(ping); },
+                HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        LOG.info("[Клиент] Подключение к " + host + ":" + port + " установлено (кодек=" + codec.name() + ")");
+    }
+
+    /** Открываем сокет и пишем преамбулу; поля соединения меняет только поток чтения или {@link #connect}. */
+    private void open() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(READ_TIMEOUT_MS);
+            out = new BufferedOutputStream(s.getOutputStream());
+            Frames.writePreamble(out, codec);
+            in  = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        } catch (IOException e) {
+            closeQuietly(s);
+            throw e;
+        }
+        socket = s;
+    }
+
+    private void startWriter() {
+        Socket       s = socket;
+        OutputStream o = out;
+        writerThread = new Thread(() -> writeLoop(s, o), "marksman-client-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
     }
 
     public void disconnect() {
+        closed = true;
+        if (writerThread != null) LockSupport.unpark(writerThread);
+        if (heartbeat != null) heartbeat.shutdownNow();
+        UdpChannel u = udp;
+        if (u != null) u.close();
         try {
             if (socket != null) socket.close();
         } catch (IOException ignored) {}
     }
 
-    /** Потокобезопасная отправка. Можно вызывать из любого потока. */
+    /** Регистрируемся под никнеймом и предлагаем серверу все возможности клиента ({@link Capabilities}). */
+    public void join(String nickname) {
+        int offered = Capabilities.ALL;
+        if (!UDP_ENABLED) offered &= ~Capabilities.DATAGRAMS;
+        if (!COMPRESS)    offered &= ~Capabilities.COMPRESSION;
+        this.nickname = nickname;
+        this.offered  = offered;
+        sendTcp(new JoinLobbyEvent(nickname, Capabilities.VERSION, offered, 0));
+    }
+
+    /** Потокобезопасная отправка без ожидания сокета. Можно вызывать из любого потока. */
     public void send(ClientEvent event) {
-        if (out == null) return;
+        if (event instanceof SnapshotAckEvent ack) {
+            UdpChannel u = udp;
+            if (u != null && u.isReady()) {
+                u.sendAck(ack);
+            } else {
+                pendingAck.set(ack);
+                wakeWriter();
+            }
+            return;
+        }
+        sendTcp(event);
+    }
+
+    /** Отправляем очередной кадр ввода с битами {@link InputFrameEvent}; номер кадра назначаем здесь. */
+    public void sendInput(int buttons) {
+        InputFrameEvent frame = new InputFrameEvent(inputSeq.incrementAndGet(), buttons);
+        UdpChannel u = udp;
+        if (u != null && u.isReady()) {
+            u.sendInput(frame);
+        } else {
+            pendingInput.set(frame);
+            wakeWriter();
+        }
+    }
+
+    /** Задержка, джиттер и смещение часов сервера; без {@link Capabilities#CLOCK_SYNC} замеров нет. */
+    public ClockSync clock() {
+        return clock;
+    }
+
+    /** Отметку времени замера ставит поток записи, см. {@link #write}. */
+    private void sendPing() {
+        sendTcp(new PingEvent(0));
+    }
+
+    private void sendTcp(ClientEvent event) {
+        if (writerThread == null || closed) return;
+        if (!outbox.offer(event)) {
+            LOG.warning("[Клиент] Очередь отправки переполнена (" + outbox.capacity()
+                    + " событий): сервер не читает, соединение закрыто");
+            disconnect();
+            return;
+        }
+        wakeWriter();
+    }
+
+    private void wakeWriter() {
+        if (writerThread != null) LockSupport.unpark(writerThread);
+    }
+
+    // ─── Поток записи ─────────────────────────────────────────────────────────
+
+    /** Поток записи живёт одно соединение: при возобновлении поток чтения запускает новый. */
+    private void writeLoop(Socket s, OutputStream out) {
         try {
-            synchronized (out) {
-                out.writeObject(event);
-                out.flush();
-                out.reset();
+            while (!closed && !s.isClosed()) {
+                if (!flushPending(out)) LockSupport.park(this);
             }
         } catch (IOException e) {
-            LOG.warning("[Клиент] Не удалось отправить сообщение: " + e.getMessage());
+            if (!closed) LOG.warning("[Клиент] Не удалось отправить сообщение: " + e.getMessage());
+            // Поток чтения увидит закрытый сокет и либо вернётся в сессию, либо сообщит слушателю об отключении.
+            closeQuietly(s);
+        }
+    }
+
+    /**
+     * Пишем всё накопившееся и сбрасываем буфер один раз: сначала свежий кадр ввода, затем
+     * события по порядку постановки, последним — подтверждение снимка.
+     *
+     * @return {@code false}, если писать было нечего
+     */
+    private boolean flushPending(OutputStream out) throws IOException {
+        boolean wrote = false;
+        InputFrameEvent input = pendingInput.getAndSet(null);
+        if (input != null) {
+            write(out, input);
+            wrote = true;
+        }
+        ClientEvent event;
+        while ((event = outbox.poll()) != null) {
+            write(out, event);
+            wrote = true;
+        }
+        SnapshotAckEvent ack = pendingAck.getAndSet(null);
+        if (ack != null) {
+            write(out, ack);
+            wrote = true;
         }
+        if (wrote) out.flush();
+        return wrote;
+    }
+
+    private void write(OutputStream out, ClientEvent event) throws IOException {
+        // Отметки замеров ставим при записи, чтобы время в очереди не попадало в задержку сети.
+        if (event instanceof PingEvent) {
+            long now = System.nanoTime();
+            pendingPingNanos = now;
+            event = new PingEvent(now);
+        } else if (event instanceof PongEvent p) {
+            event = new PongEvent(p.serverSendNanos(), p.clientReceiveNanos(), System.nanoTime());
+        }
+        out.write(Frames.encode(codec, event));
     }
 
     /** Заменяем активного слушателя. Новый слушатель получает все последующие сообщения. */
     public void setListener(MessageListener listener) {
         this.listener = listener;
+        // Сообщения, оставшиеся от прежнего слушателя, достаются новому.
+        if (!inbox.isEmpty()) postDrain();
+    }
+
+    // ─── Поток чтения ─────────────────────────────────────────────────────────
+
+    /**
+     * Передаём слушателю всё, что накопилось во входящих. Вызывается только в потоке JavaFX:
+     * слушателем с игровым циклом — в начале каждого кадра, для остальных — задачей разбора.
+     * Слушатель перечитывается на каждом сообщении: если сообщение сменило экран,
+     * следующие достаются уже новому.
+     */
+    public void drainInbox() {
+        drainPosted.set(false);
+        inbox.drain(msg -> {
+            MessageListener l = listener;
+            if (l != null) l.onMessage(msg);
+        });
+    }
+
+    /** Кладём сообщение во входящие; вызывается потоками чтения TCP и UDP. */
+    private void deliver(ServerMessage msg) {
+        inbox.offer(msg);
+        MessageListener l = listener;
+        if (l == null || !l.drainsOnPulse()) postDrain();
+    }
+
+    private void postDrain() {
+        if (drainPosted.compareAndSet(false, true)) Platform.runLater(this::drainInbox);
+    }
+
+    /**
+     * Снимок по TCP при подтверждённом UDP значит, что сервер перестал слышать наши датаграммы.
+     * Возвращаемся на TCP; следующий кадр ввода уйдёт уже по нему с полным состоянием клавиш.
+     */
+    private void checkUdpFallback() {
+        UdpChannel u = udp;
+        if (u == null || !u.isReady() || u.inGrace()) return;
+        u.fallback();
     }
 
     // Фоновое чтение входящих сообщений.
     private void readLoop() {
+        while (readFrames() && resume()) {
+            // Сессия возобновлена: читаем уже из нового соединения.
+        }
+        if (clock.samples() > 0) LOG.info("[Клиент] Связь с сервером: " + clock.describe());
+        disconnect();
+        // Сначала слушатель получает всё, что успело прийти до разрыва.
+        Platform.runLater(() -> {
+            drainInbox();
+            MessageListener l = listener;
+            if (l != null) l.onDisconnected();
+        });
+    }
+
+    /**
+     * Читаем кадры текущего соединения, пока оно не закроется.
+     *
+     * @return {@code true}, если соединение оборвалось и в сессию можно попробовать вернуться
+     */
+    private boolean readFrames() {
         try {
             while (!socket.isClosed()) {
-                Object obj = in.readObject();
-                if (obj instanceof ServerMessage msg) {
-                    MessageListener l = listener;
-                    if (l != null) {
-                        Platform.runLater(() -> l.onMessage(msg));
+                Frame         frame    = Frames.read(in);
+                long          received = System.nanoTime();
+                ServerMessage msg      = Frames.decodeMessage(codec, frame);
+                // Ответ на сигнал «на связи» нужен только чтобы не сработал тайм-аут чтения.
+                if (msg instanceof HeartbeatMessage) continue;
+                if (msg instanceof PingMessage m) {
+                    // Время ответа поставит поток записи.
+                    sendTcp(new PongEvent(m.serverSendNanos(), received, 0));
+                    continue;
+                }
+                if (msg instanceof PongMessage m) {
+                    // Принимаем только ответ на последний замер; опоздавший дольше интервала пропадает.
+                    if (m.clientSendNanos() == pendingPingNanos) {
+                        clock.sample(m.clientSendNanos(), m.serverReceiveNanos(), m.serverSendNanos(), received);
                     }
+                    continue;
                 }
+                if (msg instanceof ConnectedMessage m) {
+                    onConnected(m);
+                } else if (msg instanceof GameStateMessage || msg instanceof GameStateDeltaMessage) {
+                    checkUdpFallback();
+                }
+                deliver(msg);
             }
+            return true;
+        } catch (ProtocolException e) {
+            LOG.warning("[Клиент] Получен некорректный кадр: " + e.getMessage());
+            return false;
+        } catch (SocketTimeoutException e) {
+            LOG.warning("[Клиент] Сервер не отвечает дольше " + READ_TIMEOUT_MS + " мс, соединение закрыто");
+            return true;
         } catch (IOException e) {
             LOG.info("[Клиент] Соединение закрыто: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
-            LOG.warning("[Клиент] Получен объект неизвестного класса: " + e.getMessage());
-        } finally {
-            MessageListener l = listener;
-            if (l != null) {
-                Platform.runLater(l::onDisconnected);
+            return true;
+        }
+    }
+
+    /** Вход подтверждён: запоминаем токен возобновления и поднимаем то, что согласовал сервер. */
+    private void onConnected(ConnectedMessage m) throws IOException {
+        LOG.info("[Клиент] Протокол " + m.protocolVersion() + ", возможности "
+                + Capabilities.describe(m.capabilities()));
+        resumeToken = m.resumeToken();
+        // Токен выдаётся только при согласованном UDP.
+        if (m.udpToken() != 0) udp = UdpChannel.open(host, port, m.udpToken(), codec, this::deliver);
+        // Замеры уже идут, если это возвращение в сессию.
+        if (Capabilities.has(m.capabilities(), Capabilities.CLOCK_SYNC) && !clockSync) {
+            clockSync = true;
+            heartbeat.scheduleAtFixedRate(this::sendPing, PING_INTERVAL_MS, PING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // ─── Возобновление сессии ─────────────────────────────────────────────────
+
+    /**
+     * Соединение оборвалось: переподключаемся и входим с токеном, пока не истечёт {@link #RESUME_WINDOW_MS}.
+     * Прежний поток записи сначала завершается, чтобы у очереди событий оставался один читатель.
+     *
+     * @return {@code true}, если сервер вернул нас в ту же сессию
+     */
+    private boolean resume() {
+        long token = resumeToken;
+        if (closed || token == 0) return false;
+        closeQuietly(socket);
+        Thread writer = writerThread;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            return false;
+        }
+        UdpChannel u = udp;
+        udp = null;
+        if (u != null) u.close();
+
+        LOG.info("[Клиент] Связь потеряна, возвращаемся в сессию");
+        long started  = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(RESUME_WINDOW_MS);
+        while (!closed && System.nanoTime() < deadline) {
+            try {
+                open();
+                out.write(Frames.encode(codec, new JoinLobbyEvent(nickname, Capabilities.VERSION, offered, token)));
+                out.flush();
+                ConnectedMessage connected = awaitConnected();
+                if (connected == null) return false;
+                // Пока ждали ответа, соединение могли закрыть вызовом disconnect().
+                if (closed) {
+                    closeQuietly(socket);
+                    return false;
+                }
+                onConnected(connected);
+                startWriter();
+                LOG.info("[Клиент] Сессия возобновлена за "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " мс");
+                return true;
+            } catch (ProtocolException e) {
+                LOG.warning("[Клиент] Получен некорректный кадр: " + e.getMessage());
+                return false;
+            } catch (IOException e) {
+                closeQuietly(socket);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RESUME_RETRY_MS));
+            }
+        }
+        return false;
+    }
+
+    /** @return подтверждение входа или {@code null}, если сервер отказал (например, ожидание истекло) */
+    private ConnectedMessage awaitConnected() throws IOException {
+        while (true) {
+            ServerMessage msg = Frames.decodeMessage(codec, Frames.read(in));
+            if (msg instanceof ConnectedMessage m) return m;
+            if (msg instanceof ErrorMessage m) {
+                LOG.warning("[Клиент] Вернуться в сессию не удалось: " + m.text());
+                return null;
             }
+            // До подтверждения сервер присылает только ответы на сигналы «на связи».
         }
     }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            if (s != null) s.close();
+        } catch (IOException ignored) {}
+    }
 }
 
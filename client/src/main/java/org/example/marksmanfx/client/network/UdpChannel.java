@@ -0,0 +1,177 @@
+package org.example.marksmanfx.client.network;
+
+import org.example.marksmanfx.common.event.InputFrameEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
+import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.protocol.Datagrams;
+import org.example.marksmanfx.common.protocol.Frame;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.WireCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Клиентская сторона UDP-канала (формат — {@link Datagrams}).
+ *
+ * <p>Канал приветствует сервер токеном из {@code ConnectedMessage}, пока не получит ответ
+ * или не исчерпает попытки; до этого всё идёт по TCP. После ответа каждая датаграмма клиента
+ * несёт последний кадр ввода ({@link InputFrameEvent}) и, если есть, подтверждение снимка:
+ * кадр содержит полное состояние клавиш, поэтому потерянная датаграмма исправляется следующей.</p>
+ */
+final class UdpChannel {
+
+    private static final Logger LOG = Logger.getLogger(UdpChannel.class.getName());
+
+    private static final long HELLO_INTERVAL_MS = 250;
+    private static final int  HELLO_ATTEMPTS    = 20;
+    /** Если кадры ввода не идут (экран лобби), напоминаем серверу о себе, чтобы он не вернул снимки на TCP. */
+    private static final long KEEPALIVE_NANOS   = TimeUnit.MILLISECONDS.toNanos(500);
+    /** Снимки, уже стоявшие в TCP-очереди сервера в момент переключения, ещё не признак отказа UDP. */
+    private static final long TCP_GRACE_NANOS   = TimeUnit.SECONDS.toNanos(1);
+
+    private final DatagramChannel          channel;
+    private final long                     token;
+    private final WireCodec                codec;
+    private final Consumer<ServerMessage>  sink;
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger            seq  = new AtomicInteger(Datagrams.HELLO_SEQ);
+
+    /** Последний кадр ввода: повторяем его в каждой датаграмме, даже если она несёт только подтверждение. */
+    private volatile InputFrameEvent input;
+    private volatile boolean         ready;
+    private volatile long            readyNanos;
+    private volatile long            lastSentNanos;
+    private volatile int             helloLeft = HELLO_ATTEMPTS;
+
+    private UdpChannel(DatagramChannel channel, long token, WireCodec codec, Consumer<ServerMessage> sink) {
+        this.channel = channel;
+        this.token   = token;
+        this.codec   = codec;
+        this.sink    = sink;
+        this.timer   = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "marksman-client-udp-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Открываем канал к тому же адресу и порту, что и TCP; при ошибке возвращаем {@code null}. */
+    static UdpChannel open(String host, int port, long token, WireCodec codec, Consumer<ServerMessage> sink) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.connect(new InetSocketAddress(host, port));
+            UdpChannel udp = new UdpChannel(channel, token, codec, sink);
+            Thread reader = new Thread(udp::readLoop, "marksman-client-udp");
+            reader.setDaemon(true);
+            reader.start();
+            udp.timer.scheduleAtFixedRate(udp::tick, 0, HELLO_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            return udp;
+        } catch (IOException e) {
+            LOG.warning("[UDP] Канал недоступен, только TCP: " + e.getMessage());
+            return null;
+        }
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /** Снимок пришёл по TCP вскоре после переключения: это хвост TCP-очереди, а не отказ UDP. */
+    boolean inGrace() {
+        return System.nanoTime() - readyNanos < TCP_GRACE_NANOS;
+    }
+
+    void sendInput(InputFrameEvent frame) {
+        input = frame;
+        sendFrames(null);
+    }
+
+    void sendAck(SnapshotAckEvent ack) {
+        sendFrames(ack);
+    }
+
+    /** Подтверждение, если передано, и последний кадр ввода одной датаграммой. */
+    private void sendFrames(SnapshotAckEvent ack) {
+        List<byte[]> frames = new ArrayList<>(2);
+        if (ack != null) frames.add(Frames.encode(codec, ack));
+        InputFrameEvent in = input;
+        if (in != null) frames.add(Frames.encode(codec, in));
+        send(seq.incrementAndGet(), frames);
+    }
+
+    /** Сервер вернул снимки на TCP: перестаём слать по UDP и заново проверяем канал. */
+    void fallback() {
+        ready     = false;
+        helloLeft = HELLO_ATTEMPTS;
+        LOG.info("[UDP] Сервер перешёл на TCP, канал будет проверен заново");
+    }
+
+    void close() {
+        timer.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void tick() {
+        if (ready) {
+            if (System.nanoTime() - lastSentNanos > KEEPALIVE_NANOS) sendFrames(null);
+        } else if (helloLeft > 0) {
+            if (--helloLeft == 0) LOG.info("[UDP] Сервер не ответил, снимки и ввод идут по TCP");
+            send(Datagrams.HELLO_SEQ, List.of());
+        }
+    }
+
+    private void send(int seq, List<byte[]> frames) {
+        try {
+            channel.write(Datagrams.clientDatagram(token, seq, frames));
+            lastSentNanos = System.nanoTime();
+        } catch (IOException e) {
+            // Например, ICMP «порт недоступен» на петле: канал выключится сам, без ответа сервера.
+            LOG.fine("[UDP] Не удалось отправить датаграмму: " + e.getMessage());
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(Datagrams.MAX_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                channel.receive(buf);
+                buf.flip();
+                if (!buf.hasRemaining()) continue;
+                int kind = buf.get() & 0xFF;
+                if (kind == Datagrams.HELLO_ACK) {
+                    if (!ready) {
+                        readyNanos = System.nanoTime();
+                        ready      = true;
+                        LOG.info("[UDP] Канал подтверждён, снимки и ввод идут по UDP");
+                        // Первая датаграмма после ответа подтверждает серверу обратный путь.
+                        sendFrames(null);
+                    }
+                } else if (kind == Datagrams.FRAMES) {
+                    for (Frame frame : Datagrams.readFrames(buf)) {
+                        sink.accept(Frames.decodeMessage(codec, frame));
+                    }
+                }
+            } catch (ProtocolException e) {
+                LOG.fine("[UDP] Некорректная датаграмма: " + e.getMessage());
+            } catch (IOException e) {
+                if (!channel.isOpen()) break;
+                LOG.fine("[UDP] Ошибка приёма: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -16,17 +16,17 @@ import org.example.marksmanfx.client.network.MessageListener;
 import org.example.marksmanfx.client.network.ServerConnection;
 import org.example.marksmanfx.client.ui.SceneManager;
 import org.example.marksmanfx.client.ui.WindowDragUtil;
-import org.example.marksmanfx.common.event.AimEvent;
-import org.example.marksmanfx.common.event.CrouchEvent;
 import org.example.marksmanfx.common.event.FireArrowEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
 import org.example.marksmanfx.common.event.LeaveRoomEvent;
-import org.example.marksmanfx.common.event.MoveEvent;
 import org.example.marksmanfx.common.event.PauseRequestEvent;
 import org.example.marksmanfx.common.event.PlayerReadyEvent;
 import org.example.marksmanfx.common.event.RematchRequestEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
 import org.example.marksmanfx.common.message.ErrorMessage;
 import org.example.marksmanfx.common.message.GameOverMessage;
 import org.example.marksmanfx.common.message.GameStartMessage;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
 import org.example.marksmanfx.common.message.GameStateMessage;
 import org.example.marksmanfx.common.message.LobbyStateMessage;
 import org.example.marksmanfx.common.message.PauseStateMessage;
@@ -39,9 +39,13 @@ import org.example.marksmanfx.common.message.TechnicalWinMessage;
 import org.example.marksmanfx.common.model.GamePhase;
 import org.example.marksmanfx.common.model.PlayerInfo;
 import org.example.marksmanfx.common.model.PlayerStateDto;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.SnapshotDelta;
 
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -51,6 +55,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * Отвечает за:
  *   — приём снимков состояния мира от сервера и их отрисовку через {@link GameRenderer}
  *   — трансляцию нажатий клавиш / кнопок в ClientEvents для сервера
+ *     (состояние клавиш движения и прицела — кадрами ввода с фиксированной частотой)
  *   — управление жизненным циклом AnimationTimer
  *   — поддержание трехфазной стейт-машины кнопки поузы
  *   — отображение начального списка игроков комнаты
@@ -61,6 +66,11 @@ public final class GameController implements MessageListener {
 
     /** Длительность полного заряда в секундах (совпадает с CHARGE_PER_SECOND сервера). */
     private static final double CHARGE_DURATION_SECS = 1.0 / 0.70;
+    /** Сколько восстановленных снимков храним как базы для дельт (не меньше истории сервера). */
+    private static final int    SNAPSHOT_HISTORY     = 64;
+    /** Частота кадров ввода — как у игрового цикла сервера. */
+    private static final int    INPUT_RATE_HZ        = 60;
+    private static final long   INPUT_PERIOD_NANOS   = 1_000_000_000L / INPUT_RATE_HZ;
 
     // ─── FXML-поля ────────────────────────────────────────────────────────────
 
@@ -84,9 +94,24 @@ public final class GameController implements MessageListener {
 
     // ─── Состояние ────────────────────────────────────────────────────────────
 
+    /** Слот локального игрока в комнате; снимки обозначают игроков слотами. */
+    private volatile int      localSlot     = -1;
+    /** Никнеймы по номеру слота из последнего RoomJoinedMessage / RoomUpdatedMessage. */
+    private volatile String[] slotNicknames = new String[0];
+
     /** Последний авторитетный снимок мира, пришедший от сервера. */
     private final AtomicReference<GameStateMessage> latestState = new AtomicReference<>();
 
+    /** Восстановленные снимки по номеру тика; сервер присылает дельты относительно подтверждённых. */
+    private final Map<Integer, GameStateMessage> snapshotHistory = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, GameStateMessage> eldest) {
+            return size() > SNAPSHOT_HISTORY;
+        }
+    };
+    /** Номер последнего показанного снимка: по UDP снимки могут прийти не по порядку. */
+    private int lastSnapshotTick = GameStateDeltaMessage.KEYFRAME;
+
     /**
      * Фаза игры, которую мы отслеживаем из PauseStateMessage.
      * Не совпадает с GameStateMessage.phase во время PAUSE_REQUESTED,
@@ -114,7 +139,12 @@ public final class GameController implements MessageListener {
     /** Время начала заряда выстрела (наносекунды), -1 если не заряжаем. */
     private long chargeStartNanos = -1;
 
+    /** Время следующего кадра ввода (наносекунды AnimationTimer). */
+    private long nextInputNanos;
+
     private AnimationTimer     animationTimer;
+    /** Игровой цикл запущен и сам разбирает входящие сообщения; читается потоком чтения соединения. */
+    private volatile boolean   rendering;
     private final Set<KeyCode> heldKeys = EnumSet.noneOf(KeyCode.class);
 
     // ─── Инициализация ────────────────────────────────────────────────────────
@@ -143,6 +173,7 @@ public final class GameController implements MessageListener {
 
         // Сразу показываем, кто уже в комнате — без ожидания первого RoomUpdatedMessage
         if (initialPlayers != null && !initialPlayers.isEmpty()) {
+            updateSlots(initialPlayers);
             showWaitingPlayerList(initialPlayers);
         }
 
@@ -165,12 +196,26 @@ public final class GameController implements MessageListener {
         });
     }
 
-    /** Запускаем AnimationTimer — он рисует каждый кадр из последнего снимка. */
+    /**
+     * Запускаем AnimationTimer — он раз в кадр разбирает входящие сообщения, отправляет кадры ввода
+     * и рисует кадр из последнего снимка.
+     */
     private void startRenderLoop() {
         animationTimer = new AnimationTimer() {
-            @Override public void handle(long now) { renderFrame(now); }
+            @Override public void handle(long now) {
+                connection.drainInbox();
+                sampleInput(now);
+                renderFrame(now);
+            }
         };
         animationTimer.start();
+        rendering = true;
+    }
+
+    /** Останавливаем игровой цикл; входящие сообщения снова разбирает соединение. */
+    private void stopRenderLoop() {
+        rendering = false;
+        if (animationTimer != null) animationTimer.stop();
     }
 
     // ─── Рендер ───────────────────────────────────────────────────────────────
@@ -181,7 +226,7 @@ public final class GameController implements MessageListener {
         if (gameOver) {
             // Рисуем последний кадр под оверлеем победы
             GameStateMessage s = latestState.get();
-            if (s != null) GameRenderer.render(gc, s, localPlayerId, 0);
+            if (s != null) GameRenderer.render(gc, s, localSlot, slotNicknames, 0);
 
             // Выбираем нужный вид оверлея — технический или обычный
             if (technicalWinDisconnected != null) {
@@ -195,7 +240,7 @@ public final class GameController implements MessageListener {
         GameStateMessage state = latestState.get();
         if (state == null) return;
 
-        GameRenderer.render(gc, state, localPlayerId, computeChargeRatio(now));
+        GameRenderer.render(gc, state, localSlot, slotNicknames, computeChargeRatio(now));
 
         // Рисуем баннер запроса паузы на основе PauseStateMessage,
         // а не GameStateMessage.phase, который запаздывает на один шаг
@@ -212,11 +257,18 @@ public final class GameController implements MessageListener {
 
     // ─── MessageListener ──────────────────────────────────────────────────────
 
+    /** Пока игровой цикл идёт, сообщения забирает {@link #animationTimer}; после остановки — соединение. */
+    @Override
+    public boolean drainsOnPulse() {
+        return rendering;
+    }
+
     @Override
     public void onMessage(ServerMessage message) {
         switch (message) {
             case GameStartMessage          m -> onGameStart();
             case GameStateMessage          m -> onGameState(m);
+            case GameStateDeltaMessage     m -> onGameStateDelta(m);
             case GameOverMessage           m -> onGameOver(m.winnerNickname());
             case TechnicalWinMessage       m -> onTechnicalWin(m);
             case RematchOfferMessage       m -> onRematchOffer(m);
@@ -242,6 +294,8 @@ public final class GameController implements MessageListener {
         pauseRequesterId       = null;
         pauseRequesterNickname = null;
         chargeStartNanos       = -1;
+        // Новая сессия сервера начинает матч стоя.
+        crouching              = false;
 
         waitingOverlay.setVisible(false);
         waitingOverlay.setManaged(false);
@@ -249,6 +303,37 @@ public final class GameController implements MessageListener {
         rootPane.requestFocus();
     }
 
+    /**
+     * Восстанавливаем полный снимок из дельты и подтверждаем его серверу.
+     * Если базового снимка у нас нет (например, экран открыт посреди матча),
+     * просим ключевой кадр подтверждением {@code -1}.
+     */
+    private void onGameStateDelta(GameStateDeltaMessage msg) {
+        // Ключевой кадр принимаем всегда: после смены комнаты счёт тиков начинается заново.
+        if (!msg.isKeyframe() && msg.tick() <= lastSnapshotTick) return;
+
+        GameStateMessage base = null;
+        if (!msg.isKeyframe()) {
+            base = snapshotHistory.get(msg.baseTick());
+            if (base == null) {
+                connection.send(new SnapshotAckEvent(GameStateDeltaMessage.KEYFRAME));
+                return;
+            }
+        }
+
+        GameStateMessage state;
+        try {
+            state = SnapshotDelta.apply(base, msg.payload());
+        } catch (ProtocolException e) {
+            connection.send(new SnapshotAckEvent(GameStateDeltaMessage.KEYFRAME));
+            return;
+        }
+        snapshotHistory.put(msg.tick(), state);
+        lastSnapshotTick = msg.tick();
+        connection.send(new SnapshotAckEvent(msg.tick()));
+        onGameState(state);
+    }
+
     /** Сохраняем последний снимок мира и обновляем счётную панель. */
     private void onGameState(GameStateMessage msg) {
         latestState.set(msg);
@@ -294,6 +379,12 @@ public final class GameController implements MessageListener {
      * Это единственный источник правды для состояния паузы на клиенте.
      */
     private void onPauseState(PauseStateMessage msg) {
+        // Матч мог начаться, пока не было связи: сервер напоминает фазу вернувшемуся в сессию.
+        if (msg.phase() == GamePhase.PLAYING
+                && (clientPhase == GamePhase.WAITING || clientPhase == GamePhase.FINISHED)) {
+            onGameStart();
+            return;
+        }
         clientPhase = msg.phase();
 
         switch (msg.phase()) {
@@ -318,6 +409,7 @@ public final class GameController implements MessageListener {
 
     /** Список игроков в комнате изменился — обновляем оверлей ожидания. */
     private void onRoomUpdated(RoomUpdatedMessage msg) {
+        updateSlots(msg.players());
         if (clientPhase == GamePhase.WAITING || clientPhase == GamePhase.FINISHED) {
             showWaitingPlayerList(msg.players());
         }
@@ -327,7 +419,7 @@ public final class GameController implements MessageListener {
     public void onDisconnected() {
         statusLabel.setText("Соединение с сервером потеряно.");
         clientPhase = GamePhase.WAITING;
-        if (animationTimer != null) animationTimer.stop();
+        stopRenderLoop();
     }
 
     // ─── Обработчики кнопок ───────────────────────────────────────────────────
@@ -372,7 +464,7 @@ public final class GameController implements MessageListener {
     /** Выходим из комнаты и возвращаемся в лобби. */
     @FXML
     private void onLeave() {
-        if (animationTimer != null) animationTimer.stop();
+        stopRenderLoop();
         connection.send(new LeaveRoomEvent());
         sceneManager.showLobby(localPlayerId, localNickname);
     }
@@ -389,12 +481,8 @@ public final class GameController implements MessageListener {
         if (!heldKeys.add(code)) { e.consume(); return; }
 
         switch (code) {
-            case W, UP    -> sendMove("UP",    true);
-            case S, DOWN  -> sendMove("DOWN",  true);
-            case A        -> sendMove("LEFT",  true);
-            case D        -> sendMove("RIGHT", true);
-            case Q, LEFT  -> sendAim("UP",    true);
-            case E, RIGHT -> sendAim("DOWN",  true);
+            // Клавиши движения и прицела уходят на сервер в кадре ввода, см. sampleInput.
+            case W, UP, S, DOWN, A, D, Q, LEFT, E, RIGHT -> {}
             case C        -> toggleCrouch();
             case SPACE    -> startCharge();
             case P        -> handlePauseInput();
@@ -409,12 +497,7 @@ public final class GameController implements MessageListener {
         heldKeys.remove(code);
 
         switch (code) {
-            case W, UP    -> sendMove("UP",    false);
-            case S, DOWN  -> sendMove("DOWN",  false);
-            case A        -> sendMove("LEFT",  false);
-            case D        -> sendMove("RIGHT", false);
-            case Q, LEFT  -> sendAim("UP",    false);
-            case E, RIGHT -> sendAim("DOWN",  false);
+            case W, UP, S, DOWN, A, D, Q, LEFT, E, RIGHT -> {}
             case SPACE    -> releaseCharge();
             default       -> { return; }
         }
@@ -450,20 +533,38 @@ public final class GameController implements MessageListener {
 
     // ─── Вспомогательные методы ввода ─────────────────────────────────────────
 
-    private void sendMove(String dir, boolean pressed) {
-        if (clientPhase != GamePhase.PLAYING) return;
-        connection.send(new MoveEvent(dir, pressed));
+    /**
+     * Отправляем кадр ввода не чаще {@link #INPUT_RATE_HZ} раз в секунду. Кадр несёт полное
+     * состояние, поэтому отпускание клавиши на паузе или потеря датаграммы ничего не «залипает».
+     * Четверть периода допуска — чтобы дрожание vsync на 60 Гц не пропускало кадры.
+     */
+    private void sampleInput(long now) {
+        if (now < nextInputNanos - INPUT_PERIOD_NANOS / 4) return;
+        // После подвисания окна не отправляем пачку догоняющих кадров.
+        nextInputNanos = Math.max(nextInputNanos + INPUT_PERIOD_NANOS, now);
+        connection.sendInput(heldButtons());
     }
 
-    private void sendAim(String dir, boolean pressed) {
-        if (clientPhase != GamePhase.PLAYING) return;
-        connection.send(new AimEvent(dir, pressed));
+    /** Биты {@link InputFrameEvent}: клавиши движения и прицела учитываем только во время матча. */
+    private int heldButtons() {
+        int b = crouching ? InputFrameEvent.CROUCH : 0;
+        if (clientPhase != GamePhase.PLAYING) return b;
+        if (isHeld(KeyCode.W, KeyCode.UP))    b |= InputFrameEvent.MOVE_UP;
+        if (isHeld(KeyCode.S, KeyCode.DOWN))  b |= InputFrameEvent.MOVE_DOWN;
+        if (heldKeys.contains(KeyCode.A))     b |= InputFrameEvent.MOVE_LEFT;
+        if (heldKeys.contains(KeyCode.D))     b |= InputFrameEvent.MOVE_RIGHT;
+        if (isHeld(KeyCode.Q, KeyCode.LEFT))  b |= InputFrameEvent.AIM_UP;
+        if (isHeld(KeyCode.E, KeyCode.RIGHT)) b |= InputFrameEvent.AIM_DOWN;
+        return b;
+    }
+
+    private boolean isHeld(KeyCode primary, KeyCode alternative) {
+        return heldKeys.contains(primary) || heldKeys.contains(alternative);
     }
 
     private void toggleCrouch() {
         if (clientPhase != GamePhase.PLAYING) return;
         crouching = !crouching;
-        connection.send(new CrouchEvent(crouching));
     }
 
     private void startCharge() {
@@ -580,6 +681,18 @@ public final class GameController implements MessageListener {
         pauseButton.getStyleClass().add(newClass);
     }
 
+    /** Запоминаем соответствие слотов игрокам: по нему снимки сопоставляются с никнеймами. */
+    private void updateSlots(List<PlayerInfo> players) {
+        int size = 0;
+        for (PlayerInfo p : players) size = Math.max(size, p.slot() + 1);
+        String[] nicknames = new String[size];
+        for (PlayerInfo p : players) {
+            nicknames[p.slot()] = p.nickname();
+            if (p.playerId().equals(localPlayerId)) localSlot = p.slot();
+        }
+        slotNicknames = nicknames;
+    }
+
     /** Строим список игроков в комнате для оверлея ожидания. */
     private void showWaitingPlayerList(List<PlayerInfo> players) {
         StringBuilder sb = new StringBuilder();
@@ -596,8 +709,9 @@ public final class GameController implements MessageListener {
     private void updateScoreBoard(List<PlayerStateDto> players) {
         scoreBoard.getChildren().clear();
         for (PlayerStateDto p : players) {
-            boolean isMe = p.playerId().equals(localPlayerId);
-            Label lbl = new Label((isMe ? "▶ " : "  ") + p.nickname() + ":  " + p.score());
+            boolean isMe = p.slot() == localSlot;
+            Label lbl = new Label((isMe ? "▶ " : "  ") + GameRenderer.nicknameOf(p.slot(), slotNicknames)
+                    + ":  " + p.score());
             lbl.getStyleClass().add(isMe ? "score-self" : "score-other");
             scoreBoard.getChildren().add(lbl);
         }
@@ -36,9 +36,14 @@ public final class GameRenderer {
 
     // ─── Главный метод отрисовки кадра ────────────────────────────────────────
 
+    /**
+     * @param localSlot     слот локального игрока в комнате
+     * @param slotNicknames никнеймы по номеру слота; снимок несёт только слоты
+     */
     public static void render(GraphicsContext gc,
                               GameStateMessage state,
-                              String localPlayerId,
+                              int localSlot,
+                              String[] slotNicknames,
                               double chargeRatio) {
         gc.clearRect(0, 0, WORLD_WIDTH, WORLD_HEIGHT);
         gc.save();
@@ -50,14 +55,14 @@ public final class GameRenderer {
         // Сначала рисуем соперников (тени), чтобы локальный игрок был поверх
         List<PlayerStateDto> players = state.players();
         for (PlayerStateDto p : players) {
-            if (!p.playerId().equals(localPlayerId)) {
-                renderPlayer(gc, p, false, state.arrows());
+            if (p.slot() != localSlot) {
+                renderPlayer(gc, p, nicknameOf(p.slot(), slotNicknames), false, state.arrows());
             }
         }
         // Поверх всех рисуем локального игрока
         for (PlayerStateDto p : players) {
-            if (p.playerId().equals(localPlayerId)) {
-                renderPlayer(gc, p, true, state.arrows());
+            if (p.slot() == localSlot) {
+                renderPlayer(gc, p, nicknameOf(p.slot(), slotNicknames), true, state.arrows());
             }
         }
 
@@ -166,7 +171,7 @@ public final class GameRenderer {
 
     // ─── Рендер одного игрока (лучник + никнейм + его стрела) ─────────────────
 
-    private static void renderPlayer(GraphicsContext gc, PlayerStateDto p,
+    private static void renderPlayer(GraphicsContext gc, PlayerStateDto p, String nickname,
                                      boolean isLocal, List<ArrowDto> arrows) {
         // Рисуем фигурку лучника (тень — полупрозрачная)
         double opacity = isLocal ? 1.0 : 0.40;
@@ -191,17 +196,17 @@ public final class GameRenderer {
         double textX = p.archerX() + 18; // центруем по торсу
 
         gc.setFill(Color.rgb(0, 0, 0, 0.55));
-        gc.fillText(p.nickname(), textX, nickY + 1); // тень смещена на 1 пиксель
+        gc.fillText(nickname, textX, nickY + 1); // тень смещена на 1 пиксель
 
         gc.setFill(isLocal
                 ? Color.rgb(255, 255, 255, 0.95)   // белый для локального
                 : Color.rgb(255, 90, 90, 0.88));    // красноватый для соперника
-        gc.fillText(p.nickname(), textX, nickY);
+        gc.fillText(nickname, textX, nickY);
         gc.restore();
 
         // Рисуем стрелу, принадлежащую этому игроку
         for (ArrowDto a : arrows) {
-            if (a.ownerId().equals(p.playerId()) && a.active()) {
+            if (a.ownerSlot() == p.slot() && a.active()) {
                 gc.save();
                 gc.setGlobalAlpha(isLocal ? 1.0 : 0.45);
                 drawArrow(gc, a, isLocal);
@@ -210,6 +215,12 @@ public final class GameRenderer {
         }
     }
 
+    /** Никнейм по слоту; «?», если состав комнаты ещё не пришёл. */
+    static String nicknameOf(int slot, String[] slotNicknames) {
+        String nickname = slot >= 0 && slot < slotNicknames.length ? slotNicknames[slot] : null;
+        return nickname != null ? nickname : "?";
+    }
+
     // ─── Примитивы отрисовки (перенесены из MainViewController) ──────────────
 
     private static void drawBackground(GraphicsContext gc, double w, double h) {
@@ -355,8 +366,8 @@ public final class GameRenderer {
 
         double tailX      = arrow.x();
         double tailY      = arrow.y();
-        double tipX       = tailX + dirX * arrow.width();
-        double tipY       = tailY + dirY * arrow.width();
+        double tipX       = tailX + dirX * ArrowDto.LENGTH;
+        double tipY       = tailY + dirY * ArrowDto.LENGTH;
         double headLen    = 11.0;
         double headHalf   = 5.0;
         double shaftEndX  = tipX - dirX * headLen;
@@ -383,11 +394,11 @@ public final class GameRenderer {
         gc.setStroke(Color.web(fletchColor));
         gc.setLineWidth(2);
         gc.strokeLine(tailX, tailY,
-                tailX - dirX * 8 + perpX * (arrow.height() * 0.5),
-                tailY - dirY * 8 + perpY * (arrow.height() * 0.5));
+                tailX - dirX * 8 + perpX * (ArrowDto.THICKNESS * 0.5),
+                tailY - dirY * 8 + perpY * (ArrowDto.THICKNESS * 0.5));
         gc.strokeLine(tailX, tailY,
-                tailX - dirX * 8 - perpX * (arrow.height() * 0.5),
-                tailY - dirY * 8 - perpY * (arrow.height() * 0.5));
+                tailX - dirX * 8 - perpX * (ArrowDto.THICKNESS * 0.5),
+                tailY - dirY * 8 - perpY * (ArrowDto.THICKNESS * 0.5));
     }
 
     /** Рисуем полупрозрачный оверлей паузы. */
@@ -27,6 +27,7 @@ import org.example.marksmanfx.common.message.RoomJoinedMessage;
 import org.example.marksmanfx.common.message.ServerMessage;
 import org.example.marksmanfx.common.model.PlayerInfo;
 import org.example.marksmanfx.common.model.RoomInfo;
+import org.example.marksmanfx.common.protocol.ClientEventType;
 
 import java.net.URL;
 import java.util.List;
@@ -79,7 +80,15 @@ public final class LobbyController implements MessageListener {
     @FXML
     private void onCreateRoom() {
         Optional<String> result = showCreateRoomDialog();
-        result.ifPresent(name -> connection.send(new CreateRoomEvent(name)));
+        result.ifPresent(name -> {
+            // Слишком длинное название сервер счёл бы нарушением протокола и разорвал соединение.
+            if (!ClientEventType.fitsText(name)) {
+                statusLabel.setText("Название комнаты слишком длинное: не больше "
+                        + ClientEventType.MAX_TEXT_BYTES + " байт в UTF-8.");
+                return;
+            }
+            connection.send(new CreateRoomEvent(name));
+        });
     }
 
     /**
@@ -11,10 +11,10 @@ import org.example.marksmanfx.client.network.MessageListener;
 import org.example.marksmanfx.client.network.ServerConnection;
 import org.example.marksmanfx.client.ui.SceneManager;
 import org.example.marksmanfx.client.ui.WindowDragUtil;
-import org.example.marksmanfx.common.event.JoinLobbyEvent;
 import org.example.marksmanfx.common.message.ConnectedMessage;
 import org.example.marksmanfx.common.message.ErrorMessage;
 import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.protocol.ClientEventType;
 
 import java.io.IOException;
 
@@ -54,6 +54,10 @@ public final class LoginController implements MessageListener {
         String portText = portField.getText().trim();
 
         if (nickname.isEmpty()) { setStatus("Введите никнейм."); return; }
+        if (!ClientEventType.fitsText(nickname)) {
+            setStatus("Никнейм слишком длинный: не больше " + ClientEventType.MAX_TEXT_BYTES + " байт в UTF-8.");
+            return;
+        }
 
         int port;
         try {
@@ -68,7 +72,7 @@ public final class LoginController implements MessageListener {
         Thread.ofVirtual().start(() -> {
             try {
                 connection.connect(host, port);
-                connection.send(new JoinLobbyEvent(nickname));
+                connection.join(nickname);
             } catch (IOException ex) {
                 Platform.runLater(() -> {
                     setStatus("Ошибка подключения: " + ex.getMessage());
@@ -2,10 +2,14 @@
  * Общий модуль сетевого протокола MarksmanFx.
  *
  * <p>Содержит типы, которыми обмениваются клиент и сервер:
- * события от клиента, сообщения от сервера и сериализуемые DTO модели.</p>
+ * события от клиента, сообщения от сервера и сериализуемые DTO модели,
+ * а также кадрирование и кодеки для передачи их по сети и очереди без блокировок
+ * для передачи событий между потоками.</p>
  */
 module org.example.marksmanfx.common {
+    exports org.example.marksmanfx.common.concurrent;
     exports org.example.marksmanfx.common.event;
     exports org.example.marksmanfx.common.message;
     exports org.example.marksmanfx.common.model;
+    exports org.example.marksmanfx.common.protocol;
 }
\ No newline at end of file
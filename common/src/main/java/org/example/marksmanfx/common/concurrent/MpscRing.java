@@ -0,0 +1,84 @@
+package org.example.marksmanfx.common.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченная очередь без блокировок: много производителей, один потребитель.
+ *
+ * <p>Кольцо на массиве, вместимость — степень двойки. Производитель занимает ячейку, сдвигая
+ * хвост через CAS, и публикует элемент записью с release-семантикой; потребитель читает ячейку
+ * головы и освобождает её. Пока производитель занял ячейку, но ещё не записал элемент, потребитель
+ * видит очередь пустой и заберёт элемент при следующем опросе — порядок при этом сохраняется.</p>
+ *
+ * <p>{@link #offer} никогда не ждёт: в полной очереди он сразу возвращает {@code false}.
+ * {@link #poll} и {@link #drain} вызывает только один поток-потребитель.</p>
+ */
+public final class MpscRing<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int                     mask;
+    private final AtomicLong              tail = new AtomicLong();
+    private final AtomicLong              head = new AtomicLong();
+
+    /** @param capacity вместимость; округляется вверх до степени двойки */
+    public MpscRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Недопустимая вместимость очереди: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.mask  = slots.length() - 1;
+    }
+
+    /** Ставим элемент в очередь; {@code false}, если очередь полна. Можно вызывать из любого потока. */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long t;
+        do {
+            t = tail.get();
+            if (t - head.get() > mask) return false;
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.setRelease((int) t & mask, e);
+        return true;
+    }
+
+    /** Следующий элемент или {@code null}, если опубликованных элементов нет. Только для потребителя. */
+    public E poll() {
+        long h = head.getPlain();
+        int  i = (int) h & mask;
+        E    e = slots.getAcquire(i);
+        if (e == null) return null;
+        // Ячейку очищаем до сдвига головы: производитель следующего круга увидит её пустой.
+        slots.setPlain(i, null);
+        head.setRelease(h + 1);
+        return e;
+    }
+
+    /**
+     * Передаём потребителю все опубликованные элементы, но не больше {@code limit}, по порядку.
+     * Только для потребителя.
+     *
+     * @return сколько элементов передано
+     */
+    public int drain(Consumer<? super E> sink, int limit) {
+        int n = 0;
+        E   e;
+        while (n < limit && (e = poll()) != null) {
+            sink.accept(e);
+            n++;
+        }
+        return n;
+    }
+
+    /** Приблизительно: между чтением хвоста и головы очередь могла измениться. */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
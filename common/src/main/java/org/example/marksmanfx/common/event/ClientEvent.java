@@ -14,11 +14,13 @@ public sealed interface ClientEvent extends Serializable
                 JoinRoomEvent,
                 QuickMatchEvent,
                 PlayerReadyEvent,
-                MoveEvent,
-                AimEvent,
-                CrouchEvent,
+                InputFrameEvent,
                 FireArrowEvent,
                 PauseRequestEvent,
                 RematchRequestEvent,
-                LeaveRoomEvent {
+                LeaveRoomEvent,
+                SnapshotAckEvent,
+                HeartbeatEvent,
+                PingEvent,
+                PongEvent {
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package org.example.marksmanfx.common.event;
+
+import java.io.Serial;
+
+/**
+ * Периодический сигнал клиента «я на связи».
+ *
+ * <p>Сервер отвечает на него {@code HeartbeatMessage} и отключает соединение, по которому
+ * долго не приходило ни одного кадра: так освобождаются места спящих и полуоткрытых клиентов.</p>
+ */
+public record HeartbeatEvent() implements ClientEvent {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,32 @@
+package org.example.marksmanfx.common.event;
+
+import java.io.Serial;
+
+/**
+ * Состояние управления лучником, которое клиент отправляет с фиксированной частотой.
+ *
+ * <p>Каждый кадр несёт полное состояние, а не нажатие или отпускание, поэтому потерянный
+ * или устаревший кадр исправляется следующим. Сервер применяет кадр, только если его номер
+ * больше последнего принятого.</p>
+ *
+ * @param seq     номер кадра, строго растёт в пределах соединения
+ * @param buttons зажатые клавиши движения и прицела и флаг приседа, см. константы
+ */
+public record InputFrameEvent(int seq, int buttons) implements ClientEvent {
+    @Serial private static final long serialVersionUID = 1L;
+
+    public static final int MOVE_UP    = 1;
+    public static final int MOVE_DOWN  = 1 << 1;
+    public static final int MOVE_LEFT  = 1 << 2;
+    public static final int MOVE_RIGHT = 1 << 3;
+    public static final int AIM_UP     = 1 << 4;
+    public static final int AIM_DOWN   = 1 << 5;
+    /** Не клавиша, а текущее положение: присед переключается клавишей C на клиенте. */
+    public static final int CROUCH     = 1 << 6;
+    /** Все известные биты; остальные сервер отбрасывает. */
+    public static final int ALL        = (1 << 7) - 1;
+
+    public boolean has(int button) {
+        return (buttons & button) != 0;
+    }
+}
@@ -6,8 +6,13 @@ import java.io.Serial;
  * Первое клиентское событие после установки TCP-соединения.
  * Регистрирует никнейм игрока и переводит соединение в состояние лобби.
  *
- * @param nickname никнейм игрока
+ * @param nickname        никнейм игрока
+ * @param protocolVersion версия протокола клиента ({@code Capabilities.VERSION}); 0 у клиентов до согласования
+ * @param capabilities    флаги {@code Capabilities}, которые поддерживает клиент
+ * @param resumeToken     токен из {@code ConnectedMessage} оборвавшегося соединения: клиент возвращается
+ *                        в ту же сессию; {@code 0} — новый вход
  */
-public record JoinLobbyEvent(String nickname) implements ClientEvent {
-    @Serial private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+public record JoinLobbyEvent(String nickname, int protocolVersion, int capabilities,
+                             long resumeToken) implements ClientEvent {
+    @Serial private static final long serialVersionUID = 2L;
+}
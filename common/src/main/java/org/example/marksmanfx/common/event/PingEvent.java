@@ -0,0 +1,16 @@
+package org.example.marksmanfx.common.event;
+
+import java.io.Serial;
+
+/**
+ * Замер задержки, начатый клиентом; сервер сразу отвечает {@code PongMessage}.
+ *
+ * <p>Все отметки времени — показания {@link System#nanoTime()} той стороны, которая их поставила.
+ * Начала отсчёта у клиента и сервера разные, поэтому сравнивать их можно только через смещение часов,
+ * которое оценивает {@code ClockSync}.</p>
+ *
+ * @param clientSendNanos время отправки по часам клиента
+ */
+public record PingEvent(long clientSendNanos) implements ClientEvent {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,14 @@
+package org.example.marksmanfx.common.event;
+
+import java.io.Serial;
+
+/**
+ * Ответ клиента на {@code PingMessage}: по нему сервер оценивает задержку и смещение часов клиента.
+ *
+ * @param serverSendNanos    отметка из {@code PingMessage}, возвращённая без изменений
+ * @param clientReceiveNanos когда клиент получил замер, по часам клиента
+ * @param clientSendNanos    когда клиент отправил ответ, по часам клиента
+ */
+public record PongEvent(long serverSendNanos, long clientReceiveNanos, long clientSendNanos) implements ClientEvent {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,16 @@
+package org.example.marksmanfx.common.event;
+
+import java.io.Serial;
+
+/**
+ * Подтверждение снимка, который клиент успешно восстановил.
+ *
+ * <p>Сервер кодирует следующие снимки относительно последнего подтверждённого.
+ * Значение {@code -1} означает, что у клиента нет нужного базового снимка
+ * и ему нужен ключевой кадр.</p>
+ *
+ * @param tick номер восстановленного снимка или {@code -1}
+ */
+public record SnapshotAckEvent(int tick) implements ClientEvent {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -5,9 +5,15 @@ import java.io.Serial;
 /**
  * Подтверждает успешную регистрацию игрока на сервере.
  *
- * @param playerId уникальный идентификатор игрока, назначенный сервером
- * @param nickname подтверждённый никнейм игрока
+ * @param playerId        уникальный идентификатор игрока, назначенный сервером
+ * @param nickname        подтверждённый никнейм игрока
+ * @param udpToken        токен для привязки UDP-канала к этой сессии ({@code Datagrams}); {@code 0}, если UDP не согласован
+ * @param protocolVersion версия протокола сессии — меньшая из версий клиента и сервера
+ * @param capabilities    флаги {@code Capabilities}, включённые для этой сессии
+ * @param resumeToken     токен, с которым клиент после обрыва возвращается в эту же сессию ({@code Capabilities.RESUME});
+ *                        {@code 0}, если возобновление не согласовано
  */
-public record ConnectedMessage(String playerId, String nickname) implements ServerMessage {
-    @Serial private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+public record ConnectedMessage(String playerId, String nickname, long udpToken,
+                               int protocolVersion, int capabilities, long resumeToken) implements ServerMessage {
+    @Serial private static final long serialVersionUID = 3L;
+}
@@ -0,0 +1,28 @@
+package org.example.marksmanfx.common.message;
+
+import java.io.Serial;
+
+/**
+ * Снимок игрового мира, закодированный относительно снимка, который клиент уже подтвердил.
+ *
+ * <p>Тело {@code payload} одинаково для всех кодеков и собирается/разбирается
+ * {@link org.example.marksmanfx.common.protocol.SnapshotDelta}. Ключевой кадр
+ * ({@code baseTick < 0}) содержит все поля и восстанавливается без базового снимка.</p>
+ *
+ * @param tick     номер снимка; клиент подтверждает его через {@code SnapshotAckEvent}
+ * @param baseTick номер базового снимка или {@code -1} для ключевого кадра
+ * @param payload  изменённые поля относительно базового снимка
+ */
+public record GameStateDeltaMessage(
+        int tick,
+        int baseTick,
+        byte[] payload
+) implements ServerMessage {
+    @Serial private static final long serialVersionUID = 1L;
+
+    public static final int KEYFRAME = -1;
+
+    public boolean isKeyframe() {
+        return baseTick == KEYFRAME;
+    }
+}
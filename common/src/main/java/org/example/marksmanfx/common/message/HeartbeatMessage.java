@@ -0,0 +1,11 @@
+package org.example.marksmanfx.common.message;
+
+import java.io.Serial;
+
+/**
+ * Ответ сервера на {@code HeartbeatEvent}. Клиент не показывает его, а только считает
+ * соединение живым: если долго нет ни ответов, ни других кадров, соединение закрывается.
+ */
+public record HeartbeatMessage() implements ServerMessage {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,12 @@
+package org.example.marksmanfx.common.message;
+
+import java.io.Serial;
+
+/**
+ * Замер задержки, начатый сервером; клиент сразу отвечает {@code PongEvent}.
+ *
+ * @param serverSendNanos время отправки по часам сервера ({@link System#nanoTime()})
+ */
+public record PingMessage(long serverSendNanos) implements ServerMessage {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,14 @@
+package org.example.marksmanfx.common.message;
+
+import java.io.Serial;
+
+/**
+ * Ответ сервера на {@code PingEvent}: по нему клиент оценивает задержку и смещение часов сервера.
+ *
+ * @param clientSendNanos    отметка из {@code PingEvent}, возвращённая без изменений
+ * @param serverReceiveNanos когда сервер получил замер, по часам сервера
+ * @param serverSendNanos    когда сервер отправил ответ, по часам сервера
+ */
+public record PongMessage(long clientSendNanos, long serverReceiveNanos, long serverSendNanos) implements ServerMessage {
+    @Serial private static final long serialVersionUID = 1L;
+}
@@ -19,5 +19,9 @@ public sealed interface ServerMessage extends Serializable
                 RematchOfferMessage,
                 PauseStateMessage,
                 PlayerDisconnectedMessage,
-                ErrorMessage {
+                ErrorMessage,
+                GameStateDeltaMessage,
+                HeartbeatMessage,
+                PingMessage,
+                PongMessage {
 }
\ No newline at end of file
@@ -5,24 +5,26 @@ import java.io.Serializable;
 
 /**
  * Сериализуемое состояние стрелы в конкретный момент времени.
+ * Размеры у всех стрел одинаковые и в кадр не входят: {@link #LENGTH}, {@link #THICKNESS}.
  *
- * @param ownerId      идентификатор игрока-владельца стрелы
+ * @param ownerSlot    слот игрока-владельца стрелы в комнате
  * @param active       находится ли стрела в полёте
  * @param x            координата X хвоста стрелы
  * @param y            координата Y хвоста стрелы
  * @param angleDegrees угол полёта стрелы в градусах
- * @param width        визуальная длина стрелы
- * @param height       визуальная толщина стрелы
  */
 public record ArrowDto(
-        String ownerId,
+        int ownerSlot,
         boolean active,
         double x,
         double y,
-        double angleDegrees,
-        double width,
-        double height
+        double angleDegrees
 ) implements Serializable {
     @Serial
-    private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+    private static final long serialVersionUID = 3L;
+
+    /** Длина стрелы от хвоста до острия; по ней же сервер считает попадание. */
+    public static final double LENGTH    = 54.0;
+    /** Визуальная толщина стрелы (размах оперения). */
+    public static final double THICKNESS = 12.0;
+}
@@ -6,15 +6,17 @@ import java.io.Serializable;
 /**
  * Краткая информация об игроке в составе комнаты.
  *
+ * @param slot     номер слота в комнате, которым игрок обозначен в игровых снимках
  * @param playerId идентификатор игрока
  * @param nickname никнейм игрока
  * @param ready    признак готовности к старту или продолжению
  */
 public record PlayerInfo(
+        int slot,
         String playerId,
         String nickname,
         boolean ready
 ) implements Serializable {
     @Serial
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 }
\ No newline at end of file
@@ -6,8 +6,10 @@ import java.io.Serializable;
 /**
  * Полное клиентское представление игрока внутри игрового кадра.
  *
- * @param playerId        идентификатор игрока
- * @param nickname        никнейм игрока
+ * <p>Вместо идентификатора и никнейма снимок несёт номер слота в комнате; соответствие слота
+ * игроку клиент берёт из {@link PlayerInfo} в {@code RoomJoinedMessage} / {@code RoomUpdatedMessage}.</p>
+ *
+ * @param slot            номер слота игрока в комнате
  * @param archerX         координата X лучника
  * @param archerY         координата Y лучника
  * @param aimAngleDegrees угол прицеливания в градусах
@@ -15,8 +17,7 @@ import java.io.Serializable;
  * @param score           текущий счёт игрока
  */
 public record PlayerStateDto(
-        String playerId,
-        String nickname,
+        int slot,
         double archerX,
         double archerY,
         double aimAngleDegrees,
@@ -24,5 +25,5 @@ public record PlayerStateDto(
         int score
 ) implements Serializable {
     @Serial
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.event.CreateRoomEvent;
+import org.example.marksmanfx.common.event.FireArrowEvent;
+import org.example.marksmanfx.common.event.HeartbeatEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
+import org.example.marksmanfx.common.event.JoinLobbyEvent;
+import org.example.marksmanfx.common.event.JoinRoomEvent;
+import org.example.marksmanfx.common.event.LeaveRoomEvent;
+import org.example.marksmanfx.common.event.PauseRequestEvent;
+import org.example.marksmanfx.common.event.PingEvent;
+import org.example.marksmanfx.common.event.PlayerReadyEvent;
+import org.example.marksmanfx.common.event.PongEvent;
+import org.example.marksmanfx.common.event.QuickMatchEvent;
+import org.example.marksmanfx.common.event.RematchRequestEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
+import org.example.marksmanfx.common.message.ConnectedMessage;
+import org.example.marksmanfx.common.message.ErrorMessage;
+import org.example.marksmanfx.common.message.GameOverMessage;
+import org.example.marksmanfx.common.message.GameStartMessage;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.HeartbeatMessage;
+import org.example.marksmanfx.common.message.LobbyStateMessage;
+import org.example.marksmanfx.common.message.PauseStateMessage;
+import org.example.marksmanfx.common.message.PingMessage;
+import org.example.marksmanfx.common.message.PlayerDisconnectedMessage;
+import org.example.marksmanfx.common.message.PongMessage;
+import org.example.marksmanfx.common.message.RematchOfferMessage;
+import org.example.marksmanfx.common.message.RoomJoinedMessage;
+import org.example.marksmanfx.common.message.RoomUpdatedMessage;
+import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.message.TechnicalWinMessage;
+import org.example.marksmanfx.common.model.ArrowDto;
+import org.example.marksmanfx.common.model.GamePhase;
+import org.example.marksmanfx.common.model.PlayerInfo;
+import org.example.marksmanfx.common.model.PlayerStateDto;
+import org.example.marksmanfx.common.model.RoomInfo;
+import org.example.marksmanfx.common.model.TargetDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ручной бинарный кодек для всех событий и сообщений протокола.
+ *
+ * <p>Поля пишутся подряд в порядке компонент record без имён и дескрипторов классов.
+ * При добавлении поля в record его нужно добавить и сюда — в конец тела,
+ * чтобы старые поля сохраняли свои смещения.</p>
+ */
+public final class BinaryCodec implements WireCodec {
+
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    public static final int ID = 1;
+
+    private static final GamePhase[] PHASES     = GamePhase.values();
+    private static final int         NULL_PHASE = 0xFF;
+
+    private BinaryCodec() {}
+
+    @Override public int id()      { return ID; }
+    @Override public String name() { return "binary"; }
+
+    // ─── События клиента ─────────────────────────────────────────────────────
+
+    @Override
+    public void writeEvent(ClientEvent event, WireWriter out) {
+        switch (event) {
+            case JoinLobbyEvent e      -> out.putString(e.nickname()).putShort(e.protocolVersion()).putInt(e.capabilities())
+                    .putLong(e.resumeToken());
+            case CreateRoomEvent e     -> out.putString(e.roomName());
+            case JoinRoomEvent e       -> out.putString(e.roomId());
+            case QuickMatchEvent e     -> {}
+            case PlayerReadyEvent e    -> out.putBoolean(e.ready());
+            case FireArrowEvent e      -> out.putDouble(e.chargeRatio());
+            case PauseRequestEvent e   -> out.putBoolean(e.pausing());
+            case RematchRequestEvent e -> {}
+            case LeaveRoomEvent e      -> {}
+            case SnapshotAckEvent e    -> out.putInt(e.tick());
+            case InputFrameEvent e     -> out.putInt(e.seq()).putByte(e.buttons());
+            case HeartbeatEvent e      -> {}
+            case PingEvent e           -> out.putLong(e.clientSendNanos());
+            case PongEvent e           -> out.putLong(e.serverSendNanos()).putLong(e.clientReceiveNanos())
+                    .putLong(e.clientSendNanos());
+        }
+    }
+
+    @Override
+    public ClientEvent readEvent(ClientEventType type, WireReader in) throws ProtocolException {
+        return switch (type) {
+            case JOIN_LOBBY      -> new JoinLobbyEvent(in.getString(), optionalShort(in), optionalInt(in),
+                    optionalLong(in));
+            case CREATE_ROOM     -> new CreateRoomEvent(in.getString());
+            case JOIN_ROOM       -> new JoinRoomEvent(in.getString());
+            case QUICK_MATCH     -> new QuickMatchEvent();
+            case PLAYER_READY    -> new PlayerReadyEvent(in.getBoolean());
+            case FIRE_ARROW      -> new FireArrowEvent(in.getDouble());
+            case PAUSE_REQUEST   -> new PauseRequestEvent(in.getBoolean());
+            case REMATCH_REQUEST -> new RematchRequestEvent();
+            case LEAVE_ROOM      -> new LeaveRoomEvent();
+            case SNAPSHOT_ACK    -> new SnapshotAckEvent(in.getInt());
+            case INPUT_FRAME     -> new InputFrameEvent(in.getInt(), in.getByte());
+            case HEARTBEAT       -> new HeartbeatEvent();
+            case PING            -> new PingEvent(in.getLong());
+            case PONG            -> new PongEvent(in.getLong(), in.getLong(), in.getLong());
+        };
+    }
+
+    // ─── Сообщения сервера ───────────────────────────────────────────────────
+
+    @Override
+    public void writeMessage(ServerMessage message, WireWriter out) {
+        switch (message) {
+            case ConnectedMessage m -> out.putString(m.playerId()).putString(m.nickname()).putLong(m.udpToken())
+                    .putShort(m.protocolVersion()).putInt(m.capabilities()).putLong(m.resumeToken());
+            case LobbyStateMessage m -> {
+                out.putShort(m.rooms().size());
+                for (RoomInfo r : m.rooms()) writeRoomInfo(r, out);
+            }
+            case RoomJoinedMessage m -> {
+                writeRoomInfo(m.roomInfo(), out);
+                writePlayerInfos(m.players(), out);
+                out.putString(m.localPlayerId());
+            }
+            case RoomUpdatedMessage m -> {
+                writeRoomInfo(m.roomInfo(), out);
+                writePlayerInfos(m.players(), out);
+            }
+            case GameStartMessage m -> {}
+            case GameStateMessage m -> writeGameState(m, out);
+            case GameOverMessage m -> out.putString(m.winnerId()).putString(m.winnerNickname());
+            case TechnicalWinMessage m -> out.putString(m.winnerId())
+                    .putString(m.winnerNickname())
+                    .putString(m.disconnectedNickname());
+            case RematchOfferMessage m -> {
+                out.putShort(m.voterNicknames().size());
+                for (String nick : m.voterNicknames()) out.putString(nick);
+                out.putInt(m.totalPlayers());
+            }
+            case PauseStateMessage m -> {
+                writePhase(m.phase(), out);
+                out.putString(m.requesterId()).putString(m.requesterNickname());
+            }
+            case PlayerDisconnectedMessage m -> out.putString(m.playerId()).putString(m.nickname());
+            case ErrorMessage m -> out.putString(m.text());
+            case GameStateDeltaMessage m -> out.putInt(m.tick())
+                    .putInt(m.baseTick())
+                    .putInt(m.payload().length)
+                    .putBytes(m.payload(), 0, m.payload().length);
+            case HeartbeatMessage m -> {}
+            case PingMessage m -> out.putLong(m.serverSendNanos());
+            case PongMessage m -> out.putLong(m.clientSendNanos())
+                    .putLong(m.serverReceiveNanos())
+                    .putLong(m.serverSendNanos());
+        }
+    }
+
+    @Override
+    public ServerMessage readMessage(ServerMessageType type, WireReader in) throws ProtocolException {
+        return switch (type) {
+            case CONNECTED    -> new ConnectedMessage(in.getString(), in.getString(), in.getLong(),
+                    optionalShort(in), optionalInt(in), optionalLong(in));
+            case LOBBY_STATE  -> {
+                int n = in.getShort();
+                List<RoomInfo> rooms = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) rooms.add(readRoomInfo(in));
+                yield new LobbyStateMessage(rooms);
+            }
+            case ROOM_JOINED  -> new RoomJoinedMessage(readRoomInfo(in), readPlayerInfos(in), in.getString());
+            case ROOM_UPDATED -> new RoomUpdatedMessage(readRoomInfo(in), readPlayerInfos(in));
+            case GAME_START   -> new GameStartMessage();
+            case GAME_STATE   -> readGameState(in);
+            case GAME_OVER    -> new GameOverMessage(in.getString(), in.getString());
+            case TECHNICAL_WIN -> new TechnicalWinMessage(in.getString(), in.getString(), in.getString());
+            case REMATCH_OFFER -> {
+                int n = in.getShort();
+                List<String> voters = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) voters.add(in.getString());
+                yield new RematchOfferMessage(voters, in.getInt());
+            }
+            case PAUSE_STATE  -> new PauseStateMessage(readPhase(in), in.getString(), in.getString());
+            case PLAYER_DISCONNECTED -> new PlayerDisconnectedMessage(in.getString(), in.getString());
+            case ERROR        -> new ErrorMessage(in.getString());
+            case GAME_STATE_DELTA -> new GameStateDeltaMessage(in.getInt(), in.getInt(), in.getBytes(in.getInt()));
+            case HEARTBEAT    -> new HeartbeatMessage();
+            case PING         -> new PingMessage(in.getLong());
+            case PONG         -> new PongMessage(in.getLong(), in.getLong(), in.getLong());
+        };
+    }
+
+    // ─── Поля, добавленные позже ─────────────────────────────────────────────
+
+    // Версия и возможности дописаны в конец тела: у собеседника до согласования их нет, читаем как 0.
+    private static int optionalShort(WireReader in) throws ProtocolException {
+        return in.remaining() > 0 ? in.getShort() : 0;
+    }
+
+    private static int optionalInt(WireReader in) throws ProtocolException {
+        return in.remaining() > 0 ? in.getInt() : 0;
+    }
+
+    private static long optionalLong(WireReader in) throws ProtocolException {
+        return in.remaining() > 0 ? in.getLong() : 0;
+    }
+
+    // ─── Снимок игрового мира ────────────────────────────────────────────────
+
+    /**
+     * Координаты и углы квантуются с точностью {@link SnapshotPrecision#configured()},
+     * байт точности идёт первым. Квантованные поля каждого элемента упакованы по битам
+     * и выровнены по байту в конце элемента.
+     */
+    private static void writeGameState(GameStateMessage m, WireWriter out) {
+        SnapshotPrecision prec = SnapshotPrecision.configured();
+        BitWriter bits = new BitWriter(out);
+        prec.write(out);
+        out.putByte(m.players().size());
+        for (PlayerStateDto p : m.players()) {
+            out.putByte(p.slot()).putBoolean(p.crouched()).putInt(p.score());
+            bits.write(prec.quantizePosition(p.archerX()), prec.positionBits())
+                .write(prec.quantizePosition(p.archerY()), prec.positionBits())
+                .write(prec.quantizeAngle(p.aimAngleDegrees()), prec.angleBits())
+                .flush();
+        }
+        out.putByte(m.arrows().size());
+        for (ArrowDto a : m.arrows()) {
+            out.putByte(a.ownerSlot()).putBoolean(a.active());
+            bits.write(prec.quantizePosition(a.x()), prec.positionBits())
+                .write(prec.quantizePosition(a.y()), prec.positionBits())
+                .write(prec.quantizeAngle(a.angleDegrees()), prec.angleBits())
+                .flush();
+        }
+        writeTarget(m.nearTarget(), prec, bits, out);
+        writeTarget(m.farTarget(), prec, bits, out);
+        writePhase(m.phase(), out);
+    }
+
+    private static GameStateMessage readGameState(WireReader in) throws ProtocolException {
+        SnapshotPrecision prec = SnapshotPrecision.read(in);
+        BitReader bits = new BitReader(in);
+        int playerCount = in.getByte();
+        List<PlayerStateDto> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            int     slot     = in.getByte();
+            boolean crouched = in.getBoolean();
+            int     score    = in.getInt();
+            players.add(new PlayerStateDto(slot,
+                    prec.dequantizePosition(bits.read(prec.positionBits())),
+                    prec.dequantizePosition(bits.read(prec.positionBits())),
+                    prec.dequantizeAngle(bits.read(prec.angleBits())),
+                    crouched, score));
+            bits.align();
+        }
+        int arrowCount = in.getByte();
+        List<ArrowDto> arrows = new ArrayList<>(arrowCount);
+        for (int i = 0; i < arrowCount; i++) {
+            int     ownerSlot = in.getByte();
+            boolean active    = in.getBoolean();
+            arrows.add(new ArrowDto(ownerSlot, active,
+                    prec.dequantizePosition(bits.read(prec.positionBits())),
+                    prec.dequantizePosition(bits.read(prec.positionBits())),
+                    prec.dequantizeAngle(bits.read(prec.angleBits()))));
+            bits.align();
+        }
+        TargetDto near = readTarget(prec, bits, in);
+        TargetDto far  = readTarget(prec, bits, in);
+        return new GameStateMessage(players, arrows, near, far, readPhase(in));
+    }
+
+    private static void writeTarget(TargetDto t, SnapshotPrecision prec, BitWriter bits, WireWriter out) {
+        out.putByte(t.points());
+        bits.write(prec.quantizePosition(t.x()), prec.positionBits())
+            .write(prec.quantizePosition(t.y()), prec.positionBits())
+            .write(prec.quantizePosition(t.size()), prec.positionBits())
+            .flush();
+    }
+
+    private static TargetDto readTarget(SnapshotPrecision prec, BitReader bits, WireReader in) throws ProtocolException {
+        int points = in.getByte();
+        TargetDto t = new TargetDto(
+                prec.dequantizePosition(bits.read(prec.positionBits())),
+                prec.dequantizePosition(bits.read(prec.positionBits())),
+                prec.dequantizePosition(bits.read(prec.positionBits())),
+                points);
+        bits.align();
+        return t;
+    }
+
+    // ─── Комнаты и игроки ────────────────────────────────────────────────────
+
+    private static void writeRoomInfo(RoomInfo r, WireWriter out) {
+        out.putString(r.roomId())
+           .putString(r.roomName())
+           .putShort(r.playerCount())
+           .putShort(r.maxPlayers());
+        writePhase(r.phase(), out);
+    }
+
+    private static RoomInfo readRoomInfo(WireReader in) throws ProtocolException {
+        return new RoomInfo(in.getString(), in.getString(), in.getShort(), in.getShort(), readPhase(in));
+    }
+
+    private static void writePlayerInfos(List<PlayerInfo> players, WireWriter out) {
+        out.putByte(players.size());
+        for (PlayerInfo p : players) {
+            out.putByte(p.slot()).putString(p.playerId()).putString(p.nickname()).putBoolean(p.ready());
+        }
+    }
+
+    private static List<PlayerInfo> readPlayerInfos(WireReader in) throws ProtocolException {
+        int n = in.getByte();
+        List<PlayerInfo> players = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            players.add(new PlayerInfo(in.getByte(), in.getString(), in.getString(), in.getBoolean()));
+        }
+        return players;
+    }
+
+    private static void writePhase(GamePhase phase, WireWriter out) {
+        out.putByte(phase == null ? NULL_PHASE : phase.ordinal());
+    }
+
+    private static GamePhase readPhase(WireReader in) throws ProtocolException {
+        int ordinal = in.getByte();
+        if (ordinal == NULL_PHASE) return null;
+        if (ordinal >= PHASES.length) throw new ProtocolException("Неизвестная фаза: " + ordinal);
+        return PHASES[ordinal];
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Чтение значений, упакованных {@link BitWriter}. Байты берутся из {@link WireReader}
+ * только по мере надобности, а {@link #align()} отбрасывает остаток текущего байта.
+ */
+final class BitReader {
+
+    private final WireReader in;
+    private long             acc;
+    private int              count;
+
+    BitReader(WireReader in) {
+        this.in = in;
+    }
+
+    /** Читаем беззнаковое значение из {@code bits} бит, не больше 32. */
+    int read(int bits) throws ProtocolException {
+        while (count < bits) {
+            acc    = acc << 8 | in.getByte();
+            count += 8;
+        }
+        count -= bits;
+        int v = (int) ((acc >>> count) & ((1L << bits) - 1));
+        acc &= (1L << count) - 1;
+        return v;
+    }
+
+    void align() {
+        acc   = 0;
+        count = 0;
+    }
+}
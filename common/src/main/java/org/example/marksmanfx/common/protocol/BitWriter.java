@@ -0,0 +1,37 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Упаковка значений произвольной разрядности в {@link WireWriter}, старшие биты первыми.
+ * {@link #flush()} дописывает неполный байт нулями: запись снимка выравнивается по байту
+ * после каждого элемента, чтобы разделы можно было откатывать через {@link WireWriter#truncate}.
+ */
+final class BitWriter {
+
+    private final WireWriter out;
+    private long             acc;
+    private int              count;
+
+    BitWriter(WireWriter out) {
+        this.out = out;
+    }
+
+    /** Пишем младшие {@code bits} бит значения, не больше 32. */
+    BitWriter write(int value, int bits) {
+        acc    = acc << bits | (value & ((1L << bits) - 1));
+        count += bits;
+        while (count >= 8) {
+            count -= 8;
+            out.putByte((int) (acc >>> count));
+        }
+        acc &= (1L << count) - 1;
+        return this;
+    }
+
+    void flush() {
+        if (count > 0) {
+            out.putByte((int) (acc << (8 - count)));
+            acc   = 0;
+            count = 0;
+        }
+    }
+}
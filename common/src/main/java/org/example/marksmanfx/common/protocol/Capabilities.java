@@ -0,0 +1,57 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Версия протокола и флаги возможностей, которыми клиент и сервер обмениваются при входе.
+ *
+ * <p>Клиент перечисляет в {@code JoinLobbyEvent} всё, что умеет, сервер оставляет только то,
+ * что поддерживает и включил сам, и возвращает результат в {@code ConnectedMessage}. Набор
+ * фиксируется на всю сессию. Кодек тела выбирается раньше, преамбулой соединения (см. {@link Frames}).</p>
+ *
+ * <p>Новые поля в конце тела старый получатель пропускает, а новый, не найдя их, читает как нули:
+ * версия 0 без флагов означает клиента или сервер, выпущенных до согласования. Номера битов —
+ * часть протокола: их нельзя переиспользовать, новая возможность получает следующий свободный бит.</p>
+ */
+public final class Capabilities {
+
+    /** Версия протокола этой сборки; растёт, когда меняется смысл уже существующих кадров. */
+    public static final int VERSION     = 2;
+    /**
+     * Наименьшая версия, с которой сервер играет. С версии 2 ввод идёт только кадрами
+     * {@code InputFrameEvent}: события отдельных клавиш упразднены, и флага для кадров больше нет.
+     */
+    public static final int MIN_VERSION = 2;
+
+    /** Снимки дельтами {@code GameStateDeltaMessage} с подтверждениями; без флага — полные снимки. */
+    public static final int DELTA_SNAPSHOTS = 1;
+    /** Необязательный UDP-канал ({@link Datagrams}); без флага сервер не выдаёт токен. */
+    public static final int DATAGRAMS       = 1 << 1;
+    // Бит 1 << 2 занимал флаг кадров ввода, ставших обязательной частью версии 2; его не переиспользуем.
+    /** Крупные сообщения сервера сжимаются Deflate ({@link FrameCompression}). */
+    public static final int COMPRESSION     = 1 << 3;
+    /** Замеры задержки {@code PingEvent}/{@code PingMessage} в обе стороны ({@link ClockSync}). */
+    public static final int CLOCK_SYNC      = 1 << 4;
+    /** Токен возобновления в {@code ConnectedMessage}: после обрыва клиент возвращается в свою сессию. */
+    public static final int RESUME          = 1 << 5;
+
+    /** Всё, что умеет эта сборка. */
+    public static final int ALL = DELTA_SNAPSHOTS | DATAGRAMS | COMPRESSION | CLOCK_SYNC | RESUME;
+
+    private static final String[] NAMES = {"delta", "udp", null, "deflate", "clock", "resume"};
+
+    private Capabilities() {}
+
+    public static boolean has(int capabilities, int flag) {
+        return (capabilities & flag) == flag;
+    }
+
+    /** Флаги через запятую для журнала, например {@code delta,input}. */
+    public static String describe(int capabilities) {
+        StringBuilder sb = new StringBuilder();
+        for (int bit = 0; bit < NAMES.length; bit++) {
+            if ((capabilities & 1 << bit) == 0 || NAMES[bit] == null) continue;
+            if (!sb.isEmpty()) sb.append(',');
+            sb.append(NAMES[bit]);
+        }
+        return sb.isEmpty() ? "-" : sb.toString();
+    }
+}
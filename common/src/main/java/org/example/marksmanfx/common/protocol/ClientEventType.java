@@ -0,0 +1,107 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.event.CreateRoomEvent;
+import org.example.marksmanfx.common.event.FireArrowEvent;
+import org.example.marksmanfx.common.event.HeartbeatEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
+import org.example.marksmanfx.common.event.JoinLobbyEvent;
+import org.example.marksmanfx.common.event.JoinRoomEvent;
+import org.example.marksmanfx.common.event.LeaveRoomEvent;
+import org.example.marksmanfx.common.event.PauseRequestEvent;
+import org.example.marksmanfx.common.event.PingEvent;
+import org.example.marksmanfx.common.event.PlayerReadyEvent;
+import org.example.marksmanfx.common.event.PongEvent;
+import org.example.marksmanfx.common.event.QuickMatchEvent;
+import org.example.marksmanfx.common.event.RematchRequestEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Тег типа на проводе для каждого подтипа {@link ClientEvent}.
+ *
+ * <p>Значения тегов — часть протокола: их нельзя переиспользовать или менять местами,
+ * новые типы получают следующий свободный номер. Теги 6–8 принадлежали событиям
+ * нажатия клавиш MOVE / AIM / CROUCH, которые заменил {@link #INPUT_FRAME}.</p>
+ */
+public enum ClientEventType {
+    // Второй аргумент — наибольшая длина тела в BinaryCodec; строки — 2 байта длины и до MAX_TEXT_BYTES UTF-8.
+    // JOIN_LOBBY: ник, версия протокола (2), возможности (4), токен возобновления сессии (8).
+    JOIN_LOBBY(1, 2 + ClientEventType.MAX_TEXT_BYTES + 2 + 4 + 8),
+    CREATE_ROOM(2, 2 + ClientEventType.MAX_TEXT_BYTES),
+    JOIN_ROOM(3, 2 + 64),
+    QUICK_MATCH(4, 0),
+    PLAYER_READY(5, 1),
+    FIRE_ARROW(9, 8),
+    PAUSE_REQUEST(10, 1),
+    REMATCH_REQUEST(11, 0),
+    LEAVE_ROOM(12, 0),
+    SNAPSHOT_ACK(13, 4),
+    INPUT_FRAME(14, 5),
+    HEARTBEAT(15, 0),
+    PING(16, 8),
+    PONG(17, 24);
+
+    /**
+     * Наибольшая длина ника и названия комнаты в байтах UTF-8. Сервер разрывает соединение
+     * на кадре длиннее лимита, поэтому клиент проверяет текст до отправки ({@link #fitsText}).
+     */
+    public static final int MAX_TEXT_BYTES = 1024;
+
+    private static final ClientEventType[] BY_TAG = new ClientEventType[256];
+
+    static {
+        for (ClientEventType t : values()) BY_TAG[t.tag] = t;
+    }
+
+    private final int tag;
+    private final int maxBody;
+
+    ClientEventType(int tag, int maxBody) {
+        this.tag     = tag;
+        this.maxBody = maxBody;
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    /**
+     * Наибольшая длина тела кадра в {@link BinaryCodec}. Сервер проверяет её по заголовку,
+     * до чтения тела, поэтому клиент не может заставить его выделить память под огромный кадр.
+     */
+    public int maxBody() {
+        return maxBody;
+    }
+
+    /** Помещается ли строка в лимит {@link #MAX_TEXT_BYTES}. */
+    public static boolean fitsText(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length <= MAX_TEXT_BYTES;
+    }
+
+    /** Тип конкретного события; switch по sealed-иерархии проверяется компилятором на полноту. */
+    public static ClientEventType of(ClientEvent event) {
+        return switch (event) {
+            case JoinLobbyEvent e      -> JOIN_LOBBY;
+            case CreateRoomEvent e     -> CREATE_ROOM;
+            case JoinRoomEvent e       -> JOIN_ROOM;
+            case QuickMatchEvent e     -> QUICK_MATCH;
+            case PlayerReadyEvent e    -> PLAYER_READY;
+            case FireArrowEvent e      -> FIRE_ARROW;
+            case PauseRequestEvent e   -> PAUSE_REQUEST;
+            case RematchRequestEvent e -> REMATCH_REQUEST;
+            case LeaveRoomEvent e      -> LEAVE_ROOM;
+            case SnapshotAckEvent e    -> SNAPSHOT_ACK;
+            case InputFrameEvent e     -> INPUT_FRAME;
+            case HeartbeatEvent e      -> HEARTBEAT;
+            case PingEvent e           -> PING;
+            case PongEvent e           -> PONG;
+        };
+    }
+
+    /** @return тип по тегу или {@code null}, если тег неизвестен */
+    public static ClientEventType fromTag(int tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка задержки и смещения часов собеседника по замерам ping/pong.
+ *
+ * <p>Каждый замер даёт четыре отметки: {@code t0} — отправка замера по нашим часам, {@code t1} и
+ * {@code t2} — приём и ответ по часам собеседника, {@code t3} — приём ответа по нашим часам.
+ * Как в NTP, время в сети {@code (t3 - t0) - (t2 - t1)} не включает задержку ответа у собеседника,
+ * а смещение {@code ((t1 - t0) + (t2 - t3)) / 2} точно, если путь туда и обратно занимает одинаковое время.</p>
+ *
+ * <p>Задержка сглаживается как в TCP (RFC 6298): среднее с весом 1/8, разброс с весом 1/4;
+ * разброс и есть джиттер. Смещение берётся из замера с наименьшей задержкой среди последних
+ * {@value #WINDOW}: чем короче путь, тем меньше в нём очередей, искажающих смещение.</p>
+ *
+ * <p>Отметки — показания {@link System#nanoTime()}, у каждой стороны своё начало отсчёта, поэтому
+ * смещение переводит отметки собеседника в наши часы, а не сравнивает время суток.
+ * Замеры записывает один поток — поток чтения соединения, читать оценки можно из любого.</p>
+ */
+public final class ClockSync {
+
+    private static final int  WINDOW  = 8;
+    /** Замеры дольше этого — потерянные и случайно совпавшие ответы, а не сеть. */
+    private static final long MAX_RTT = TimeUnit.SECONDS.toNanos(10);
+
+    private final long[] windowRtt    = new long[WINDOW];
+    private final long[] windowOffset = new long[WINDOW];
+
+    private volatile long rttNanos;
+    private volatile long minRttNanos;
+    private volatile long jitterNanos;
+    private volatile long offsetNanos;
+    private volatile int  samples;
+
+    public ClockSync() {}
+
+    /**
+     * Учитываем замер.
+     *
+     * @return время в сети по этому замеру или {@code -1}, если отметки противоречат друг другу
+     *         и замер отброшен
+     */
+    public long sample(long localSend, long remoteReceive, long remoteSend, long localReceive) {
+        long hold = remoteSend - remoteReceive;
+        long rtt  = (localReceive - localSend) - hold;
+        if (hold < 0 || rtt < 0 || rtt > MAX_RTT) return -1;
+        long offset = ((remoteReceive - localSend) + (remoteSend - localReceive)) / 2;
+
+        int n = samples;
+        if (n == 0) {
+            rttNanos    = rtt;
+            minRttNanos = rtt;
+            jitterNanos = rtt / 2;
+        } else {
+            minRttNanos = Math.min(minRttNanos, rtt);
+            jitterNanos = jitterNanos + (Math.abs(rttNanos - rtt) - jitterNanos) / 4;
+            rttNanos    = rttNanos + (rtt - rttNanos) / 8;
+        }
+        windowRtt[n % WINDOW]    = rtt;
+        windowOffset[n % WINDOW] = offset;
+
+        int best = 0;
+        for (int i = 1; i < Math.min(n + 1, WINDOW); i++) {
+            if (windowRtt[i] < windowRtt[best]) best = i;
+        }
+        offsetNanos = windowOffset[best];
+        samples     = n + 1;
+        return rtt;
+    }
+
+    /** Сглаженное время в сети туда и обратно; 0, пока замеров нет. */
+    public long rttNanos() {
+        return rttNanos;
+    }
+
+    /**
+     * Наименьшее время в сети за всё соединение — задержка самого пути без очередей.
+     * Насколько сглаженное время его превышает, настолько растут очереди на пути.
+     */
+    public long minRttNanos() {
+        return minRttNanos;
+    }
+
+    /** Средний разброс времени в сети. */
+    public long jitterNanos() {
+        return jitterNanos;
+    }
+
+    /** На сколько часы собеседника опережают наши. */
+    public long offsetNanos() {
+        return offsetNanos;
+    }
+
+    public int samples() {
+        return samples;
+    }
+
+    /** Отметка по часам собеседника в наших часах. */
+    public long toLocal(long remoteNanos) {
+        return remoteNanos - offsetNanos;
+    }
+
+    /** Сводка для журнала, например {@code RTT 12.4 мс, джиттер 0.8 мс}. */
+    public String describe() {
+        if (samples == 0) return "RTT ещё не измерен";
+        return String.format("RTT %.1f мс, джиттер %.1f мс", rttNanos / 1e6, jitterNanos / 1e6);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Формат датаграмм необязательного UDP-канала.
+ *
+ * <p>UDP открывается на том же номере порта, что и TCP, и несёт только то, что не страшно
+ * потерять: снимки от сервера, подтверждения снимков и состояние клавиш движения и прицела
+ * от клиента. Лобби, комнаты и голосования остаются на TCP.</p>
+ *
+ * <p>Клиент → сервер:</p>
+ * <pre>
+ *   i64 token  — из {@code ConnectedMessage}, связывает датаграмму с TCP-сессией
+ *   i32 seq    — 0 для приветствия, дальше строго растёт; устаревшие датаграммы сервер отбрасывает
+ *   ...        — ноль или несколько кадров {@link Frames} подряд
+ * </pre>
+ * <p>Сервер → клиент:</p>
+ * <pre>
+ *   u8  kind   — {@link #HELLO_ACK} или {@link #FRAMES}
+ *   ...        — для FRAMES: кадры {@link Frames} подряд
+ * </pre>
+ */
+public final class Datagrams {
+
+    /** Больше не отправляем по UDP: такой кадр уходит по TCP, чтобы не зависеть от фрагментации IP. */
+    public static final int MAX_SIZE      = 1200;
+    public static final int CLIENT_HEADER = 12;
+    public static final int HELLO_SEQ     = 0;
+
+    public static final int HELLO_ACK = 1;
+    public static final int FRAMES    = 2;
+
+    private Datagrams() {}
+
+    /** Датаграмма клиента из готовых кадров. */
+    public static ByteBuffer clientDatagram(long token, int seq, List<byte[]> frames) {
+        int size = CLIENT_HEADER;
+        for (byte[] f : frames) size += f.length;
+        ByteBuffer buf = ByteBuffer.allocate(size).putLong(token).putInt(seq);
+        for (byte[] f : frames) buf.put(f);
+        return buf.flip();
+    }
+
+    /** Записываем в {@code into} датаграмму сервера с одним кадром и готовим буфер к отправке. */
+    public static ByteBuffer serverDatagram(ByteBuffer into, ByteBuffer frame) {
+        return into.put((byte) FRAMES).put(frame).flip();
+    }
+
+    public static ByteBuffer helloAck() {
+        return ByteBuffer.allocate(1).put((byte) HELLO_ACK).flip();
+    }
+
+    /** Разбираем кадры до конца буфера; обрезанный кадр считается нарушением протокола. */
+    public static List<Frame> readFrames(ByteBuffer buf) throws ProtocolException {
+        List<Frame> frames = new ArrayList<>(4);
+        while (buf.hasRemaining()) {
+            if (buf.remaining() < Frames.HEADER_SIZE) throw new ProtocolException("Обрезанный заголовок кадра в датаграмме");
+            int tag    = buf.get() & 0xFF;
+            int flags  = buf.get() & 0xFF;
+            int length = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                throw new ProtocolException("Неверная длина кадра в датаграмме: " + length);
+            }
+            byte[] body = new byte[length];
+            buf.get(body);
+            frames.add(new Frame(tag, flags, body));
+        }
+        return frames;
+    }
+}
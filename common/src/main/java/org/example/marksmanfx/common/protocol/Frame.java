@@ -0,0 +1,11 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Один прочитанный из сокета кадр: тег типа, флаги и ещё не разобранное тело.
+ *
+ * @param tag   тег {@link ClientEventType} или {@link ServerMessageType} в зависимости от направления
+ * @param flags битовые флаги кадра, см. {@link Frames}
+ * @param body  тело кадра в формате кодека соединения
+ */
+public record Frame(int tag, int flags, byte[] body) {
+}
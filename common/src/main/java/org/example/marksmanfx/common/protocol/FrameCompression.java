@@ -0,0 +1,91 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие тела кадра алгоритмом Deflate (флаг {@link Frames#FLAG_DEFLATE}).
+ *
+ * <p>Сжимаются только крупные и повторяющиеся сообщения вроде списка комнат, и только для
+ * соединений, согласовавших {@link Capabilities#COMPRESSION}. Заголовок кадра остаётся как есть,
+ * в поле длины — длина сжатого тела. Распакованное тело не может быть длиннее {@link Frames#MAX_BODY}:
+ * маленький кадр не заставит получателя выделить гигабайт.</p>
+ *
+ * <p>{@link Deflater} держит заметный буфер вне кучи, поэтому экземпляры переиспользуются через
+ * общий пул, а не создаются на каждое сообщение и не закрепляются за потоками: при виртуальных
+ * потоках на каждого клиента это были бы тысячи экземпляров.</p>
+ */
+public final class FrameCompression {
+
+    /** Быстрый уровень: списки комнат и так сжимаются в разы, а кадр ждёт в очереди отправки. */
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private FrameCompression() {}
+
+    /**
+     * Сжимаем тело готового кадра.
+     *
+     * @return новый кадр с флагом {@link Frames#FLAG_DEFLATE} или {@code null}, если сжатие не уменьшило кадр
+     */
+    public static byte[] deflate(byte[] frame) {
+        int      bodyLength = frame.length - Frames.HEADER_SIZE;
+        Deflater deflater   = DEFLATERS.poll();
+        if (deflater == null) deflater = new Deflater(LEVEL);
+        try {
+            deflater.setInput(frame, Frames.HEADER_SIZE, bodyLength);
+            deflater.finish();
+            // Сжатие, которое не экономит хотя бы байт, не нужно: такой буфер и ограничивает вывод.
+            byte[] out = new byte[frame.length - 1];
+            int    n   = Frames.HEADER_SIZE;
+            while (!deflater.finished() && n < out.length) {
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            if (!deflater.finished()) return null;
+            byte[] result = Arrays.copyOf(out, n);
+            result[0] = frame[0];
+            result[1] = (byte) (frame[1] | Frames.FLAG_DEFLATE);
+            ByteBuffer.wrap(result).putInt(2, n - Frames.HEADER_SIZE);
+            return result;
+        } finally {
+            deflater.reset();
+            DEFLATERS.offer(deflater);
+        }
+    }
+
+    /** Распаковываем тело кадра; кадр без флага возвращаем как есть. */
+    public static Frame inflate(Frame frame) throws ProtocolException {
+        if ((frame.flags() & Frames.FLAG_DEFLATE) == 0) return frame;
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) inflater = new Inflater();
+        try {
+            inflater.setInput(frame.body());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(frame.body().length * 4);
+            byte[]                buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ProtocolException("Обрезанное сжатое тело кадра");
+                }
+                if (out.size() + n > Frames.MAX_BODY) {
+                    throw new ProtocolException("Распакованное тело кадра длиннее " + Frames.MAX_BODY + " байт");
+                }
+                out.write(buf, 0, n);
+            }
+            return new Frame(frame.tag(), frame.flags() & ~Frames.FLAG_DEFLATE, out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new ProtocolException("Повреждённое сжатое тело кадра: " + e.getMessage());
+        } finally {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+        }
+    }
+}
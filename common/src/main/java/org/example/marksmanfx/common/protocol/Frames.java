@@ -0,0 +1,152 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.message.ServerMessage;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Кадрирование потока поверх TCP.
+ *
+ * <p>Соединение начинается с преамбулы клиента: магическое число {@link #MAGIC}
+ * и один байт с идентификатором {@link WireCodec}. Сервер отвечает тем же кодеком.
+ * Дальше в обе стороны идут кадры:</p>
+ * <pre>
+ *   u8  tag     — тег ClientEventType / ServerMessageType
+ *   u8  flags   — {@link #FLAG_DEFLATE} или 0, остальные биты зарезервированы
+ *   i32 length  — длина тела в байтах
+ *   ...         — тело в формате выбранного кодека
+ * </pre>
+ *
+ * <p>Длина тела проверяется по заголовку, до выделения памяти: кадр события клиента
+ * не может быть длиннее лимита своего типа ({@link WireCodec#maxEventBody}), любой кадр —
+ * длиннее {@link #MAX_BODY}. Неизвестный тег события отвергается там же.</p>
+ *
+ * <p>Крупные сообщения сервера могут приходить сжатыми ({@link FrameCompression});
+ * {@link #decodeMessage} распаковывает их сам.</p>
+ */
+public final class Frames {
+
+    /** ASCII "MXFP": отличает наш поток от случайных подключений. */
+    public static final int MAGIC         = 0x4D584650;
+    public static final int PREAMBLE_SIZE = 5;
+    public static final int HEADER_SIZE   = 6;
+    /** Наибольшее тело кадра в любую сторону; снимки и списки комнат намного меньше. */
+    public static final int MAX_BODY      = 1 << 20;
+    /** Тело сжато Deflate; ставится только сервером и только для согласовавших сжатие клиентов. */
+    public static final int FLAG_DEFLATE  = 1;
+
+    private Frames() {}
+
+    // ─── Преамбула ───────────────────────────────────────────────────────────
+
+    public static void writePreamble(OutputStream out, WireCodec codec) throws IOException {
+        WireWriter w = new WireWriter(8);
+        w.putInt(MAGIC).putByte(codec.id());
+        out.write(w.toByteArray());
+        out.flush();
+    }
+
+    public static WireCodec readPreamble(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        return parsePreamble(magic, in.readUnsignedByte());
+    }
+
+    /** Проверяем уже прочитанные поля преамбулы; используется и неблокирующим транспортом. */
+    public static WireCodec parsePreamble(int magic, int codecId) throws ProtocolException {
+        if (magic != MAGIC) {
+            throw new ProtocolException("Неверная преамбула соединения: 0x" + Integer.toHexString(magic));
+        }
+        WireCodec codec = WireCodecs.byId(codecId);
+        if (codec == null) throw new ProtocolException("Неизвестный кодек: " + codecId);
+        return codec;
+    }
+
+    // ─── Кодирование ─────────────────────────────────────────────────────────
+
+    /** Кодируем сообщение сервера в готовый к отправке кадр. */
+    public static byte[] encode(WireCodec codec, ServerMessage message) {
+        WireWriter w = new WireWriter();
+        encode(codec, message, w);
+        return w.toByteArray();
+    }
+
+    /** Дописываем кадр сообщения в {@code w}; так сервер переиспользует буфер записи между кадрами. */
+    public static void encode(WireCodec codec, ServerMessage message, WireWriter w) {
+        int start = beginFrame(w, ServerMessageType.of(message).tag());
+        codec.writeMessage(message, w);
+        endFrame(w, start);
+    }
+
+    /** Кодируем событие клиента в готовый к отправке кадр. */
+    public static byte[] encode(WireCodec codec, ClientEvent event) {
+        WireWriter w = new WireWriter();
+        int start = beginFrame(w, ClientEventType.of(event).tag());
+        codec.writeEvent(event, w);
+        endFrame(w, start);
+        return w.toByteArray();
+    }
+
+    private static int beginFrame(WireWriter w, int tag) {
+        w.putByte(tag).putByte(0).putInt(0);
+        return w.size();
+    }
+
+    /** Вписываем длину тела в заголовок кадра, который начинается за {@link #HEADER_SIZE} байт до тела. */
+    private static void endFrame(WireWriter w, int bodyStart) {
+        w.putIntAt(bodyStart - 4, w.size() - bodyStart);
+    }
+
+    // ─── Чтение ──────────────────────────────────────────────────────────────
+
+    /** Блокирующее чтение одного кадра целиком; используется клиентом для сообщений сервера. */
+    public static Frame read(DataInputStream in) throws IOException {
+        int tag    = in.readUnsignedByte();
+        int flags  = in.readUnsignedByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BODY) throw new ProtocolException("Недопустимая длина кадра: " + length);
+        return readBody(in, tag, flags, length);
+    }
+
+    /** Блокирующее чтение кадра события клиента: тег и длина проверяются до чтения тела. */
+    public static Frame readEvent(DataInputStream in, WireCodec codec) throws IOException {
+        int tag    = in.readUnsignedByte();
+        int flags  = in.readUnsignedByte();
+        int length = in.readInt();
+        checkEventHeader(codec, tag, length);
+        return readBody(in, tag, flags, length);
+    }
+
+    /**
+     * Проверяем заголовок кадра события до чтения тела.
+     *
+     * @throws ProtocolException если тег неизвестен или тело длиннее лимита этого типа
+     */
+    public static void checkEventHeader(WireCodec codec, int tag, int length) throws ProtocolException {
+        ClientEventType type = ClientEventType.fromTag(tag);
+        if (type == null) throw new ProtocolException("Неизвестный тег события: " + tag);
+        if (length < 0 || length > codec.maxEventBody(type)) {
+            throw new ProtocolException("Недопустимая длина кадра " + type + ": " + length);
+        }
+    }
+
+    private static Frame readBody(DataInputStream in, int tag, int flags, int length) throws IOException {
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return new Frame(tag, flags, body);
+    }
+
+    public static ServerMessage decodeMessage(WireCodec codec, Frame frame) throws ProtocolException {
+        ServerMessageType type = ServerMessageType.fromTag(frame.tag());
+        if (type == null) throw new ProtocolException("Неизвестный тег сообщения: " + frame.tag());
+        return codec.readMessage(type, new WireReader(FrameCompression.inflate(frame).body()));
+    }
+
+    public static ClientEvent decodeEvent(WireCodec codec, Frame frame) throws ProtocolException {
+        ClientEventType type = ClientEventType.fromTag(frame.tag());
+        if (type == null) throw new ProtocolException("Неизвестный тег события: " + frame.tag());
+        return codec.readEvent(type, new WireReader(frame.body()));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.message.ServerMessage;
+
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Прежний формат: тело кадра — поток {@link ObjectOutputStream} с одним объектом.
+ *
+ * <p>Оставлен для совместимости и отладки; каждый кадр заново несёт дескрипторы классов,
+ * поэтому по умолчанию используется {@link BinaryCodec}.</p>
+ *
+ * <p>Тело от другой стороны — недоверенные данные, поэтому {@link ObjectInputStream} читает их
+ * через {@link ObjectInputFilter}: события клиента — только записи {@code common.event},
+ * сообщения сервера — {@code common.message}, {@code common.model} и коллекции {@code java.util}.
+ * Любой другой класс, глубокий граф или большой массив отвергаются до создания объектов.</p>
+ */
+public final class JavaSerializationCodec implements WireCodec {
+
+    public static final JavaSerializationCodec INSTANCE = new JavaSerializationCodec();
+
+    public static final int ID = 2;
+
+    /** Дескрипторы классов, которые Java-сериализация добавляет к полям события (замерено: до ~110 байт). */
+    private static final int DESCRIPTOR_OVERHEAD = 256;
+
+    private static final ObjectInputFilter EVENT_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=2;maxrefs=16;maxarray=0;"
+                    + "org.example.marksmanfx.common.event.*;!*");
+    private static final ObjectInputFilter MESSAGE_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;maxrefs=4096;maxarray=" + Frames.MAX_BODY + ";"
+                    + "org.example.marksmanfx.common.message.*;org.example.marksmanfx.common.model.*;"
+                    + "java.util.*;java.lang.Enum;java.lang.Number;java.lang.Integer;java.lang.Double;"
+                    + "java.lang.Boolean;java.lang.Object;!*");
+
+    private JavaSerializationCodec() {}
+
+    @Override public int id()      { return ID; }
+    @Override public String name() { return "java"; }
+
+    @Override
+    public void writeEvent(ClientEvent event, WireWriter out) {
+        writeObject(event, out);
+    }
+
+    @Override
+    public ClientEvent readEvent(ClientEventType type, WireReader in) throws ProtocolException {
+        Object obj = readObject(in, EVENT_FILTER);
+        if (!(obj instanceof ClientEvent event) || ClientEventType.of(event) != type) {
+            throw new ProtocolException("Тело кадра не соответствует тегу " + type);
+        }
+        return event;
+    }
+
+    @Override
+    public int maxEventBody(ClientEventType type) {
+        return type.maxBody() + DESCRIPTOR_OVERHEAD;
+    }
+
+    @Override
+    public void writeMessage(ServerMessage message, WireWriter out) {
+        writeObject(message, out);
+    }
+
+    @Override
+    public ServerMessage readMessage(ServerMessageType type, WireReader in) throws ProtocolException {
+        Object obj = readObject(in, MESSAGE_FILTER);
+        if (!(obj instanceof ServerMessage message) || ServerMessageType.of(message) != type) {
+            throw new ProtocolException("Тело кадра не соответствует тегу " + type);
+        }
+        return message;
+    }
+
+    private static void writeObject(Object obj, WireWriter out) {
+        try (ObjectOutputStream oos = new ObjectOutputStream(out.asOutputStream())) {
+            oos.writeObject(obj);
+        } catch (IOException e) {
+            // Запись идёт в память, поэтому ошибка здесь означает несериализуемое поле.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object readObject(WireReader in, ObjectInputFilter filter) throws ProtocolException {
+        try (ObjectInputStream ois = new ObjectInputStream(in.asInputStream())) {
+            ois.setObjectInputFilter(filter);
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new ProtocolException("Не удалось десериализовать тело кадра: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Нарушение сетевого протокола: неизвестный тип кадра, обрезанное тело,
+ * неверная преамбула или значение вне допустимого диапазона.
+ *
+ * <p>Наследуется от {@link IOException}, чтобы сетевой код обрабатывал его
+ * так же, как обрыв соединения.</p>
+ */
+public final class ProtocolException extends IOException {
+
+    @Serial private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+
+    public ProtocolException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.message.ConnectedMessage;
+import org.example.marksmanfx.common.message.ErrorMessage;
+import org.example.marksmanfx.common.message.GameOverMessage;
+import org.example.marksmanfx.common.message.GameStartMessage;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.HeartbeatMessage;
+import org.example.marksmanfx.common.message.LobbyStateMessage;
+import org.example.marksmanfx.common.message.PauseStateMessage;
+import org.example.marksmanfx.common.message.PingMessage;
+import org.example.marksmanfx.common.message.PlayerDisconnectedMessage;
+import org.example.marksmanfx.common.message.PongMessage;
+import org.example.marksmanfx.common.message.RematchOfferMessage;
+import org.example.marksmanfx.common.message.RoomJoinedMessage;
+import org.example.marksmanfx.common.message.RoomUpdatedMessage;
+import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.message.TechnicalWinMessage;
+
+/**
+ * Тег типа на проводе для каждого подтипа {@link ServerMessage}.
+ *
+ * <p>Значения тегов — часть протокола: их нельзя переиспользовать или менять местами,
+ * новые типы получают следующий свободный номер.</p>
+ */
+public enum ServerMessageType {
+    CONNECTED(1),
+    LOBBY_STATE(2),
+    ROOM_JOINED(3),
+    ROOM_UPDATED(4),
+    GAME_START(5),
+    GAME_STATE(6),
+    GAME_OVER(7),
+    TECHNICAL_WIN(8),
+    REMATCH_OFFER(9),
+    PAUSE_STATE(10),
+    PLAYER_DISCONNECTED(11),
+    ERROR(12),
+    GAME_STATE_DELTA(13),
+    HEARTBEAT(14),
+    PING(15),
+    PONG(16);
+
+    private static final ServerMessageType[] BY_TAG = new ServerMessageType[256];
+
+    static {
+        for (ServerMessageType t : values()) BY_TAG[t.tag] = t;
+    }
+
+    private final int tag;
+
+    ServerMessageType(int tag) {
+        this.tag = tag;
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    /** Тип конкретного сообщения; switch по sealed-иерархии проверяется компилятором на полноту. */
+    public static ServerMessageType of(ServerMessage message) {
+        return switch (message) {
+            case ConnectedMessage m          -> CONNECTED;
+            case LobbyStateMessage m         -> LOBBY_STATE;
+            case RoomJoinedMessage m         -> ROOM_JOINED;
+            case RoomUpdatedMessage m        -> ROOM_UPDATED;
+            case GameStartMessage m          -> GAME_START;
+            case GameStateMessage m          -> GAME_STATE;
+            case GameOverMessage m           -> GAME_OVER;
+            case TechnicalWinMessage m       -> TECHNICAL_WIN;
+            case RematchOfferMessage m       -> REMATCH_OFFER;
+            case PauseStateMessage m         -> PAUSE_STATE;
+            case PlayerDisconnectedMessage m -> PLAYER_DISCONNECTED;
+            case ErrorMessage m              -> ERROR;
+            case GameStateDeltaMessage m     -> GAME_STATE_DELTA;
+            case HeartbeatMessage m          -> HEARTBEAT;
+            case PingMessage m               -> PING;
+            case PongMessage m               -> PONG;
+        };
+    }
+
+    /** @return тип по тегу или {@code null}, если тег неизвестен */
+    public static ServerMessageType fromTag(int tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+    }
+}
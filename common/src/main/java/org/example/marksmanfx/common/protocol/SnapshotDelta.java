@@ -0,0 +1,314 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.model.ArrowDto;
+import org.example.marksmanfx.common.model.GamePhase;
+import org.example.marksmanfx.common.model.PlayerStateDto;
+import org.example.marksmanfx.common.model.TargetDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Дельта-кодирование снимка {@link GameStateMessage} относительно базового снимка.
+ *
+ * <p>Формат тела:</p>
+ * <pre>
+ * u8 sections                      — какие разделы изменились (SECTION_*)
+ * u8 precision                     — {@link SnapshotPrecision}
+ * [u8 phase]                       — SECTION_PHASE
+ * [u8 mask, поля]                  — SECTION_NEAR / SECTION_FAR, маска TARGET_*
+ * [u8 count, count × запись игрока] — SECTION_PLAYERS
+ * [u8 count, count × запись стрелы] — SECTION_ARROWS
+ * </pre>
+ *
+ * <p>Запись элемента списка начинается с маски изменённых полей. Элемент сопоставляется
+ * с элементом базы по индексу и слоту; если пары нет, пишется бит {@link #FULL}
+ * и все поля вместе со слотом. Маска {@code 0} означает «как в базе».
+ * Без базы (ключевой кадр) все разделы и элементы пишутся целиком.</p>
+ *
+ * <p>Координаты и углы передаются квантованными ({@link SnapshotPrecision}): сначала идут
+ * байтовые поля элемента, затем упакованные по битам квантованные поля, выровненные по байту.
+ * Изменения определяются сравнением квантованных значений, поэтому сдвиг меньше шага
+ * квантования не передаётся, а покой объекта стоит один байт. Неизменное поле клиент берёт
+ * из своей базы, где оно уже восстановлено из того же квантованного значения.</p>
+ */
+public final class SnapshotDelta {
+
+    private static final int SECTION_PHASE   = 1;
+    private static final int SECTION_NEAR    = 1 << 1;
+    private static final int SECTION_FAR     = 1 << 2;
+    private static final int SECTION_PLAYERS = 1 << 3;
+    private static final int SECTION_ARROWS  = 1 << 4;
+
+    private static final int TARGET_X      = 1;
+    private static final int TARGET_Y      = 1 << 1;
+    private static final int TARGET_SIZE   = 1 << 2;
+    private static final int TARGET_POINTS = 1 << 3;
+    private static final int TARGET_ALL    = TARGET_X | TARGET_Y | TARGET_SIZE | TARGET_POINTS;
+
+    private static final int PLAYER_X      = 1;
+    private static final int PLAYER_Y      = 1 << 1;
+    private static final int PLAYER_ANGLE  = 1 << 2;
+    private static final int PLAYER_CROUCH = 1 << 3;
+    private static final int PLAYER_SCORE  = 1 << 4;
+    private static final int PLAYER_ALL    = PLAYER_X | PLAYER_Y | PLAYER_ANGLE | PLAYER_CROUCH | PLAYER_SCORE;
+
+    private static final int ARROW_ACTIVE = 1;
+    private static final int ARROW_X      = 1 << 1;
+    private static final int ARROW_Y      = 1 << 2;
+    private static final int ARROW_ANGLE  = 1 << 3;
+    private static final int ARROW_ALL    = ARROW_ACTIVE | ARROW_X | ARROW_Y | ARROW_ANGLE;
+
+    /** Элемент без пары в базе: далее идут слот и все поля. */
+    private static final int FULL = 1 << 7;
+
+    private static final GamePhase[] PHASES     = GamePhase.values();
+    private static final int         NULL_PHASE = 0xFF;
+
+    private SnapshotDelta() {}
+
+    // ─── Кодирование ─────────────────────────────────────────────────────────
+
+    /**
+     * @param base    подтверждённый клиентом снимок или {@code null} для ключевого кадра
+     * @param current текущий снимок
+     */
+    public static byte[] encode(GameStateMessage base, GameStateMessage current) {
+        return encode(base, current, SnapshotPrecision.configured());
+    }
+
+    public static byte[] encode(GameStateMessage base, GameStateMessage current, SnapshotPrecision prec) {
+        WireWriter out  = new WireWriter(128);
+        BitWriter  bits = new BitWriter(out);
+        int sectionsPos = out.size();
+        out.putByte(0);
+        prec.write(out);
+        int sections = 0;
+
+        if (base == null || base.phase() != current.phase()) {
+            sections |= SECTION_PHASE;
+            out.putByte(current.phase() == null ? NULL_PHASE : current.phase().ordinal());
+        }
+        if (writeTarget(base != null ? base.nearTarget() : null, current.nearTarget(), prec, bits, out)) {
+            sections |= SECTION_NEAR;
+        }
+        if (writeTarget(base != null ? base.farTarget() : null, current.farTarget(), prec, bits, out)) {
+            sections |= SECTION_FAR;
+        }
+        if (writePlayers(base != null ? base.players() : null, current.players(), prec, bits, out)) {
+            sections |= SECTION_PLAYERS;
+        }
+        if (writeArrows(base != null ? base.arrows() : null, current.arrows(), prec, bits, out)) {
+            sections |= SECTION_ARROWS;
+        }
+
+        out.putByteAt(sectionsPos, sections);
+        return out.toByteArray();
+    }
+
+    /** Пишем маску и изменённые поля мишени; если изменений нет, ничего не пишем и возвращаем {@code false}. */
+    private static boolean writeTarget(TargetDto base, TargetDto t, SnapshotPrecision prec,
+                                       BitWriter bits, WireWriter out) {
+        int x    = prec.quantizePosition(t.x());
+        int y    = prec.quantizePosition(t.y());
+        int size = prec.quantizePosition(t.size());
+        int mask = TARGET_ALL;
+        if (base != null) {
+            mask = 0;
+            if (prec.quantizePosition(base.x())    != x)          mask |= TARGET_X;
+            if (prec.quantizePosition(base.y())    != y)          mask |= TARGET_Y;
+            if (prec.quantizePosition(base.size()) != size)       mask |= TARGET_SIZE;
+            if (base.points()                      != t.points()) mask |= TARGET_POINTS;
+            if (mask == 0) return false;
+        }
+        out.putByte(mask);
+        if ((mask & TARGET_POINTS) != 0) out.putByte(t.points());
+        if ((mask & TARGET_X)      != 0) bits.write(x, prec.positionBits());
+        if ((mask & TARGET_Y)      != 0) bits.write(y, prec.positionBits());
+        if ((mask & TARGET_SIZE)   != 0) bits.write(size, prec.positionBits());
+        bits.flush();
+        return true;
+    }
+
+    private static boolean writePlayers(List<PlayerStateDto> base, List<PlayerStateDto> players,
+                                        SnapshotPrecision prec, BitWriter bits, WireWriter out) {
+        int start = out.size();
+        boolean changed = base == null || base.size() != players.size();
+        out.putByte(players.size());
+        for (int i = 0; i < players.size(); i++) {
+            PlayerStateDto p = players.get(i);
+            PlayerStateDto b = base != null && i < base.size() ? base.get(i) : null;
+            int x     = prec.quantizePosition(p.archerX());
+            int y     = prec.quantizePosition(p.archerY());
+            int angle = prec.quantizeAngle(p.aimAngleDegrees());
+            int mask;
+            if (b == null || b.slot() != p.slot()) {
+                mask = FULL | PLAYER_ALL;
+                out.putByte(mask).putByte(p.slot());
+            } else {
+                mask = 0;
+                if (prec.quantizePosition(b.archerX())      != x)            mask |= PLAYER_X;
+                if (prec.quantizePosition(b.archerY())      != y)            mask |= PLAYER_Y;
+                if (prec.quantizeAngle(b.aimAngleDegrees()) != angle)        mask |= PLAYER_ANGLE;
+                if (b.crouched()                            != p.crouched()) mask |= PLAYER_CROUCH;
+                if (b.score()                               != p.score())    mask |= PLAYER_SCORE;
+                out.putByte(mask);
+            }
+            if ((mask & PLAYER_CROUCH) != 0) out.putBoolean(p.crouched());
+            if ((mask & PLAYER_SCORE)  != 0) out.putInt(p.score());
+            if ((mask & PLAYER_X)      != 0) bits.write(x, prec.positionBits());
+            if ((mask & PLAYER_Y)      != 0) bits.write(y, prec.positionBits());
+            if ((mask & PLAYER_ANGLE)  != 0) bits.write(angle, prec.angleBits());
+            bits.flush();
+            changed |= mask != 0;
+        }
+        if (!changed) out.truncate(start);
+        return changed;
+    }
+
+    private static boolean writeArrows(List<ArrowDto> base, List<ArrowDto> arrows,
+                                       SnapshotPrecision prec, BitWriter bits, WireWriter out) {
+        int start = out.size();
+        boolean changed = base == null || base.size() != arrows.size();
+        out.putByte(arrows.size());
+        for (int i = 0; i < arrows.size(); i++) {
+            ArrowDto a = arrows.get(i);
+            ArrowDto b = base != null && i < base.size() ? base.get(i) : null;
+            int x     = prec.quantizePosition(a.x());
+            int y     = prec.quantizePosition(a.y());
+            int angle = prec.quantizeAngle(a.angleDegrees());
+            int mask;
+            if (b == null || b.ownerSlot() != a.ownerSlot()) {
+                mask = FULL | ARROW_ALL;
+                out.putByte(mask).putByte(a.ownerSlot());
+            } else {
+                mask = 0;
+                if (b.active()                           != a.active()) mask |= ARROW_ACTIVE;
+                if (prec.quantizePosition(b.x())         != x)          mask |= ARROW_X;
+                if (prec.quantizePosition(b.y())         != y)          mask |= ARROW_Y;
+                if (prec.quantizeAngle(b.angleDegrees()) != angle)      mask |= ARROW_ANGLE;
+                out.putByte(mask);
+            }
+            if ((mask & ARROW_ACTIVE) != 0) out.putBoolean(a.active());
+            if ((mask & ARROW_X)      != 0) bits.write(x, prec.positionBits());
+            if ((mask & ARROW_Y)      != 0) bits.write(y, prec.positionBits());
+            if ((mask & ARROW_ANGLE)  != 0) bits.write(angle, prec.angleBits());
+            bits.flush();
+            changed |= mask != 0;
+        }
+        if (!changed) out.truncate(start);
+        return changed;
+    }
+
+    // ─── Восстановление ──────────────────────────────────────────────────────
+
+    /**
+     * Восстанавливаем полный снимок.
+     *
+     * @param base    снимок, относительно которого закодирована дельта, или {@code null} для ключевого кадра
+     * @param payload тело дельты
+     * @throws ProtocolException если тело повреждено или ссылается на отсутствующие в базе поля
+     */
+    public static GameStateMessage apply(GameStateMessage base, byte[] payload) throws ProtocolException {
+        WireReader in = new WireReader(payload);
+        int sections = in.getByte();
+        SnapshotPrecision prec = SnapshotPrecision.read(in);
+        BitReader         bits = new BitReader(in);
+        if (base == null && sections != (SECTION_PHASE | SECTION_NEAR | SECTION_FAR | SECTION_PLAYERS | SECTION_ARROWS)) {
+            throw new ProtocolException("Ключевой кадр должен содержать все разделы");
+        }
+
+        GamePhase phase = base != null ? base.phase() : null;
+        if ((sections & SECTION_PHASE) != 0) phase = readPhase(in);
+
+        TargetDto near = (sections & SECTION_NEAR) != 0
+                ? readTarget(base != null ? base.nearTarget() : null, prec, bits, in)
+                : base.nearTarget();
+        TargetDto far  = (sections & SECTION_FAR) != 0
+                ? readTarget(base != null ? base.farTarget() : null, prec, bits, in)
+                : base.farTarget();
+        List<PlayerStateDto> players = (sections & SECTION_PLAYERS) != 0
+                ? readPlayers(base != null ? base.players() : null, prec, bits, in)
+                : base.players();
+        List<ArrowDto> arrows = (sections & SECTION_ARROWS) != 0
+                ? readArrows(base != null ? base.arrows() : null, prec, bits, in)
+                : base.arrows();
+
+        if (in.remaining() != 0) throw new ProtocolException("Лишние байты в дельте снимка: " + in.remaining());
+        return new GameStateMessage(players, arrows, near, far, phase);
+    }
+
+    private static TargetDto readTarget(TargetDto base, SnapshotPrecision prec, BitReader bits, WireReader in)
+            throws ProtocolException {
+        int mask = in.getByte();
+        if (base == null && mask != TARGET_ALL) throw new ProtocolException("Неполная мишень без базы");
+        int    points = (mask & TARGET_POINTS) != 0 ? in.getByte() : base.points();
+        double x      = (mask & TARGET_X)    != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : base.x();
+        double y      = (mask & TARGET_Y)    != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : base.y();
+        double size   = (mask & TARGET_SIZE) != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : base.size();
+        bits.align();
+        return new TargetDto(x, y, size, points);
+    }
+
+    private static List<PlayerStateDto> readPlayers(List<PlayerStateDto> base, SnapshotPrecision prec,
+                                                    BitReader bits, WireReader in) throws ProtocolException {
+        int n = in.getByte();
+        List<PlayerStateDto> players = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int mask = in.getByte();
+            int slot;
+            PlayerStateDto b = null;
+            if ((mask & FULL) != 0) {
+                if ((mask & PLAYER_ALL) != PLAYER_ALL) throw new ProtocolException("Неполная запись игрока");
+                slot = in.getByte();
+            } else {
+                if (base == null || i >= base.size()) throw new ProtocolException("Нет базы для игрока " + i);
+                b    = base.get(i);
+                slot = b.slot();
+            }
+            boolean crouched = (mask & PLAYER_CROUCH) != 0 ? in.getBoolean() : b.crouched();
+            int     score    = (mask & PLAYER_SCORE)  != 0 ? in.getInt()     : b.score();
+            players.add(new PlayerStateDto(slot,
+                    (mask & PLAYER_X)     != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : b.archerX(),
+                    (mask & PLAYER_Y)     != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : b.archerY(),
+                    (mask & PLAYER_ANGLE) != 0 ? prec.dequantizeAngle(bits.read(prec.angleBits()))      : b.aimAngleDegrees(),
+                    crouched, score));
+            bits.align();
+        }
+        return players;
+    }
+
+    private static List<ArrowDto> readArrows(List<ArrowDto> base, SnapshotPrecision prec,
+                                             BitReader bits, WireReader in) throws ProtocolException {
+        int n = in.getByte();
+        List<ArrowDto> arrows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int mask = in.getByte();
+            int ownerSlot;
+            ArrowDto b = null;
+            if ((mask & FULL) != 0) {
+                if ((mask & ARROW_ALL) != ARROW_ALL) throw new ProtocolException("Неполная запись стрелы");
+                ownerSlot = in.getByte();
+            } else {
+                if (base == null || i >= base.size()) throw new ProtocolException("Нет базы для стрелы " + i);
+                b         = base.get(i);
+                ownerSlot = b.ownerSlot();
+            }
+            arrows.add(new ArrowDto(ownerSlot,
+                    (mask & ARROW_ACTIVE) != 0 ? in.getBoolean() : b.active(),
+                    (mask & ARROW_X)     != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : b.x(),
+                    (mask & ARROW_Y)     != 0 ? prec.dequantizePosition(bits.read(prec.positionBits())) : b.y(),
+                    (mask & ARROW_ANGLE) != 0 ? prec.dequantizeAngle(bits.read(prec.angleBits()))      : b.angleDegrees()));
+            bits.align();
+        }
+        return arrows;
+    }
+
+    private static GamePhase readPhase(WireReader in) throws ProtocolException {
+        int ordinal = in.getByte();
+        if (ordinal == NULL_PHASE) return null;
+        if (ordinal >= PHASES.length) throw new ProtocolException("Неизвестная фаза: " + ordinal);
+        return PHASES[ordinal];
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Точность квантования координат и углов в игровых снимках.
+ *
+ * <p>Координата хранится фиксированной точкой: {@value #POSITION_INTEGER_BITS} бит целой части
+ * покрывают диапазон от {@value #POSITION_MIN} до {@code POSITION_MIN + 2048} пикселей (поле 960×560
+ * и вылет стрел за край), {@code fractionBits} — дробную. При 5 битах дроби координата занимает
+ * 16 бит с шагом 1/32 пикселя. Угол в градусах приводится к [-180, 180) и занимает {@code angleBits} бит.</p>
+ *
+ * <p>Точность пишется одним байтом в начало каждого снимка, поэтому клиент восстанавливает значения
+ * без собственной настройки. Погрешность: половина шага, то есть {@code 2^-(fractionBits+1)} пикселя
+ * и {@code 180 / 2^angleBits} градуса.</p>
+ *
+ * @param fractionBits бит дробной части координаты, 0..8
+ * @param angleBits    бит на угол, 8..16
+ */
+public record SnapshotPrecision(int fractionBits, int angleBits) {
+
+    public static final String FRACTION_BITS_PROPERTY = "marksman.snapshot.positionFractionBits";
+    public static final String ANGLE_BITS_PROPERTY    = "marksman.snapshot.angleBits";
+
+    /** 16-битные координаты с шагом 1/32 пикселя и 12-битные углы. */
+    public static final SnapshotPrecision DEFAULT = new SnapshotPrecision(5, 12);
+
+    static final double POSITION_MIN          = -512.0;
+    static final int    POSITION_INTEGER_BITS = 11;
+
+    private static final SnapshotPrecision CONFIGURED = new SnapshotPrecision(
+            Integer.getInteger(FRACTION_BITS_PROPERTY, DEFAULT.fractionBits),
+            Integer.getInteger(ANGLE_BITS_PROPERTY, DEFAULT.angleBits));
+
+    public SnapshotPrecision {
+        if (fractionBits < 0 || fractionBits > 8) {
+            throw new IllegalArgumentException("Дробная часть координаты: 0..8 бит, получено " + fractionBits);
+        }
+        if (angleBits < 8 || angleBits > 16) {
+            throw new IllegalArgumentException("Угол: 8..16 бит, получено " + angleBits);
+        }
+    }
+
+    /** Точность, с которой кодирует снимки этот процесс; задаётся системными свойствами. */
+    public static SnapshotPrecision configured() {
+        return CONFIGURED;
+    }
+
+    public int positionBits() {
+        return POSITION_INTEGER_BITS + fractionBits;
+    }
+
+    /** Координата в фиксированную точку; значения вне диапазона прижимаются к краю. */
+    public int quantizePosition(double v) {
+        long q = Math.round((v - POSITION_MIN) * (1 << fractionBits));
+        return (int) Math.max(0, Math.min((1L << positionBits()) - 1, q));
+    }
+
+    public double dequantizePosition(int q) {
+        return q / (double) (1 << fractionBits) + POSITION_MIN;
+    }
+
+    public int quantizeAngle(double degrees) {
+        long q = Math.round((degrees + 180.0) / 360.0 * (1 << angleBits));
+        return (int) Math.floorMod(q, 1L << angleBits);
+    }
+
+    public double dequantizeAngle(int q) {
+        return q * 360.0 / (1 << angleBits) - 180.0;
+    }
+
+    void write(WireWriter out) {
+        out.putByte(fractionBits << 4 | (angleBits - 8));
+    }
+
+    static SnapshotPrecision read(WireReader in) throws ProtocolException {
+        int b = in.getByte();
+        try {
+            return new SnapshotPrecision(b >>> 4, (b & 0x0F) + 8);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException("Недопустимая точность снимка: " + e.getMessage());
+        }
+    }
+}
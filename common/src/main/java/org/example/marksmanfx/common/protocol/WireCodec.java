@@ -0,0 +1,33 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.ClientEvent;
+import org.example.marksmanfx.common.message.ServerMessage;
+
+/**
+ * Способ кодирования тела кадра.
+ *
+ * <p>Заголовок кадра и тег типа пишет {@link Frames}; кодек отвечает только
+ * за поля конкретного события или сообщения. Реализации не хранят состояния
+ * между кадрами, поэтому один экземпляр можно использовать из любых потоков.</p>
+ */
+public interface WireCodec {
+
+    /** Идентификатор кодека в преамбуле соединения. */
+    int id();
+
+    /** Короткое имя для конфигурации и логов. */
+    String name();
+
+    void writeEvent(ClientEvent event, WireWriter out);
+
+    ClientEvent readEvent(ClientEventType type, WireReader in) throws ProtocolException;
+
+    /** Наибольшая длина тела события этого типа; сервер проверяет её до чтения тела кадра. */
+    default int maxEventBody(ClientEventType type) {
+        return type.maxBody();
+    }
+
+    void writeMessage(ServerMessage message, WireWriter out);
+
+    ServerMessage readMessage(ServerMessageType type, WireReader in) throws ProtocolException;
+}
@@ -0,0 +1,36 @@
+package org.example.marksmanfx.common.protocol;
+
+/**
+ * Реестр доступных кодеков и выбор кодека по умолчанию.
+ *
+ * <p>Клиент берёт кодек из системного свойства {@code marksman.codec}
+ * ({@code binary} или {@code java}); по умолчанию используется {@link BinaryCodec}.</p>
+ */
+public final class WireCodecs {
+
+    public static final String CODEC_PROPERTY = "marksman.codec";
+
+    private WireCodecs() {}
+
+    /** @return кодек по идентификатору из преамбулы или {@code null}, если он неизвестен */
+    public static WireCodec byId(int id) {
+        return switch (id) {
+            case BinaryCodec.ID            -> BinaryCodec.INSTANCE;
+            case JavaSerializationCodec.ID -> JavaSerializationCodec.INSTANCE;
+            default                        -> null;
+        };
+    }
+
+    /** @return кодек по имени или {@code null}, если имя неизвестно */
+    public static WireCodec byName(String name) {
+        if (BinaryCodec.INSTANCE.name().equalsIgnoreCase(name)) return BinaryCodec.INSTANCE;
+        if (JavaSerializationCodec.INSTANCE.name().equalsIgnoreCase(name)) return JavaSerializationCodec.INSTANCE;
+        return null;
+    }
+
+    /** Кодек из конфигурации; неизвестное имя молча заменяется бинарным кодеком. */
+    public static WireCodec configured() {
+        WireCodec codec = byName(System.getProperty(CODEC_PROPERTY, BinaryCodec.INSTANCE.name()));
+        return codec != null ? codec : BinaryCodec.INSTANCE;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Последовательное чтение полей, записанных {@link WireWriter}.
+ * Любой выход за границу тела кадра превращается в {@link ProtocolException}.
+ */
+public final class WireReader {
+
+    private final ByteBuffer buf;
+
+    public WireReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public WireReader(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    public int getByte() throws ProtocolException {
+        try {
+            return buf.get() & 0xFF;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public boolean getBoolean() throws ProtocolException {
+        return getByte() != 0;
+    }
+
+    public int getShort() throws ProtocolException {
+        try {
+            return buf.getShort() & 0xFFFF;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public int getInt() throws ProtocolException {
+        try {
+            return buf.getInt();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public long getLong() throws ProtocolException {
+        try {
+            return buf.getLong();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public double getDouble() throws ProtocolException {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    public String getString() throws ProtocolException {
+        int len = getShort();
+        if (len == WireWriter.NULL_STRING) return null;
+        if (len > buf.remaining()) throw truncated();
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Читаем ровно {@code len} байт; отрицательная или слишком большая длина считается ошибкой кадра. */
+    public byte[] getBytes(int len) throws ProtocolException {
+        if (len < 0 || len > buf.remaining()) throw truncated();
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    public int remaining() {
+        return buf.remaining();
+    }
+
+    /** Адаптер для кодеков, которые читают через {@link InputStream}. */
+    public InputStream asInputStream() {
+        return new InputStream() {
+            @Override public int read() {
+                return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+            }
+
+            @Override public int read(byte[] b, int off, int len) {
+                if (!buf.hasRemaining()) return -1;
+                int n = Math.min(len, buf.remaining());
+                buf.get(b, off, n);
+                return n;
+            }
+        };
+    }
+
+    private static ProtocolException truncated() {
+        return new ProtocolException("Тело кадра обрезано");
+    }
+}
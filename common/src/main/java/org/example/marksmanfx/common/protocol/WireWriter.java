@@ -0,0 +1,138 @@
+package org.example.marksmanfx.common.protocol;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Растущий буфер для компактной бинарной записи полей сообщений.
+ *
+ * <p>Многобайтовые значения пишутся в порядке big-endian, как в {@link java.io.DataOutput}.
+ * Строки кодируются в UTF-8 с беззнаковой 16-битной длиной; значение {@code 0xFFFF}
+ * зарезервировано под {@code null}.</p>
+ */
+public final class WireWriter {
+
+    static final int NULL_STRING    = 0xFFFF;
+    static final int MAX_STRING_LEN = 0xFFFE;
+
+    private byte[] buf;
+    private int    size;
+
+    public WireWriter() {
+        this(256);
+    }
+
+    public WireWriter(int initialCapacity) {
+        buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    // ─── Примитивы ───────────────────────────────────────────────────────────
+
+    public WireWriter putByte(int v) {
+        ensure(1);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    public WireWriter putBoolean(boolean v) {
+        return putByte(v ? 1 : 0);
+    }
+
+    public WireWriter putShort(int v) {
+        ensure(2);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    public WireWriter putInt(int v) {
+        ensure(4);
+        buf[size++] = (byte) (v >>> 24);
+        buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    public WireWriter putLong(long v) {
+        putInt((int) (v >>> 32));
+        return putInt((int) v);
+    }
+
+    public WireWriter putDouble(double v) {
+        return putLong(Double.doubleToRawLongBits(v));
+    }
+
+    /** Пишем строку в UTF-8; {@code null} допускается и восстанавливается при чтении. */
+    public WireWriter putString(String s) {
+        if (s == null) return putShort(NULL_STRING);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LEN) {
+            throw new IllegalArgumentException("Строка слишком длинная для протокола: " + bytes.length + " байт");
+        }
+        putShort(bytes.length);
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public WireWriter putBytes(byte[] src, int off, int len) {
+        ensure(len);
+        System.arraycopy(src, off, buf, size, len);
+        size += len;
+        return this;
+    }
+
+    /** Перезаписываем 32-битное значение по уже записанному смещению (например, длину кадра). */
+    public void putIntAt(int pos, int v) {
+        buf[pos]     = (byte) (v >>> 24);
+        buf[pos + 1] = (byte) (v >>> 16);
+        buf[pos + 2] = (byte) (v >>> 8);
+        buf[pos + 3] = (byte) v;
+    }
+
+    /** Перезаписываем один байт по уже записанному смещению. */
+    public void putByteAt(int pos, int v) {
+        buf[pos] = (byte) v;
+    }
+
+    // ─── Доступ к результату ─────────────────────────────────────────────────
+
+    public int size() {
+        return size;
+    }
+
+    /** Сбрасываем позицию записи, сохраняя выделенный массив для повторного использования. */
+    public void reset() {
+        size = 0;
+    }
+
+    /** Откатываем запись до позиции {@code size}, полученной ранее из {@link #size()}. */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) throw new IllegalArgumentException("Некорректная позиция: " + size);
+        this.size = size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    /** Копируем записанное в {@code dst}, например в буфер вне кучи, без промежуточного массива. */
+    public void writeTo(ByteBuffer dst) {
+        dst.put(buf, 0, size);
+    }
+
+    /** Адаптер для кодеков, которые пишут через {@link OutputStream}. */
+    public OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override public void write(int b) { putByte(b); }
+            @Override public void write(byte[] b, int off, int len) { putBytes(b, off, len); }
+        };
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.marksmanfx.common.concurrent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/** Кольцо ввода: полная очередь, переход через край массива и несколько производителей на одного потребителя. */
+class MpscRingTest {
+
+    private static final int CAPACITY     = 1024;
+    private static final int PRODUCERS    = 4;
+    private static final int PER_PRODUCER = 100_000;
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, new MpscRing<>(1).capacity());
+        assertEquals(1024, new MpscRing<>(1000).capacity());
+        assertEquals(1024, new MpscRing<>(1024).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRing<>(0));
+    }
+
+    @Test
+    void fullRingRejectsUntilPolled() {
+        MpscRing<Integer> ring = new MpscRing<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) assertTrue(ring.offer(i));
+        assertFalse(ring.offer(-1));
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(CAPACITY));
+        assertFalse(ring.offer(-1));
+
+        for (int i = 1; i <= CAPACITY; i++) assertEquals(i, ring.poll());
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void orderSurvivesWraparound() {
+        MpscRing<Integer> ring = new MpscRing<>(CAPACITY);
+        int next     = 0;
+        int expected = 0;
+        // Порции не кратны вместимости, чтобы голова и хвост пересекали край массива в разных местах.
+        for (int lap = 0; lap < 50; lap++) {
+            int batch = 700 + lap * 7 % 324;
+            for (int i = 0; i < batch; i++) assertTrue(ring.offer(next++));
+            List<Integer> drained = new ArrayList<>();
+            assertEquals(batch, ring.drain(drained::add, Integer.MAX_VALUE));
+            for (int v : drained) assertEquals(expected++, v);
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    @Timeout(60)
+    void producersLoseNothingAndKeepTheirOrder() throws InterruptedException {
+        MpscRing<Long> ring     = new MpscRing<>(CAPACITY);
+        AtomicLong     rejected = new AtomicLong();
+        CountDownLatch go       = new CountDownLatch(1);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            long id = p;
+            Thread t = new Thread(() -> {
+                awaitQuietly(go);
+                for (long seq = 0; seq < PER_PRODUCER; seq++) {
+                    Long item = id << 32 | seq;
+                    while (!ring.offer(item)) {
+                        rejected.incrementAndGet();
+                        Thread.yield();
+                    }
+                }
+            }, "ring-producer-" + p);
+            // Если потребитель упадёт на проверке, застрявшие производители не удержат JVM.
+            t.setDaemon(true);
+            t.start();
+            producers.add(t);
+        }
+        go.countDown();
+
+        // Потребитель начинает только после первого отказа: производители обязательно упрутся в полное кольцо.
+        while (rejected.get() == 0) Thread.yield();
+
+        long[] last     = new long[PRODUCERS];
+        long   received = 0;
+        Arrays.fill(last, -1);
+        while (received < (long) PRODUCERS * PER_PRODUCER) {
+            Long item = ring.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            int  id  = (int) (item >>> 32);
+            long seq = item & 0xFFFF_FFFFL;
+            if (seq != last[id] + 1) fail("производитель " + id + ": после " + last[id] + " пришёл " + seq);
+            last[id] = seq;
+            received++;
+        }
+        for (Thread t : producers) t.join();
+
+        assertNull(ring.poll());
+        for (int p = 0; p < PRODUCERS; p++) assertEquals(PER_PRODUCER - 1, last[p]);
+        assertTrue(rejected.get() > 0);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
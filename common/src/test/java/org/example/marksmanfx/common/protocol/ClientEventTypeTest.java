@@ -0,0 +1,36 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.event.JoinLobbyEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Лимиты длины тела событий должны пропускать самое длинное событие, которое умеет отправить клиент. */
+class ClientEventTypeTest {
+
+    @Test
+    void longestJoinLobbyFitsItsLimit() {
+        WireCodec      codec = WireCodecs.byId(BinaryCodec.ID);
+        JoinLobbyEvent event = new JoinLobbyEvent("я".repeat(ClientEventType.MAX_TEXT_BYTES / 2),
+                Capabilities.VERSION, Capabilities.ALL, Long.MAX_VALUE);
+        ByteBuffer     frame = ByteBuffer.wrap(Frames.encode(codec, event));
+        int            tag   = frame.get() & 0xFF;
+        frame.get();
+        int            body  = frame.getInt();
+        assertEquals(ClientEventType.JOIN_LOBBY.maxBody(), body);
+        assertDoesNotThrow(() -> Frames.checkEventHeader(codec, tag, body));
+    }
+
+    @Test
+    void textLimitCountsUtf8Bytes() {
+        assertTrue(ClientEventType.fitsText("a".repeat(ClientEventType.MAX_TEXT_BYTES)));
+        assertTrue(ClientEventType.fitsText("я".repeat(ClientEventType.MAX_TEXT_BYTES / 2)));
+        assertFalse(ClientEventType.fitsText("я".repeat(ClientEventType.MAX_TEXT_BYTES / 2 + 1)));
+        assertFalse(ClientEventType.fitsText("a".repeat(ClientEventType.MAX_TEXT_BYTES + 1)));
+    }
+}
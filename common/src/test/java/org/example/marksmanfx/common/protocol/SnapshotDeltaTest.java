@@ -0,0 +1,292 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.model.ArrowDto;
+import org.example.marksmanfx.common.model.GamePhase;
+import org.example.marksmanfx.common.model.PlayerStateDto;
+import org.example.marksmanfx.common.model.TargetDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Дельты снимков против подтверждённой базы: поток случайных снимков идёт через модель сервера
+ * (кольцо истории, выбор базы по подтверждению) и модель клиента (ограниченная история, запрос
+ * ключевого кадра при отсутствии базы) по сети с потерями и перестановками. Каждый восстановленный
+ * клиентом снимок должен совпасть с ключевым кадром того же тика.
+ */
+class SnapshotDeltaTest {
+
+    /** Как в {@code SnapshotBroadcaster} и {@code GameController}. */
+    private static final int HISTORY           = 64;
+    private static final int KEYFRAME_INTERVAL = 120;
+    private static final int TICKS             = 5000;
+
+    static Stream<SnapshotPrecision> precisions() {
+        return Stream.of(SnapshotPrecision.DEFAULT, new SnapshotPrecision(0, 8), new SnapshotPrecision(8, 16));
+    }
+
+    @ParameterizedTest
+    @MethodSource("precisions")
+    void deltaStreamMatchesFullState(SnapshotPrecision prec) throws ProtocolException {
+        Stats stats = run(new Random(prec.hashCode()), tick -> prec);
+        assertTrue(stats.deltas > TICKS / 2, "дельт слишком мало: " + stats.deltas);
+        assertTrue(stats.keyframeRequests > 0, "клиент ни разу не остался без базы");
+        assertTrue(stats.staleAcks > 0, "подтверждение ни разу не выпало из истории сервера");
+    }
+
+    /** Точность сменилась посреди потока: база с прежней точностью для дельты больше не годится. */
+    @Test
+    void deltaStreamSurvivesPrecisionChange() throws ProtocolException {
+        List<SnapshotPrecision> all = precisions().toList();
+        Stats stats = run(new Random(7), tick -> all.get(tick / 700 % all.size()));
+        assertTrue(stats.precisionKeyframes > 0, "смена точности не встретилась");
+        assertTrue(stats.deltas > TICKS / 2, "дельт слишком мало: " + stats.deltas);
+    }
+
+    @Test
+    void deltaWithoutBaseIsRejected() {
+        Random           rnd   = new Random(3);
+        GameStateMessage base  = new World(rnd).snapshot();
+        byte[]           delta = SnapshotDelta.encode(base, base, SnapshotPrecision.DEFAULT);
+        assertThrows(ProtocolException.class, () -> SnapshotDelta.apply(null, delta));
+    }
+
+    @Test
+    void unchangedSnapshotCostsHeaderOnly() {
+        GameStateMessage state = new World(new Random(5)).snapshot();
+        assertEquals(2, SnapshotDelta.encode(state, state, SnapshotPrecision.DEFAULT).length);
+    }
+
+    // ─── Прогон ──────────────────────────────────────────────────────────────
+
+    private interface PrecisionSchedule {
+        SnapshotPrecision at(int tick);
+    }
+
+    private static final class Stats {
+        int deltas;
+        int keyframeRequests;
+        int staleAcks;
+        int precisionKeyframes;
+    }
+
+    /** Кадр или подтверждение в пути; доставляются по времени прибытия. */
+    private record InFlight<T>(int arrival, long order, T payload) {}
+
+    private static Stats run(Random rnd, PrecisionSchedule schedule) throws ProtocolException {
+        Stats  stats  = new Stats();
+        World  world  = new World(rnd);
+        Server server = new Server(stats);
+        Client client = new Client(stats);
+        Map<Integer, GameStateMessage> expected = new HashMap<>();
+
+        PriorityQueue<InFlight<GameStateDeltaMessage>> down = new PriorityQueue<>(
+                (a, b) -> a.arrival != b.arrival ? Integer.compare(a.arrival, b.arrival) : Long.compare(a.order, b.order));
+        PriorityQueue<InFlight<Integer>> up = new PriorityQueue<>(
+                (a, b) -> a.arrival != b.arrival ? Integer.compare(a.arrival, b.arrival) : Long.compare(a.order, b.order));
+        long order = 0;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            world.step(rnd);
+            // Экран игры открыт заново посреди матча: у клиента нет базы, которую подтвердил прежний.
+            if (rnd.nextInt(500) == 0) client.forget();
+            SnapshotPrecision prec  = schedule.at(tick);
+            GameStateMessage  state = world.snapshot();
+            expected.put(tick, SnapshotDelta.apply(null, SnapshotDelta.encode(null, state, prec)));
+
+            GameStateDeltaMessage frame = server.broadcast(state, prec);
+            if (rnd.nextInt(10) != 0) down.add(new InFlight<>(tick + delay(rnd), order++, frame));
+
+            while (!down.isEmpty() && down.peek().arrival <= tick) {
+                Integer ack = client.receive(down.poll().payload, expected);
+                if (ack != null && rnd.nextInt(10) != 0) up.add(new InFlight<>(tick + delay(rnd), order++, ack));
+            }
+            while (!up.isEmpty() && up.peek().arrival <= tick) server.acked = up.poll().payload;
+        }
+        return stats;
+    }
+
+    /** Обычно тик-другой; изредка задержка дольше всей истории. */
+    private static int delay(Random rnd) {
+        return rnd.nextInt(50) == 0 ? HISTORY + rnd.nextInt(HISTORY) : rnd.nextInt(3);
+    }
+
+    /** Модель {@code SnapshotBroadcaster} для одного клиента. */
+    private static final class Server {
+        private final GameStateMessage[]  states     = new GameStateMessage[HISTORY];
+        private final SnapshotPrecision[] precisions = new SnapshotPrecision[HISTORY];
+        private final int[]               ticks      = new int[HISTORY];
+        private final Stats               stats;
+        private int                       tick       = -1;
+        int                               acked      = GameStateDeltaMessage.KEYFRAME;
+
+        Server(Stats stats) {
+            this.stats = stats;
+        }
+
+        GameStateDeltaMessage broadcast(GameStateMessage state, SnapshotPrecision prec) {
+            tick++;
+            int slot = tick & (HISTORY - 1);
+            states[slot]     = state;
+            precisions[slot] = prec;
+            ticks[slot]      = tick;
+
+            int base = tick % KEYFRAME_INTERVAL == 0 ? GameStateDeltaMessage.KEYFRAME : usableBase(prec);
+            GameStateMessage baseState = base == GameStateDeltaMessage.KEYFRAME ? null : states[base & (HISTORY - 1)];
+            return new GameStateDeltaMessage(tick, base, SnapshotDelta.encode(baseState, state, prec));
+        }
+
+        private int usableBase(SnapshotPrecision prec) {
+            if (acked < 0 || acked >= tick) return GameStateDeltaMessage.KEYFRAME;
+            if (tick - acked >= HISTORY || ticks[acked & (HISTORY - 1)] != acked) {
+                stats.staleAcks++;
+                return GameStateDeltaMessage.KEYFRAME;
+            }
+            if (!precisions[acked & (HISTORY - 1)].equals(prec)) {
+                stats.precisionKeyframes++;
+                return GameStateDeltaMessage.KEYFRAME;
+            }
+            return acked;
+        }
+    }
+
+    /** Модель разбора дельт в {@code GameController}. */
+    private static final class Client {
+        private final Map<Integer, GameStateMessage> history = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, GameStateMessage> eldest) {
+                return size() > HISTORY;
+            }
+        };
+        private final Stats stats;
+        private int         lastTick = GameStateDeltaMessage.KEYFRAME;
+
+        Client(Stats stats) {
+            this.stats = stats;
+        }
+
+        void forget() {
+            history.clear();
+            lastTick = GameStateDeltaMessage.KEYFRAME;
+        }
+
+        /** @return подтверждение для сервера или {@code null}, если кадр отброшен как устаревший */
+        Integer receive(GameStateDeltaMessage msg, Map<Integer, GameStateMessage> expected) throws ProtocolException {
+            if (!msg.isKeyframe() && msg.tick() <= lastTick) return null;
+            GameStateMessage base = null;
+            if (!msg.isKeyframe()) {
+                base = history.get(msg.baseTick());
+                if (base == null) {
+                    stats.keyframeRequests++;
+                    return GameStateDeltaMessage.KEYFRAME;
+                }
+                stats.deltas++;
+            }
+            GameStateMessage state = SnapshotDelta.apply(base, msg.payload());
+            assertEquals(expected.get(msg.tick()), state, "тик " + msg.tick() + ", база " + msg.baseTick());
+            history.put(msg.tick(), state);
+            lastTick = msg.tick();
+            return msg.tick();
+        }
+    }
+
+    // ─── Случайный мир ───────────────────────────────────────────────────────
+
+    /** Мир, который понемногу меняется: часть полей стоит, часть сдвигается меньше шага квантования. */
+    private static final class World {
+        private final List<PlayerStateDto> players = new ArrayList<>();
+        private final List<ArrowDto>       arrows  = new ArrayList<>();
+        private TargetDto                  near    = new TargetDto(640, 280, 110, 1);
+        private TargetDto                  far     = new TargetDto(770, 280, 55, 2);
+        private GamePhase                  phase   = GamePhase.PLAYING;
+
+        World(Random rnd) {
+            for (int slot = 0; slot < 2; slot++) join(rnd, slot);
+        }
+
+        GameStateMessage snapshot() {
+            return new GameStateMessage(List.copyOf(players), List.copyOf(arrows), near, far, phase);
+        }
+
+        void step(Random rnd) {
+            if (rnd.nextInt(300) == 0) {
+                GamePhase[] phases = GamePhase.values();
+                int i = rnd.nextInt(phases.length + 1);
+                phase = i == phases.length ? null : phases[i];
+            }
+            if (rnd.nextInt(200) == 0) {
+                if (players.size() > 1 && rnd.nextBoolean()) {
+                    int i = rnd.nextInt(players.size());
+                    players.remove(i);
+                    arrows.remove(i);
+                } else if (players.size() < 4) {
+                    join(rnd, nextFreeSlot());
+                }
+            }
+            near = moveTarget(rnd, near);
+            far  = moveTarget(rnd, far);
+            for (int i = 0; i < players.size(); i++) {
+                PlayerStateDto p = players.get(i);
+                if (rnd.nextInt(3) == 0) continue;
+                players.set(i, new PlayerStateDto(p.slot(),
+                        nudge(rnd, p.archerX()), nudge(rnd, p.archerY()), turn(rnd, p.aimAngleDegrees()),
+                        rnd.nextInt(40) == 0 ? !p.crouched() : p.crouched(),
+                        rnd.nextInt(100) == 0 ? p.score() + 1 : p.score()));
+            }
+            for (int i = 0; i < arrows.size(); i++) {
+                ArrowDto a = arrows.get(i);
+                boolean active = rnd.nextInt(30) == 0 ? !a.active() : a.active();
+                arrows.set(i, active
+                        ? new ArrowDto(a.ownerSlot(), true, nudge(rnd, a.x()), nudge(rnd, a.y()), turn(rnd, a.angleDegrees()))
+                        : new ArrowDto(a.ownerSlot(), false, a.x(), a.y(), a.angleDegrees()));
+            }
+        }
+
+        private void join(Random rnd, int slot) {
+            players.add(new PlayerStateDto(slot, 70 + rnd.nextDouble() * 190, 165 + rnd.nextDouble() * 335,
+                    rnd.nextDouble() * 90 - 45, false, 0));
+            arrows.add(new ArrowDto(slot, false, 0, 0, 0));
+        }
+
+        private int nextFreeSlot() {
+            for (int slot = 0; ; slot++) {
+                int s = slot;
+                if (players.stream().noneMatch(p -> p.slot() == s)) return slot;
+            }
+        }
+
+        private static TargetDto moveTarget(Random rnd, TargetDto t) {
+            int points = rnd.nextInt(500) == 0 ? rnd.nextInt(256) : t.points();
+            return new TargetDto(t.x(), nudge(rnd, t.y()), t.size(), points);
+        }
+
+        /** Сдвиг на несколько пикселей, на долю шага или за край диапазона координат. */
+        private static double nudge(Random rnd, double v) {
+            return switch (rnd.nextInt(20)) {
+                case 0  -> v + rnd.nextGaussian() * 0.01;
+                case 1  -> rnd.nextBoolean() ? -700 : 1700;
+                case 2  -> rnd.nextDouble() * 960;
+                default -> v + rnd.nextGaussian() * 4;
+            };
+        }
+
+        private static double turn(Random rnd, double degrees) {
+            return rnd.nextInt(10) == 0 ? rnd.nextDouble() * 720 - 360 : degrees + rnd.nextGaussian();
+        }
+    }
+}
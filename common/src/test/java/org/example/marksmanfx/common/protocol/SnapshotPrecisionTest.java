@@ -0,0 +1,91 @@
+package org.example.marksmanfx.common.protocol;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Погрешность квантования: координата восстанавливается с точностью до половины шага
+ * {@code 2^-(fractionBits+1)} пикселя, угол — до {@code 180 / 2^angleBits} градуса.
+ */
+class SnapshotPrecisionTest {
+
+    private static final double POSITION_MAX = SnapshotPrecision.POSITION_MIN
+            + (1 << SnapshotPrecision.POSITION_INTEGER_BITS);
+
+    static Stream<SnapshotPrecision> precisions() {
+        return Stream.of(SnapshotPrecision.DEFAULT, new SnapshotPrecision(0, 8), new SnapshotPrecision(8, 16));
+    }
+
+    @ParameterizedTest
+    @MethodSource("precisions")
+    void positionErrorIsWithinHalfStep(SnapshotPrecision prec) {
+        double step  = 1.0 / (1 << prec.fractionBits());
+        double bound = step / 2;
+        // Верхний код — POSITION_MAX - step, поэтому до половины шага ниже него значение ещё округляется без прижатия.
+        double top   = POSITION_MAX - step - bound;
+        Random rnd   = new Random(prec.hashCode());
+        for (double v = SnapshotPrecision.POSITION_MIN; v <= top; v += 1.0 / 997) {
+            assertPositionWithin(prec, v, bound);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertPositionWithin(prec, SnapshotPrecision.POSITION_MIN + rnd.nextDouble() * (top - SnapshotPrecision.POSITION_MIN), bound);
+        }
+        assertPositionWithin(prec, top, bound);
+    }
+
+    @ParameterizedTest
+    @MethodSource("precisions")
+    void positionIsClampedAtEdges(SnapshotPrecision prec) {
+        int    maxCode = (1 << prec.positionBits()) - 1;
+        double step    = 1.0 / (1 << prec.fractionBits());
+        assertEquals(0, prec.quantizePosition(SnapshotPrecision.POSITION_MIN));
+        assertEquals(0, prec.quantizePosition(SnapshotPrecision.POSITION_MIN - 1000));
+        assertEquals(0, prec.quantizePosition(Double.NEGATIVE_INFINITY));
+        assertEquals(maxCode, prec.quantizePosition(POSITION_MAX - step));
+        assertEquals(maxCode, prec.quantizePosition(POSITION_MAX));
+        assertEquals(maxCode, prec.quantizePosition(POSITION_MAX + 1000));
+        assertEquals(maxCode, prec.quantizePosition(Double.POSITIVE_INFINITY));
+        assertEquals(SnapshotPrecision.POSITION_MIN, prec.dequantizePosition(0));
+        assertEquals(POSITION_MAX - step, prec.dequantizePosition(maxCode));
+    }
+
+    @ParameterizedTest
+    @MethodSource("precisions")
+    void angleErrorIsWithinHalfStep(SnapshotPrecision prec) {
+        double bound = 180.0 / (1 << prec.angleBits());
+        for (double deg = -180; deg <= 180; deg += 1.0 / 1009) {
+            assertAngleWithin(prec, deg, bound);
+        }
+        assertAngleWithin(prec, 180, bound);
+        // Вне [-180, 180) угол сводится к тому же кругу.
+        assertAngleWithin(prec, 540.25, bound);
+        assertAngleWithin(prec, -359.75, bound);
+    }
+
+    @ParameterizedTest
+    @MethodSource("precisions")
+    void codesFitTheirBitWidth(SnapshotPrecision prec) {
+        for (double deg = -720; deg <= 720; deg += 0.37) {
+            int q = prec.quantizeAngle(deg);
+            assertTrue(q >= 0 && q < 1 << prec.angleBits(), "угол " + deg + " → " + q);
+        }
+    }
+
+    private static void assertPositionWithin(SnapshotPrecision prec, double v, double bound) {
+        double error = Math.abs(prec.dequantizePosition(prec.quantizePosition(v)) - v);
+        assertTrue(error <= bound, () -> prec + ": " + v + " восстановлено с погрешностью " + error + " > " + bound);
+    }
+
+    private static void assertAngleWithin(SnapshotPrecision prec, double deg, double bound) {
+        double back  = prec.dequantizeAngle(prec.quantizeAngle(deg));
+        double diff  = Math.abs(back - deg) % 360.0;
+        double error = Math.min(diff, 360.0 - diff);
+        assertTrue(error <= bound + 1e-9, () -> prec + ": угол " + deg + " восстановлен с погрешностью " + error + " > " + bound);
+    }
+}
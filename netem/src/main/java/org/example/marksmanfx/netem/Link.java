@@ -0,0 +1,150 @@
+package org.example.marksmanfx.netem;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Одно направление одного соединения: пакеты уходят получателю с задержкой, разбросом,
+ * потерями и не быстрее заданной полосы — по профилю, действующему в момент отправки.
+ *
+ * <p>Время выхода пакета считается как у узкого места с очередью: пакет ждёт, пока передадутся
+ * предыдущие ({@code rateKbps}), затем идёт по сети {@code latency ± jitter}. Доставку выполняет
+ * собственный поток направления по расписанию, поэтому медленный получатель задерживает только своё
+ * направление.</p>
+ *
+ * <p>Поток байтов TCP ({@code stream}) не теряется и не переставляется: потерянный сегмент приходит
+ * после повторной передачи (не раньше {@value #RTO_MIN_MILLIS} мс, как минимальный RTO Linux) и
+ * задерживает всё, что идёт за ним. Отправитель TCP ждёт, если в пути больше {@value #STREAM_WINDOW}
+ * байт — так узкое место доходит до сервера через окно TCP. Датаграммы теряются, обгоняют друг друга
+ * и отбрасываются, если очередь перед узким местом длиннее {@code queueMillis}.</p>
+ *
+ * <p>{@link #submit} вызывает один поток — читатель источника.</p>
+ */
+final class Link {
+
+    /** Отправка пакета получателю. */
+    interface Sink {
+        void write(byte[] data) throws IOException;
+    }
+
+    private static final int  RTO_MIN_MILLIS = 200;
+    private static final long RTO_MIN_NANOS  = TimeUnit.MILLISECONDS.toNanos(RTO_MIN_MILLIS);
+    private static final int  STREAM_WINDOW  = 256 * 1024;
+
+    private final String                   name;
+    private final boolean                  stream;
+    private final Supplier<Profile>        conditions;
+    private final Random                   random;
+    private final Sink                     sink;
+    private final Runnable                 onFailure;
+    private final NetemStats               stats;
+    private final ScheduledExecutorService delivery;
+    private final Semaphore                window = new Semaphore(STREAM_WINDOW);
+
+    /** Когда узкое место освободится от уже отправленных пакетов. */
+    private long txFreeNanos;
+    /** Когда будет доставлен последний пакет потока: TCP не обгоняет сам себя. */
+    private long lastDeliveryNanos;
+
+    Link(String name, boolean stream, Supplier<Profile> conditions, long seed,
+         Sink sink, Runnable onFailure, NetemStats stats) {
+        this.name       = name;
+        this.stream     = stream;
+        this.conditions = conditions;
+        this.random     = new Random(seed);
+        this.sink       = sink;
+        this.onFailure  = onFailure;
+        this.stats      = stats;
+        this.delivery   = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "netem-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Отправляем пакет; для потока TCP ждём, пока в пути не освободится место. */
+    void submit(byte[] data) throws InterruptedException {
+        if (stream) window.acquire(data.length);
+        Profile p   = conditions.get();
+        long    now = System.nanoTime();
+
+        long departure = now;
+        if (p.rateKbps() > 0) {
+            // Время передачи: байты · 8 / (кбит/с · 1000) с = байты · 8 · 10⁶ / кбит/с нс.
+            long txFree = Math.max(txFreeNanos, now) + data.length * 8_000_000L / p.rateKbps();
+            if (!stream && txFree - now > TimeUnit.MILLISECONDS.toNanos(p.queueMillis())) {
+                stats.overflowed();
+                return;
+            }
+            txFreeNanos = departure = txFree;
+        }
+
+        boolean lost  = random.nextDouble() * 100 < p.lossPercent();
+        long    delay = TimeUnit.MILLISECONDS.toNanos(p.latencyMillis());
+        if (p.jitterMillis() > 0) {
+            delay = Math.max(0, delay + (long) (random.nextGaussian() * TimeUnit.MILLISECONDS.toNanos(p.jitterMillis())));
+        }
+        long deliveryNanos;
+        if (stream) {
+            // Повтор уходит после тайм-аута (не короче RTT) и снова идёт по сети; получатель
+            // тем временем не отдаёт приложению следующие байты.
+            if (lost) {
+                stats.retransmitted();
+                delay = Math.max(RTO_MIN_NANOS, 2 * delay) + delay;
+            }
+            deliveryNanos = lastDeliveryNanos = Math.max(departure + delay, lastDeliveryNanos);
+        } else {
+            if (lost) {
+                stats.lost();
+                return;
+            }
+            if (p.reorderPercent() > 0 && random.nextDouble() * 100 < p.reorderPercent()) {
+                stats.reordered();
+                delay = 0;
+            }
+            deliveryNanos = departure + delay;
+        }
+        try {
+            delivery.schedule(() -> deliver(data), deliveryNanos - now, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Направление уже закрыто.
+        }
+    }
+
+    /** Закрываем направление, когда дойдёт всё уже отправленное; затем выполняем {@code then}. */
+    void finish(Runnable then) {
+        long wait = Math.max(0, Math.max(lastDeliveryNanos, txFreeNanos) - System.nanoTime());
+        try {
+            delivery.schedule(() -> {
+                then.run();
+                delivery.shutdown();
+            }, wait, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            then.run();
+        }
+    }
+
+    void close() {
+        delivery.shutdownNow();
+        // Читатель, ждущий места в пути, проснётся и увидит закрытый сокет.
+        window.release(STREAM_WINDOW);
+    }
+
+    private void deliver(byte[] data) {
+        try {
+            sink.write(data);
+            stats.delivered(data.length);
+        } catch (IOException e) {
+            NetemProxy.LOG.fine("[Эмулятор] " + name + ": не удалось доставить пакет: " + e.getMessage());
+            onFailure.run();
+        } finally {
+            if (stream) window.release(data.length);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.marksmanfx.netem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Эмулятор условий сети между клиентом и сервером на одной машине.
+ *
+ * <p>Эмулятор слушает TCP и UDP на одном порту и пересылает всё на адрес сервера, добавляя
+ * задержку, разброс, потери, перестановки датаграмм и ограничение полосы ({@link Profile}) в каждом
+ * направлении отдельно. Клиенту достаточно подключиться к порту эмулятора вместо порта сервера;
+ * UDP-канал игры идёт на тот же адрес и тоже проходит через эмулятор. Профиль можно менять на ходу
+ * ({@link #setProfile}) или сценарием ({@link Script}).</p>
+ *
+ * <p>Случайность каждого направления задаётся зерном ({@code --seed}), поэтому при том же зерне
+ * и том же порядке соединений потери и разброс повторяются от прогона к прогону.</p>
+ *
+ * <p>Использование:
+ * {@code java -jar netem/target/netem-1.0-SNAPSHOT.jar [--listen=55556] [--target=localhost:55555]
+ * [--profile=4g | --script=netem/profiles/commute.txt] [--seed=N] [--udp=false]}.
+ * Эмулятор можно поднять и в процессе теста: {@link #start}.</p>
+ */
+public final class NetemProxy implements AutoCloseable {
+
+    static final Logger LOG = Logger.getLogger(NetemProxy.class.getName());
+
+    private static final int    DEFAULT_LISTEN = 55556;
+    private static final String DEFAULT_TARGET = "localhost:55555";
+    /** Шаг между зёрнами направлений: соседние зёрна {@link java.util.Random} дают похожие начала. */
+    private static final long   SEED_STRIDE    = 0x9E3779B97F4A7C15L;
+
+    private final AtomicReference<Profile> profile;
+    private final NetemStats               stats = new NetemStats();
+    private final long                     seed;
+    private final AtomicLong               links = new AtomicLong();
+    private final TcpRelay                 tcp;
+    private final UdpRelay                 udp;
+
+    private NetemProxy(int port, InetSocketAddress target, Profile profile, long seed, boolean withUdp) throws IOException {
+        this.profile = new AtomicReference<>(profile);
+        this.seed    = seed;
+        this.tcp     = new TcpRelay(port, target, this);
+        this.udp     = withUdp ? new UdpRelay(tcp.port(), target, this) : null;
+    }
+
+    /**
+     * Поднимаем эмулятор.
+     *
+     * @param port 0 — любой свободный порт, см. {@link #port()}
+     */
+    public static NetemProxy start(int port, InetSocketAddress target, Profile profile, long seed) throws IOException {
+        NetemProxy proxy = new NetemProxy(port, target, profile, seed, true);
+        LOG.info("[Эмулятор] Порт " + proxy.port() + " → " + target + ", профиль " + profile.describe());
+        return proxy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.util.logging.SimpleFormatter.format", "[%1$tT] [%4$s] %5$s%n");
+        Logger.getLogger("").setLevel(Level.INFO);
+
+        int     listen  = DEFAULT_LISTEN;
+        String  target  = DEFAULT_TARGET;
+        Profile profile = Profile.PRESETS.get("direct");
+        Script  script  = null;
+        long    seed    = 1;
+        boolean withUdp = true;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if      (arg.startsWith("--listen="))  listen  = Integer.parseInt(value);
+            else if (arg.startsWith("--target="))  target  = value;
+            else if (arg.startsWith("--profile=")) profile = Profile.parse(value);
+            else if (arg.startsWith("--script="))  script  = Script.load(Path.of(value));
+            else if (arg.startsWith("--seed="))    seed    = Long.parseLong(value);
+            else if (arg.startsWith("--udp="))     withUdp = Boolean.parseBoolean(value);
+            else throw new IllegalArgumentException("Неизвестный параметр: " + arg
+                    + " (профили: " + String.join(", ", Profile.PRESETS.keySet()) + ")");
+        }
+
+        int colon = target.lastIndexOf(':');
+        InetSocketAddress address = new InetSocketAddress(target.substring(0, colon),
+                Integer.parseInt(target.substring(colon + 1)));
+        if (script != null) profile = script.steps().get(0).profile();
+
+        NetemProxy proxy = new NetemProxy(listen, address, profile, seed, withUdp);
+        LOG.info("[Эмулятор] Порт " + proxy.port() + " → " + address + (withUdp ? " (TCP и UDP)" : " (только TCP)"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            proxy.close();
+            LOG.info("[Эмулятор] Итого: " + proxy.stats.summary());
+        }));
+
+        if (script != null) {
+            script.run(proxy);
+        } else {
+            proxy.setProfile(profile);
+            Thread.currentThread().join();
+        }
+    }
+
+    /** Меняем условия; уже отправленные пакеты доходят по прежним. */
+    public void setProfile(Profile next) {
+        profile.set(next);
+        LOG.info("[Эмулятор] Профиль " + next.describe() + "; " + stats.summary());
+    }
+
+    public Profile profile() {
+        return profile.get();
+    }
+
+    public int port() {
+        return tcp.port();
+    }
+
+    /** Сводка счётчиков: доставлено, потеряно, отброшено очередью, переставлено, повторов TCP. */
+    public String summary() {
+        return stats.summary();
+    }
+
+    @Override
+    public void close() {
+        tcp.close();
+        if (udp != null) udp.close();
+    }
+
+    NetemStats stats() {
+        return stats;
+    }
+
+    /** Зерно для очередного направления. */
+    long nextSeed() {
+        return seed + links.getAndIncrement() * SEED_STRIDE;
+    }
+}
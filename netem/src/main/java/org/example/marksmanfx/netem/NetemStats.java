@@ -0,0 +1,31 @@
+package org.example.marksmanfx.netem;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Счётчики эмулятора по всем соединениям и направлениям. */
+final class NetemStats {
+
+    private final LongAdder packets       = new LongAdder();
+    private final LongAdder bytes         = new LongAdder();
+    private final LongAdder lost          = new LongAdder();
+    private final LongAdder overflowed    = new LongAdder();
+    private final LongAdder reordered     = new LongAdder();
+    private final LongAdder retransmitted = new LongAdder();
+
+    void delivered(int size) {
+        packets.increment();
+        bytes.add(size);
+    }
+
+    void lost()          { lost.increment(); }
+    void overflowed()    { overflowed.increment(); }
+    void reordered()     { reordered.increment(); }
+    void retransmitted() { retransmitted.increment(); }
+
+    /** Сводка для журнала. */
+    String summary() {
+        return String.format("доставлено %d пакетов (%d КиБ), потеряно датаграмм %d, отброшено очередью %d, "
+                        + "переставлено %d, повторов TCP %d",
+                packets.sum(), bytes.sum() / 1024, lost.sum(), overflowed.sum(), reordered.sum(), retransmitted.sum());
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.marksmanfx.netem;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Условия сети в одну сторону: каждое направление соединения получает их независимо,
+ * поэтому задержка туда и обратно вдвое больше {@code latencyMillis}.
+ *
+ * <p>Профиль задаётся строкой через запятую: имя готового профиля ({@link #PRESETS}) и/или
+ * параметры {@code ключ=значение}, которые его уточняют, например {@code wifi,loss=5} или
+ * {@code latency=80,jitter=20,rate=2000}.</p>
+ *
+ * @param name           имя для журнала
+ * @param latencyMillis  задержка в одну сторону
+ * @param jitterMillis   разброс задержки (нормальный, среднеквадратичное отклонение)
+ * @param lossPercent    доля потерянных пакетов, %; в TCP потеря — задержка на повторную передачу
+ * @param reorderPercent доля датаграмм, уходящих без задержки и обгоняющих остальные, %
+ * @param rateKbps       пропускная способность, кбит/с; 0 — без ограничения
+ * @param queueMillis    очередь перед узким местом: датаграммы, которые ждали бы дольше, отбрасываются
+ */
+public record Profile(
+        String name,
+        int latencyMillis,
+        int jitterMillis,
+        double lossPercent,
+        double reorderPercent,
+        int rateKbps,
+        int queueMillis
+) {
+
+    private static final int DEFAULT_QUEUE_MILLIS = 200;
+
+    /** Готовые профили, от петли до спутника. */
+    public static final Map<String, Profile> PRESETS = new LinkedHashMap<>();
+
+    static {
+        preset(new Profile("direct",      0,  0, 0,   0,   0,      DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("lan",         1,  0, 0,   0,   0,      DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("wifi",        4,  3, 0.5, 0,   50_000, DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("dsl",        15,  2, 0.1, 0,   8_000,  DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("4g",         35, 12, 1,   0.5, 5_000,  DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("3g",         90, 30, 2,   1,   1_000,  DEFAULT_QUEUE_MILLIS));
+        preset(new Profile("congested",  60, 40, 3,   2,   500,    100));
+        preset(new Profile("satellite", 300, 10, 0.5, 0,   2_000,  DEFAULT_QUEUE_MILLIS));
+    }
+
+    public Profile {
+        if (latencyMillis < 0 || jitterMillis < 0 || rateKbps < 0 || queueMillis < 0
+                || lossPercent < 0 || lossPercent > 100 || reorderPercent < 0 || reorderPercent > 100) {
+            throw new IllegalArgumentException("Недопустимые условия сети: " + name);
+        }
+    }
+
+    private static void preset(Profile p) {
+        PRESETS.put(p.name(), p);
+    }
+
+    /**
+     * Разбираем профиль; параметры без имени профиля уточняют {@code direct}.
+     * Уточнённый профиль без явного {@code name=} получает в журнале звёздочку: {@code wifi*}.
+     *
+     * @throws IllegalArgumentException неизвестный профиль или параметр
+     */
+    public static Profile parse(String spec) {
+        Profile p     = PRESETS.get("direct");
+        String  name  = null;
+        boolean tuned = false;
+        for (String token : spec.split(",")) {
+            token = token.trim();
+            if (token.isEmpty()) continue;
+            int eq = token.indexOf('=');
+            if (eq < 0) {
+                p = PRESETS.get(token.toLowerCase(Locale.ROOT));
+                if (p == null) throw new IllegalArgumentException("Неизвестный профиль: " + token + ", есть " + PRESETS.keySet());
+                continue;
+            }
+            String key   = token.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String value = token.substring(eq + 1).trim();
+            if (key.equals("name")) {
+                name = value;
+                continue;
+            }
+            tuned = true;
+            p = switch (key) {
+                case "latency" -> new Profile(p.name, Integer.parseInt(value), p.jitterMillis, p.lossPercent, p.reorderPercent, p.rateKbps, p.queueMillis);
+                case "jitter"  -> new Profile(p.name, p.latencyMillis, Integer.parseInt(value), p.lossPercent, p.reorderPercent, p.rateKbps, p.queueMillis);
+                case "loss"    -> new Profile(p.name, p.latencyMillis, p.jitterMillis, Double.parseDouble(value), p.reorderPercent, p.rateKbps, p.queueMillis);
+                case "reorder" -> new Profile(p.name, p.latencyMillis, p.jitterMillis, p.lossPercent, Double.parseDouble(value), p.rateKbps, p.queueMillis);
+                case "rate"    -> new Profile(p.name, p.latencyMillis, p.jitterMillis, p.lossPercent, p.reorderPercent, Integer.parseInt(value), p.queueMillis);
+                case "queue"   -> new Profile(p.name, p.latencyMillis, p.jitterMillis, p.lossPercent, p.reorderPercent, p.rateKbps, Integer.parseInt(value));
+                default        -> throw new IllegalArgumentException("Неизвестный параметр профиля: " + key);
+            };
+        }
+        if (name == null) name = tuned ? p.name + "*" : p.name;
+        return new Profile(name, p.latencyMillis, p.jitterMillis, p.lossPercent, p.reorderPercent, p.rateKbps, p.queueMillis);
+    }
+
+    /** Например {@code 4g: 35±12 мс, потери 1%, перестановки 0.5%, 5000 кбит/с}. */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(name).append(": ").append(latencyMillis);
+        if (jitterMillis > 0) sb.append('±').append(jitterMillis);
+        sb.append(" мс");
+        if (lossPercent > 0)    sb.append(String.format(Locale.ROOT, ", потери %.1f%%", lossPercent));
+        if (reorderPercent > 0) sb.append(String.format(Locale.ROOT, ", перестановки %.1f%%", reorderPercent));
+        sb.append(rateKbps > 0 ? ", " + rateKbps + " кбит/с" : ", без ограничения полосы");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.marksmanfx.netem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сценарий: последовательность профилей с длительностями, которая повторяется по кругу.
+ *
+ * <p>Файл сценария — строки {@code <секунды> <профиль>}, где профиль записан как в {@link Profile#parse};
+ * пустые строки и строки с {@code #} пропускаются:</p>
+ * <pre>
+ *   # Дорога на работу
+ *   20 wifi
+ *   20 4g
+ *   5  3g,loss=10,name=handover
+ *   10 congested
+ * </pre>
+ *
+ * @param steps шаги сценария по порядку
+ */
+public record Script(List<Step> steps) {
+
+    /** Один шаг: профиль и сколько он действует. */
+    public record Step(Profile profile, long millis) {}
+
+    public Script {
+        if (steps.isEmpty()) throw new IllegalArgumentException("Пустой сценарий");
+        steps = List.copyOf(steps);
+    }
+
+    /** @throws IllegalArgumentException ошибка в строке сценария, с её номером */
+    public static Script load(Path file) throws IOException {
+        List<Step>   steps = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+", 2);
+            try {
+                if (parts.length < 2) throw new IllegalArgumentException("ожидается «<секунды> <профиль>»");
+                long millis = Math.round(Double.parseDouble(parts[0]) * 1000);
+                steps.add(new Step(Profile.parse(parts[1].replaceAll("\\s+", "")), millis));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(file + ":" + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new Script(steps);
+    }
+
+    /** Применяем шаги к эмулятору по кругу, пока поток не прервут. */
+    public void run(NetemProxy proxy) throws InterruptedException {
+        while (true) {
+            for (Step step : steps) {
+                proxy.setProfile(step.profile());
+                Thread.sleep(step.millis());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.marksmanfx.netem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP-сторона эмулятора: каждое принятое соединение открывает своё соединение к серверу
+ * и передаёт байты в обе стороны через {@link Link}, нарезая поток на сегменты размером с MSS.
+ */
+final class TcpRelay {
+
+    /** Сегмент Ethernet без заголовков: полоса и потери считаются по таким кускам. */
+    private static final int SEGMENT = 1460;
+
+    private final ServerSocket      server;
+    private final InetSocketAddress target;
+    private final NetemProxy        proxy;
+    private final AtomicInteger     counter     = new AtomicInteger();
+    private final Set<Connection>   connections = ConcurrentHashMap.newKeySet();
+
+    TcpRelay(int port, InetSocketAddress target, NetemProxy proxy) throws IOException {
+        this.server = new ServerSocket(port);
+        this.target = target;
+        this.proxy  = proxy;
+        Thread acceptor = new Thread(this::acceptLoop, "netem-tcp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {}
+        connections.forEach(Connection::close);
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                int    id     = counter.incrementAndGet();
+                Thread t = new Thread(() -> open(id, client), "netem-tcp-" + id);
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) NetemProxy.LOG.warning("[Эмулятор] Ошибка приёма TCP: " + e.getMessage());
+            }
+        }
+    }
+
+    private void open(int id, Socket client) {
+        Socket upstream = new Socket();
+        try {
+            client.setTcpNoDelay(true);
+            upstream.setTcpNoDelay(true);
+            upstream.connect(target);
+        } catch (IOException e) {
+            NetemProxy.LOG.warning("[Эмулятор] Сервер " + target + " недоступен: " + e.getMessage());
+            closeQuietly(client);
+            closeQuietly(upstream);
+            return;
+        }
+        NetemProxy.LOG.info("[Эмулятор] TCP #" + id + ": " + client.getRemoteSocketAddress() + " → " + target);
+        new Connection(id, client, upstream).start();
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {}
+    }
+
+    /** Пара сокетов и два направления между ними. */
+    private final class Connection {
+        private final int           id;
+        private final Socket        client;
+        private final Socket        upstream;
+        private final AtomicInteger open   = new AtomicInteger(2);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Link up;
+        private Link down;
+
+        Connection(int id, Socket client, Socket upstream) {
+            this.id       = id;
+            this.client   = client;
+            this.upstream = upstream;
+        }
+
+        void start() {
+            connections.add(this);
+            try {
+                OutputStream toServer = upstream.getOutputStream();
+                OutputStream toClient = client.getOutputStream();
+                up   = new Link("tcp-" + id + "-up", true, proxy::profile, proxy.nextSeed(),
+                        toServer::write, this::close, proxy.stats());
+                down = new Link("tcp-" + id + "-down", true, proxy::profile, proxy.nextSeed(),
+                        toClient::write, this::close, proxy.stats());
+                pump(client.getInputStream(), up, upstream, "up");
+                pump(upstream.getInputStream(), down, client, "down");
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void pump(InputStream in, Link link, Socket receiver, String direction) {
+            Thread t = new Thread(() -> {
+                byte[] buf = new byte[SEGMENT];
+                try {
+                    int n;
+                    while ((n = in.read(buf)) > 0) link.submit(Arrays.copyOf(buf, n));
+                    // Конец потока доходит до получателя после всех байт, уже отправленных по сети.
+                    link.finish(() -> halfClose(receiver));
+                } catch (IOException | InterruptedException e) {
+                    close();
+                }
+            }, "netem-tcp-" + id + "-" + direction);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private void halfClose(Socket receiver) {
+            try {
+                receiver.shutdownOutput();
+            } catch (IOException ignored) {}
+            if (open.decrementAndGet() == 0) close();
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            connections.remove(this);
+            if (up != null)   up.close();
+            if (down != null) down.close();
+            closeQuietly(client);
+            closeQuietly(upstream);
+            NetemProxy.LOG.info("[Эмулятор] TCP #" + id + " закрыто");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.marksmanfx.netem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UDP-сторона эмулятора на том же номере порта, что и TCP: клиент игры открывает UDP-канал
+ * к тому же адресу, что и TCP, и проходит через эмулятор без настройки.
+ *
+ * <p>Каждому адресу клиента соответствует свой сокет к серверу, поэтому сервер видит клиентов
+ * раздельно, как и без эмулятора. Сеанс без датаграмм дольше {@value #IDLE_SECONDS} с закрывается.</p>
+ */
+final class UdpRelay {
+
+    private static final int  MAX_DATAGRAM = 64 * 1024;
+    private static final long IDLE_SECONDS = 60;
+    private static final long IDLE_NANOS   = TimeUnit.SECONDS.toNanos(IDLE_SECONDS);
+
+    private final DatagramChannel             channel;
+    private final InetSocketAddress           target;
+    private final NetemProxy                  proxy;
+    private final Map<SocketAddress, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger               counter  = new AtomicInteger();
+    private final ScheduledExecutorService    sweeper;
+
+    UdpRelay(int port, InetSocketAddress target, NetemProxy proxy) throws IOException {
+        this.channel = DatagramChannel.open().bind(new InetSocketAddress(port));
+        this.target  = target;
+        this.proxy   = proxy;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "netem-udp-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleAtFixedRate(this::closeIdle, IDLE_SECONDS, IDLE_SECONDS / 4, TimeUnit.SECONDS);
+        Thread receiver = new Thread(this::receiveLoop, "netem-udp");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    void close() {
+        sweeper.shutdownNow();
+        sessions.values().forEach(Session::close);
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM);
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress from = channel.receive(buf);
+                buf.flip();
+                Session s = sessions.get(from);
+                if (s == null) {
+                    s = new Session(counter.incrementAndGet(), from);
+                    sessions.put(from, s);
+                }
+                s.lastSeenNanos = System.nanoTime();
+                s.up.submit(Arrays.copyOf(buf.array(), buf.limit()));
+            } catch (IOException e) {
+                if (channel.isOpen()) NetemProxy.LOG.fine("[Эмулятор] Ошибка приёма UDP: " + e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void closeIdle() {
+        long now = System.nanoTime();
+        // Клиент ушёл, не попрощавшись: у UDP нет закрытия соединения.
+        sessions.values().removeIf(s -> {
+            if (now - s.lastSeenNanos < IDLE_NANOS) return false;
+            s.close();
+            return true;
+        });
+    }
+
+    /** Датаграммы одного клиента: свой сокет к серверу и два направления. */
+    private final class Session {
+        private final int             id;
+        private final DatagramChannel upstream;
+        private final Link            up;
+        private final Link            down;
+        private volatile long         lastSeenNanos = System.nanoTime();
+
+        Session(int id, SocketAddress client) throws IOException {
+            this.id       = id;
+            this.upstream = DatagramChannel.open().connect(target);
+            this.up       = new Link("udp-" + id + "-up", false, proxy::profile, proxy.nextSeed(),
+                    data -> upstream.write(ByteBuffer.wrap(data)), () -> {}, proxy.stats());
+            this.down     = new Link("udp-" + id + "-down", false, proxy::profile, proxy.nextSeed(),
+                    data -> channel.send(ByteBuffer.wrap(data), client), () -> {}, proxy.stats());
+            Thread t = new Thread(this::readLoop, "netem-udp-" + id);
+            t.setDaemon(true);
+            t.start();
+            NetemProxy.LOG.info("[Эмулятор] UDP #" + id + ": " + client + " → " + target);
+        }
+
+        private void readLoop() {
+            ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM);
+            while (upstream.isOpen()) {
+                try {
+                    buf.clear();
+                    upstream.receive(buf);
+                    buf.flip();
+                    down.submit(Arrays.copyOf(buf.array(), buf.limit()));
+                } catch (IOException e) {
+                    // Например, ICMP «порт недоступен», пока сервер не поднят: канал продолжает работать.
+                    if (!upstream.isOpen()) return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            up.close();
+            down.close();
+            try {
+                upstream.close();
+            } catch (IOException ignored) {}
+            NetemProxy.LOG.info("[Эмулятор] UDP #" + id + " закрыт");
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package org.example.marksmanfx.server;
 
-import org.example.marksmanfx.server.network.GameServer;
+import org.example.marksmanfx.server.game.GameLoopEngine;
+import org.example.marksmanfx.server.lobby.LobbyManager;
+import org.example.marksmanfx.server.network.NetworkServer;
+import org.example.marksmanfx.server.network.ServerMetrics;
+import org.example.marksmanfx.server.network.TransportMode;
 
 import java.io.IOException;
 import java.util.logging.Level;
@@ -8,34 +12,57 @@ import java.util.logging.Logger;
 
 /**
  * Точка входа выделенного игрового сервера.
- * Использование: java -jar marksmanfx-server-fat.jar [port]
- * Порт по умолчанию: 55555
+ * Использование: java -jar marksmanfx-server-fat.jar [port] [--transport=blocking|virtual|nio] [--io-threads=N]
+ * [--game-threads=N]
+ * Порт по умолчанию: 55555, транспорт по умолчанию: blocking, потоков игрового цикла — по числу ядер.
  */
 public final class ServerApp {
 
     private static final Logger LOG          = Logger.getLogger(ServerApp.class.getName());
     private static final int    DEFAULT_PORT = 55555;
 
+    private static final String TRANSPORT_OPTION    = "--transport=";
+    private static final String IO_THREADS_OPTION   = "--io-threads=";
+    private static final String GAME_THREADS_OPTION = "--game-threads=";
+
     public static void main(String[] args) {
         // Настраиваем более читаемый формат логов в консоли.
         System.setProperty("java.util.logging.SimpleFormatter.format",
                 "[%1$tT] [%4$s] %5$s%n");
         Logger.getLogger("").setLevel(Level.INFO);
 
-        int port = DEFAULT_PORT;
-        if (args.length > 0) {
-            try {
-                port = Integer.parseInt(args[0]);
-            } catch (NumberFormatException e) {
-                LOG.warning("Некорректный порт '" + args[0] + "', используется значение по умолчанию " + DEFAULT_PORT);
+        int           port        = DEFAULT_PORT;
+        TransportMode transport   = TransportMode.BLOCKING;
+        int           ioThreads   = Math.min(4, Runtime.getRuntime().availableProcessors());
+        int           gameThreads = Runtime.getRuntime().availableProcessors();
+
+        for (String arg : args) {
+            if (arg.startsWith(TRANSPORT_OPTION)) {
+                String name = arg.substring(TRANSPORT_OPTION.length());
+                TransportMode mode = TransportMode.byName(name);
+                if (mode != null) {
+                    transport = mode;
+                } else {
+                    LOG.warning("Неизвестный транспорт '" + name + "', используется " + transport);
+                }
+            } else if (arg.startsWith(IO_THREADS_OPTION)) {
+                ioThreads = parseInt(arg.substring(IO_THREADS_OPTION.length()), ioThreads, "число потоков ввода-вывода");
+            } else if (arg.startsWith(GAME_THREADS_OPTION)) {
+                gameThreads = parseInt(arg.substring(GAME_THREADS_OPTION.length()), gameThreads, "число потоков игрового цикла");
+            } else {
+                port = parseInt(arg, DEFAULT_PORT, "порт");
             }
         }
 
-        GameServer server = new GameServer(port);
+        LOG.info("[Сервер] Транспорт: " + transport);
+        GameLoopEngine gameLoop = GameLoopEngine.start(gameThreads);
+        NetworkServer  server   = transport.create(port, ioThreads, new LobbyManager(gameLoop));
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             LOG.info("[Сервер] Сработал обработчик завершения");
             server.stop();
+            gameLoop.stop();
+            LOG.info("[Сервер] Сеть: " + ServerMetrics.summary());
         }));
 
         try {
@@ -45,5 +72,13 @@ public final class ServerApp {
             System.exit(1);
         }
     }
-}
 
+    private static int parseInt(String value, int fallback, String what) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warning("Некорректный " + what + " '" + value + "', используется значение по умолчанию " + fallback);
+            return fallback;
+        }
+    }
+}
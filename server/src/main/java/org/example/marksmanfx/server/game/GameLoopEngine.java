@@ -0,0 +1,276 @@
+package org.example.marksmanfx.server.game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Общий игровой цикл всех комнат: N потоков-шардов вместо потока на каждую сессию.
+ *
+ * <p>Каждая {@link ServerGameSession} закреплена за одним шардом. Шард раз в тик проходит
+ * по всем своим сессиям подряд, так что 500 матчей будят не 500 потоков каждые 16 мс, а N.
+ * Новая сессия попадает в наименее загруженный шард; когда сессия заканчивается и разница
+ * между шардами превышает одну сессию, одна сессия самого загруженного шарда переезжает
+ * в самый свободный. Переезд выполняет поток шарда между проходами, поэтому тик сессии
+ * никогда не идёт в двух потоках сразу.</p>
+ *
+ * <p>Шарды стартуют со сдвигом в долю тика, чтобы проходы не совпадали по времени.
+ * Шард без сессий спит до появления новой. Если проход опоздал больше чем на
+ * {@value #MAX_CATCH_UP_TICKS} тика, шард не догоняет пропущенное залпом, а продолжает
+ * с текущего момента, и пропущенные тики попадают в {@link #describe()}.</p>
+ *
+ * <p>Итоги матчей ({@link #dispatch}) обрабатывает отдельный поток событий: комната берёт
+ * свой замок и замок лобби, рассылает итог и список комнат, и всё это время остальные
+ * сессии шарда ждали бы своего тика.</p>
+ */
+public final class GameLoopEngine {
+
+    private static final Logger LOG = Logger.getLogger(GameLoopEngine.class.getName());
+
+    private static final long TICK_NANOS         = TimeUnit.MILLISECONDS.toNanos(ServerGameSession.TICK_MS);
+    private static final int  MAX_CATCH_UP_TICKS = 3;
+
+    private final Shard[]                       shards;
+    private final ReentrantLock                 lock     = new ReentrantLock();
+    /** Шард каждой сессии; меняется только под {@link #lock}. */
+    private final Map<ServerGameSession, Shard> assigned = new HashMap<>();
+    /** Сессии в пути между шардами: пока переезд не закончен, второй раз их не двигаем. */
+    private final Set<ServerGameSession>        moving   = new HashSet<>();
+    private final AtomicLong                    skipped  = new AtomicLong();
+    /** Поток событий матчей, которые нельзя обрабатывать в потоке шарда. */
+    private final ExecutorService               events   = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "marksman-game-events");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean                    running  = true;
+
+    private GameLoopEngine(int threads) {
+        shards = new Shard[threads];
+        for (int i = 0; i < threads; i++) shards[i] = new Shard(i, TICK_NANOS * i / threads);
+        for (Shard shard : shards) shard.thread.start();
+    }
+
+    /** @param threads число шардов; обычно по числу ядер */
+    public static GameLoopEngine start(int threads) {
+        GameLoopEngine engine = new GameLoopEngine(Math.max(1, threads));
+        LOG.info("[Цикл] Общий игровой цикл: " + engine.shards.length + " потоков, "
+                + ServerGameSession.TPS + " тиков/сек");
+        return engine;
+    }
+
+    /** Ставим сессию в наименее загруженный шард; первый тик — на ближайшем проходе шарда. */
+    void add(ServerGameSession session) {
+        lock.lock();
+        try {
+            if (assigned.containsKey(session)) return;
+            Shard idlest = shards[0];
+            for (Shard s : shards) {
+                if (s.members.size() < idlest.members.size()) idlest = s;
+            }
+            Shard target = idlest;
+            assign(session, target);
+            target.post(() -> target.sessions.add(session));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сессия закончилась. Сам шард выбросит её на следующем проходе по флагу остановки,
+     * здесь только освобождаем место и выравниваем шарды.
+     */
+    void remove(ServerGameSession session) {
+        lock.lock();
+        try {
+            Shard from = assigned.remove(session);
+            if (from == null) return;
+            from.members.remove(session);
+            rebalance();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Выполняем событие сессии в потоке событий, а не в потоке шарда. */
+    void dispatch(Runnable event) {
+        events.execute(() -> {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "[Цикл] Ошибка при обработке события сессии", e);
+            }
+        });
+    }
+
+    /** Останавливаем все шарды и поток событий; сессии больше не тикают. */
+    public void stop() {
+        running = false;
+        events.shutdown();
+        for (Shard shard : shards) LockSupport.unpark(shard.thread);
+        LOG.info("[Цикл] Остановлен: " + describe());
+    }
+
+    /** Число сессий по шардам и пропущенные тики, например {@code сессий 3/2/2/2, пропущено тиков 0}. */
+    public String describe() {
+        lock.lock();
+        try {
+            StringBuilder sb = new StringBuilder("сессий ");
+            for (int i = 0; i < shards.length; i++) {
+                if (i > 0) sb.append('/');
+                sb.append(shards[i].members.size());
+            }
+            return sb.append(", пропущено тиков ").append(skipped.get()).toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ─── Распределение по шардам (под замком) ────────────────────────────────
+
+    private void assign(ServerGameSession session, Shard shard) {
+        assigned.put(session, shard);
+        shard.members.add(session);
+    }
+
+    /** Одна сессия из самого загруженного шарда в самый свободный, если разница больше одной. */
+    private void rebalance() {
+        Shard busiest = shards[0];
+        Shard idlest  = shards[0];
+        for (Shard s : shards) {
+            if (s.members.size() > busiest.members.size()) busiest = s;
+            if (s.members.size() < idlest.members.size())  idlest  = s;
+        }
+        if (busiest.members.size() - idlest.members.size() <= 1) return;
+
+        ServerGameSession session = null;
+        for (ServerGameSession candidate : busiest.members) {
+            if (!moving.contains(candidate)) {
+                session = candidate;
+                break;
+            }
+        }
+        if (session == null) return;
+
+        busiest.members.remove(session);
+        assign(session, idlest);
+        moving.add(session);
+        ServerGameSession moved = session;
+        Shard             from  = busiest;
+        Shard             to    = idlest;
+        // Команды шарда выполняются по порядку: команда добавления этой сессии в from уже выполнена.
+        from.post(() -> {
+            if (from.sessions.remove(moved)) {
+                to.post(() -> {
+                    to.sessions.add(moved);
+                    settled(moved);
+                });
+            } else {
+                // Сессию уже выбросили как остановленную.
+                settled(moved);
+            }
+        });
+        LOG.fine("[Цикл] Сессия перенесена: шард " + from.index + " → " + to.index);
+    }
+
+    private void settled(ServerGameSession session) {
+        lock.lock();
+        try {
+            moving.remove(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ─── Шард ────────────────────────────────────────────────────────────────
+
+    /** Поток и его сессии; список {@link #sessions} трогает только сам поток шарда. */
+    private final class Shard {
+        private final int                     index;
+        private final long                    offsetNanos;
+        private final Thread                  thread;
+        private final Queue<Runnable>         commands = new ConcurrentLinkedQueue<>();
+        private final List<ServerGameSession> sessions = new ArrayList<>();
+        /** Сессии шарда с точки зрения распределения; меняется под замком движка. */
+        private final Set<ServerGameSession>  members  = new LinkedHashSet<>();
+
+        Shard(int index, long offsetNanos) {
+            this.index       = index;
+            this.offsetNanos = offsetNanos;
+            this.thread      = new Thread(this::run, "marksman-game-loop-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void post(Runnable command) {
+            commands.add(command);
+            LockSupport.unpark(thread);
+        }
+
+        private void run() {
+            long next = System.nanoTime() + offsetNanos;
+            while (running) {
+                runCommands();
+                if (sessions.isEmpty()) {
+                    // Без сессий не просыпаемся каждый тик: ждём команды.
+                    LockSupport.park(this);
+                    next = System.nanoTime();
+                    continue;
+                }
+
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(this, delay);
+                    // Разбудила команда: сначала выполняем её, тик — в свой срок.
+                    if (System.nanoTime() < next) continue;
+                }
+
+                tickAll();
+                next += TICK_NANOS;
+                long lag = System.nanoTime() - next;
+                if (lag > MAX_CATCH_UP_TICKS * TICK_NANOS) {
+                    skipped.addAndGet(lag / TICK_NANOS);
+                    next += lag / TICK_NANOS * TICK_NANOS;
+                }
+            }
+        }
+
+        private void runCommands() {
+            Runnable command;
+            while ((command = commands.poll()) != null) command.run();
+        }
+
+        /** Один проход: тик каждой живой сессии; остановленные выбрасываем. */
+        private void tickAll() {
+            for (Iterator<ServerGameSession> it = sessions.iterator(); it.hasNext(); ) {
+                ServerGameSession session = it.next();
+                if (session.isStopped()) {
+                    it.remove();
+                    continue;
+                }
+                try {
+                    session.tick();
+                } catch (RuntimeException e) {
+                    // Как и у отдельного планировщика, упавшая сессия больше не тикает, а остальные шарда живут.
+                    LOG.log(Level.SEVERE, "[Цикл] Сессия остановлена из-за ошибки в тике", e);
+                    it.remove();
+                    remove(session);
+                }
+            }
+        }
+    }
+}
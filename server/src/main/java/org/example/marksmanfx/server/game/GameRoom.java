@@ -10,6 +10,7 @@ import org.example.marksmanfx.common.model.PlayerInfo;
 import org.example.marksmanfx.common.model.RoomInfo;
 import org.example.marksmanfx.server.lobby.LobbyManager;
 import org.example.marksmanfx.server.network.ClientHandler;
+import org.example.marksmanfx.server.network.OutboundFrame;
 import org.example.marksmanfx.server.state.FinishedState;
 import org.example.marksmanfx.server.state.RoomState;
 import org.example.marksmanfx.server.state.WaitingState;
@@ -19,27 +20,36 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
  * Многопользовательская комната, в которой одновременно может находиться до MAX_PLAYERS игроков.
  * Все события жизненного цикла делегируются текущей реализации {@link RoomState}.
  * Переходы по состояниям идут по цепочке WAITING -> PLAYING -> PAUSED / PAUSE_REQUESTED -> FINISHED -> WAITING.
+ *
+ * Состояние комнаты защищено {@link ReentrantLock}, а не монитором: под замком идёт отправка
+ * в сокеты, и {@code synchronized} закреплял бы виртуальный поток за потоком-носителем.
  */
 public final class GameRoom {
 
     private static final Logger LOG         = Logger.getLogger(GameRoom.class.getName());
     public  static final int    MAX_PLAYERS = 4;
 
-    private final String       roomId;
-    private final String       roomName;
-    private final LobbyManager lobbyManager;
+    private final String              roomId;
+    private final String              roomName;
+    private final LobbyManager        lobbyManager;
+    private final ReentrantLock       lock      = new ReentrantLock();
+    private final SnapshotBroadcaster snapshots = new SnapshotBroadcaster();
 
     /** Map с порядком вставки сохраняет стабильный порядок рассылки. */
     private final Map<String, ClientHandler> playerMap = new LinkedHashMap<>();
+    /** Занятые слоты: в снимках игрок обозначен номером слота вместо UUID и никнейма. */
+    private final ClientHandler[]            slots     = new ClientHandler[MAX_PLAYERS];
 
     private RoomState         state   = new WaitingState();
-    private ServerGameSession session;
+    /** volatile: кадры ввода читают сессию без замка комнаты. */
+    private volatile ServerGameSession session;
 
     public GameRoom(String roomId, String roomName, LobbyManager lobbyManager) {
         this.roomId       = roomId;
@@ -48,76 +58,164 @@ public final class GameRoom {
     }
 
     // Управление игроками.
-    public synchronized boolean addPlayer(ClientHandler player) {
-        if (playerMap.size() >= MAX_PLAYERS) return false;
-        playerMap.put(player.getPlayerId(), player);
-        player.setCurrentRoomId(roomId);
-
-        LOG.info("[Комната " + roomId + "] " + player.getNickname() + " вошёл ("
-                + playerMap.size() + "/" + MAX_PLAYERS + ")");
-
-        // Отправляем вошедшему его local playerId и полное состояние комнаты.
-        player.sendMessage(new RoomJoinedMessage(toRoomInfo(), buildPlayerList(), player.getPlayerId()));
-        // Уведомляем остальных участников о новом игроке.
-        for (ClientHandler p : playerMap.values()) {
-            if (!p.getPlayerId().equals(player.getPlayerId())) {
-                p.sendMessage(new RoomUpdatedMessage(toRoomInfo(), buildPlayerList()));
+    public boolean addPlayer(ClientHandler player) {
+        lock.lock();
+        try {
+            if (playerMap.size() >= MAX_PLAYERS) return false;
+            int slot = freeSlot();
+            slots[slot] = player;
+            playerMap.put(player.getPlayerId(), player);
+            player.setCurrentRoomId(roomId);
+            player.setRoomSlot(slot);
+            // Первый снимок в этой комнате должен прийти ключевым кадром.
+            player.resetSnapshotAck();
+
+            LOG.info("[Комната " + roomId + "] " + player.getNickname() + " вошёл ("
+                    + playerMap.size() + "/" + MAX_PLAYERS + ")");
+
+            // Отправляем вошедшему его local playerId и полное состояние комнаты.
+            player.sendMessage(new RoomJoinedMessage(toRoomInfo(), buildPlayerList(), player.getPlayerId()));
+            // Уведомляем остальных участников о новом игроке одним закодированным кадром.
+            OutboundFrame update = OutboundFrame.of(new RoomUpdatedMessage(toRoomInfo(), buildPlayerList()));
+            try {
+                for (ClientHandler p : playerMap.values()) {
+                    if (!p.getPlayerId().equals(player.getPlayerId())) {
+                        p.send(update);
+                    }
+                }
+            } finally {
+                update.release();
             }
+            lobbyManager.broadcastLobbyState();
+            return true;
+        } finally {
+            lock.unlock();
         }
-        lobbyManager.broadcastLobbyState();
-        return true;
     }
 
-    public synchronized void removePlayer(ClientHandler player) {
-        if (!playerMap.containsKey(player.getPlayerId())) return;
-        playerMap.remove(player.getPlayerId());
-        player.setCurrentRoomId(null);
-        LOG.info("[Комната " + roomId + "] " + player.getNickname() + " вышел");
-
-        state = state.onPlayerDisconnect(player, this);
-        broadcastRoomUpdate();
-        lobbyManager.broadcastLobbyState();
-
-        if (playerMap.isEmpty()) {
-            lobbyManager.removeRoom(roomId);
+    public void removePlayer(ClientHandler player) {
+        lock.lock();
+        try {
+            if (!playerMap.containsKey(player.getPlayerId())) return;
+            playerMap.remove(player.getPlayerId());
+            slots[player.getRoomSlot()] = null;
+            player.setCurrentRoomId(null);
+            player.setRoomSlot(-1);
+            player.resetSnapshotAck();
+            LOG.info("[Комната " + roomId + "] " + player.getNickname() + " вышел");
+
+            state = state.onPlayerDisconnect(player, this);
+            broadcastRoomUpdate();
+            lobbyManager.broadcastLobbyState();
+
+            if (playerMap.isEmpty()) {
+                lobbyManager.removeRoom(roomId);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    // Обработка событий, все методы синхронизированы по комнате.
-    public synchronized void onPlayerReady(ClientHandler player, boolean ready) {
-        state = state.onPlayerReady(player, ready, this);
+    /**
+     * Связь с игроком потеряна, но место за ним: в матче он стоит на месте с отпущенными клавишами,
+     * голоса и готовность сохраняются до его возвращения или ухода.
+     */
+    public void suspendPlayer(ClientHandler player) {
+        ServerGameSession s = session;
+        if (s != null) s.releaseInput(player.getRoomSlot());
+        LOG.info("[Комната " + roomId + "] " + player.getNickname() + " без связи, место сохранено");
     }
 
-    public synchronized void onPauseRequest(ClientHandler player, boolean pausing) {
-        state = state.onPauseRequest(player, pausing, this);
+    /**
+     * Вернувшийся клиент занимает слот прежнего обработчика с тем же playerId.
+     * Мир он получит одним ключевым кадром, а фазу комнаты ему сообщит текущее состояние.
+     *
+     * @return {@code false}, если прежнего обработчика в комнате уже нет
+     */
+    public boolean replacePlayer(ClientHandler previous, ClientHandler resumed) {
+        lock.lock();
+        try {
+            if (playerMap.get(previous.getPlayerId()) != previous) return false;
+            int slot = previous.getRoomSlot();
+            // Ключ тот же, поэтому порядок рассылки не меняется.
+            playerMap.put(resumed.getPlayerId(), resumed);
+            slots[slot] = resumed;
+            resumed.setCurrentRoomId(roomId);
+            resumed.setRoomSlot(slot);
+            resumed.resetSnapshotAck();
+            LOG.info("[Комната " + roomId + "] " + resumed.getNickname() + " вернулся в слот " + slot);
+
+            resumed.sendMessage(new RoomUpdatedMessage(toRoomInfo(), buildPlayerList()));
+            state = state.onPlayerResume(resumed, this);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void onFireArrow(ClientHandler player, double chargeRatio) {
-        state = state.onFireArrow(player, chargeRatio, this);
+    // Обработка событий, все методы выполняются под замком комнаты.
+    public void onPlayerReady(ClientHandler player, boolean ready) {
+        lock.lock();
+        try {
+            state = state.onPlayerReady(player, ready, this);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void onMove(ClientHandler player, String direction, boolean pressed) {
-        state = state.onMove(player, direction, pressed, this);
+    public void onPauseRequest(ClientHandler player, boolean pausing) {
+        lock.lock();
+        try {
+            state = state.onPauseRequest(player, pausing, this);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void onAim(ClientHandler player, String direction, boolean pressed) {
-        state = state.onAim(player, direction, pressed, this);
+    /**
+     * Выстрел, как и кадр ввода, идёт мимо замка и {@link RoomState} в очередь сессии:
+     * на паузе его отбросит сам тик, после конца матча сессия его уже не принимает.
+     */
+    public void onFireArrow(ClientHandler player, double chargeRatio) {
+        ServerGameSession s = session;
+        if (s != null) s.playerFireArrow(player.getRoomSlot(), chargeRatio);
     }
 
-    public synchronized void onCrouch(ClientHandler player, boolean crouching) {
-        state = state.onCrouch(player, crouching, this);
+    /**
+     * Кадр ввода приходит с частотой сэмплирования клиента, поэтому идёт мимо замка и
+     * {@link RoomState}: сессия сама не применяет ввод на паузе, а без сессии его некуда применять.
+     */
+    public void onInput(ClientHandler player, int seq, int buttons) {
+        ServerGameSession s = session;
+        if (s != null) s.playerInput(player.getRoomSlot(), seq, buttons);
     }
 
     /** Обрабатываем запрос реванша и делегируем его текущему состоянию. */
-    public synchronized void onRematchRequest(ClientHandler player) {
-        state = state.onRematchRequest(player, this);
+    public void onRematchRequest(ClientHandler player) {
+        lock.lock();
+        try {
+            state = state.onRematchRequest(player, this);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    /** Вызывается из ServerGameSession, когда набрано победное количество очков. */
-    public synchronized void onGameOver(String winnerId, String winnerNickname) {
-        LOG.info("[Комната " + roomId + "] Игра окончена, победитель: " + winnerNickname);
-        broadcast(new GameOverMessage(winnerId, winnerNickname));
-        state = new FinishedState(winnerId);
+    /**
+     * Вызывается из потока событий игрового цикла, когда в сессии {@code finished} набрано
+     * победное количество очков. Пока событие шло, соперник мог уйти (техническая победа)
+     * или начаться реванш — тогда итог уже не относится к текущему матчу.
+     */
+    public void onGameOver(ServerGameSession finished, String winnerId, String winnerNickname) {
+        lock.lock();
+        try {
+            if (finished != session || state instanceof FinishedState) return;
+            LOG.info("[Комната " + roomId + "] Игра окончена, победитель: " + winnerNickname);
+            broadcast(new GameOverMessage(winnerId, winnerNickname));
+            state = new FinishedState(winnerId);
+        } finally {
+            lock.unlock();
+        }
+        // Вне замка комнаты: лобби берёт свой замок, а порядок — сначала лобби, потом комната.
         lobbyManager.broadcastLobbyState();
     }
 
@@ -126,14 +224,15 @@ public final class GameRoom {
     public void startGameSession() {
         List<ServerPlayerState> playerStates = new ArrayList<>();
         for (ClientHandler ch : playerMap.values()) {
-            ServerPlayerState ps = new ServerPlayerState(ch.getPlayerId(), ch.getNickname());
+            ServerPlayerState ps = new ServerPlayerState(ch.getRoomSlot(), ch.getPlayerId(), ch.getNickname());
             playerStates.add(ps);
         }
 
         session = new ServerGameSession(
                 playerStates,
                 this::onGameOver,
-                this::broadcastGameState
+                this::broadcastGameState,
+                lobbyManager.gameLoop()
         );
         session.start();
         LOG.info("[Комната " + roomId + "] Игровая сессия запущена, игроков: " + playerStates.size());
@@ -148,19 +247,41 @@ public final class GameRoom {
     }
 
     // Вспомогательный метод смены состояния.
-    public synchronized void transitionToState(RoomState newState) {
-        this.state = newState;
+    public void transitionToState(RoomState newState) {
+        lock.lock();
+        try {
+            this.state = newState;
+        } finally {
+            lock.unlock();
+        }
     }
 
     // Рассылка сообщений.
-    public synchronized void broadcast(ServerMessage message) {
-        for (ClientHandler p : playerMap.values()) {
-            p.sendMessage(message);
+    /** Кодируем сообщение один раз и отправляем один и тот же кадр каждому игроку комнаты. */
+    public void broadcast(ServerMessage message) {
+        lock.lock();
+        try {
+            OutboundFrame frame = OutboundFrame.of(message);
+            try {
+                for (ClientHandler p : playerMap.values()) {
+                    p.send(frame);
+                }
+            } finally {
+                frame.release();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
+    /** Снимок каждому игроку дельтой относительно подтверждённого им снимка. */
     private void broadcastGameState(GameStateMessage msg) {
-        broadcast(msg);
+        lock.lock();
+        try {
+            snapshots.broadcast(msg, playerMap.values());
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void broadcastRoomUpdate() {
@@ -171,24 +292,60 @@ public final class GameRoom {
     public String getRoomId()   { return roomId; }
     public String getRoomName() { return roomName; }
 
-    public synchronized int getPlayerCount() { return playerMap.size(); }
-    public synchronized boolean isFull()     { return playerMap.size() >= MAX_PLAYERS; }
-    public synchronized boolean isEmpty()    { return playerMap.isEmpty(); }
+    public int getPlayerCount() {
+        lock.lock();
+        try {
+            return playerMap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    public boolean isFull()     {
+        lock.lock();
+        try {
+            return playerMap.size() >= MAX_PLAYERS;
+        } finally {
+            lock.unlock();
+        }
+    }
+    public boolean isEmpty()    {
+        lock.lock();
+        try {
+            return playerMap.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-    public synchronized List<String> getPlayerIds() {
-        return new ArrayList<>(playerMap.keySet());
+    public List<String> getPlayerIds() {
+        lock.lock();
+        try {
+            return new ArrayList<>(playerMap.keySet());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized String getNickname(String playerId) {
-        ClientHandler ch = playerMap.get(playerId);
-        return ch != null ? ch.getNickname() : "?";
+    public String getNickname(String playerId) {
+        lock.lock();
+        try {
+            ClientHandler ch = playerMap.get(playerId);
+            return ch != null ? ch.getNickname() : "?";
+        } finally {
+            lock.unlock();
+        }
     }
 
     public ServerGameSession getSession() { return session; }
 
-    public synchronized RoomInfo toRoomInfo() {
-        GamePhase phase = toGamePhase();
-        return new RoomInfo(roomId, roomName, playerMap.size(), MAX_PLAYERS, phase);
+    public RoomInfo toRoomInfo() {
+        lock.lock();
+        try {
+            GamePhase phase = toGamePhase();
+            return new RoomInfo(roomId, roomName, playerMap.size(), MAX_PLAYERS, phase);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private GamePhase toGamePhase() {
@@ -201,11 +358,19 @@ public final class GameRoom {
         };
     }
 
+    /** Наименьший свободный слот; вызывается, только когда в комнате есть место. */
+    private int freeSlot() {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) return i;
+        }
+        throw new IllegalStateException("Нет свободного слота в комнате " + roomId);
+    }
+
     private List<PlayerInfo> buildPlayerList() {
         List<PlayerInfo> list = new ArrayList<>();
         Set<String> readyIds = (state instanceof WaitingState ws) ? ws.getReadyIds() : Set.of();
         for (ClientHandler ch : playerMap.values()) {
-            list.add(new PlayerInfo(ch.getPlayerId(), ch.getNickname(),
+            list.add(new PlayerInfo(ch.getRoomSlot(), ch.getPlayerId(), ch.getNickname(),
                     readyIds.contains(ch.getPlayerId())));
         }
         return list;
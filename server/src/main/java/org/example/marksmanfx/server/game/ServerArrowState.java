@@ -11,14 +11,14 @@ public final class ServerArrowState {
     private static final double BASE_SPEED         = 760.0;
     private static final double MIN_SPEED_MULT     = 1.0;
     private static final double MAX_SPEED_MULT     = 2.4;
-    private static final double ARROW_WIDTH        = 54.0;
-    private static final double ARROW_HEIGHT       = 12.0;
+    private static final double ARROW_WIDTH        = ArrowDto.LENGTH;
     private static final double BOUND_MIN_X        = -80.0;
     private static final double BOUND_MAX_X        = 1040.0;
     private static final double BOUND_MIN_Y        = -40.0;
     private static final double BOUND_MAX_Y        = 600.0;
 
     private final String ownerId;
+    private final int    ownerSlot;
 
     private boolean active;
     private double  x;
@@ -27,8 +27,9 @@ public final class ServerArrowState {
     private double  velocityX;
     private double  velocityY;
 
-    public ServerArrowState(String ownerId) {
-        this.ownerId = ownerId;
+    public ServerArrowState(String ownerId, int ownerSlot) {
+        this.ownerId   = ownerId;
+        this.ownerSlot = ownerSlot;
     }
 
     public void activate(double startX, double startY, double angleDeg, double chargeRatio) {
@@ -72,7 +73,7 @@ public final class ServerArrowState {
     }
 
     public ArrowDto toDto() {
-        return new ArrowDto(ownerId, active, x, y, angleDegrees, ARROW_WIDTH, ARROW_HEIGHT);
+        return new ArrowDto(ownerSlot, active, x, y, angleDegrees);
     }
 
     public String getOwnerId() { return ownerId; }
@@ -1,5 +1,6 @@
 package org.example.marksmanfx.server.game;
 
+import org.example.marksmanfx.common.concurrent.MpscRing;
 import org.example.marksmanfx.common.message.GameStateMessage;
 import org.example.marksmanfx.common.model.ArrowDto;
 import org.example.marksmanfx.common.model.GamePhase;
@@ -9,10 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -20,6 +18,7 @@ import java.util.logging.Logger;
  * Авторитетный игровой цикл сервера. Запускается ровно на 60 тиков в секунду.
  *
  * За каждый тик мы:
+ *   0. Разбираем очередь ввода: кадры клавиш, выстрелы, отпускание клавиш
  *   1. Применяем накопленные флаги ввода к позициям игроков
  *   2. Двигаем мишени с учётом текущего множителя скорости
  *   3. Обновляем полёт всех стрел
@@ -27,17 +26,30 @@ import java.util.logging.Logger;
  *   5. Проверяем условие победы (WIN_SCORE очков)
  *   6. Рассылаем снимок состояния всем клиентам комнаты
  *
- * Ввод игроков передаётся через volatile-поля {@link ServerPlayerState},
- * чтобы избежать блокировок между потоком ClientHandler и потоком игрового цикла.
+ * Ввод игроков потоки ClientHandler и UDP кладут в очередь сессии без блокировок ({@link MpscRing}),
+ * а разбирает её только тик — по порядку прихода, до шага физики. Поэтому ввод не ждёт замка
+ * комнаты, который держит рассылка, и применяется к состоянию ровно на границе тика.
+ *
+ * Своего потока у сессии нет: тики выполняет шард общего {@link GameLoopEngine},
+ * вместе с тиками других комнат того же шарда.
  */
 public final class ServerGameSession {
 
+    /** Тиков в секунду; с той же частотой снимки уходят клиентам с хорошей связью. */
+    public static final int TPS = 60;
+    /** Шаг тика; с этим же периодом шард {@link GameLoopEngine} проходит по своим сессиям. */
+    static final long       TICK_MS = 1000L / TPS;
+
     private static final Logger LOG = Logger.getLogger(ServerGameSession.class.getName());
 
-    private static final int    TPS         = 60;
-    private static final long   TICK_MS     = 1000L / TPS;
     private static final int    WIN_SCORE   = 6;
     private static final int    MAX_LEVEL   = 5;
+    /**
+     * Вместимость очереди ввода. Лимиты частоты {@code ClientHandler} пропускают за тик не больше
+     * запаса вёдер (60 кадров и 5 выстрелов на игрока), так что полной очередь бывает только
+     * при выключенных лимитах; тогда лишний ввод отбрасывается.
+     */
+    private static final int    INPUT_CAPACITY = 1024;
 
     // Константы мира (совпадают с GameModel из однопользовательской версии)
     private static final double NEAR_X          = 640.0;
@@ -49,14 +61,26 @@ public final class ServerGameSession {
     private static final double TARGET_TOP_Y    = 36.0;
     private static final double TARGET_BOTTOM_Y = 524.0;
 
-    /** Коллбэк для уведомления GameRoom об окончании матча. */
+    /** Коллбэк для уведомления GameRoom об окончании матча; вызывается в потоке событий цикла. */
     public interface GameOverCallback {
-        void onGameOver(String winnerId, String winnerNickname);
+        void onGameOver(ServerGameSession session, String winnerId, String winnerNickname);
     }
 
+    /** Ввод, пришедший между тиками. */
+    private sealed interface PlayerInput permits Buttons, Fire, Release {}
+    /** Кадр ввода: нажатые клавиши с номером кадра. */
+    private record Buttons(int slot, int seq, int buttons) implements PlayerInput {}
+    /** Выстрел с силой натяжения лука. */
+    private record Fire(int slot, double chargeRatio) implements PlayerInput {}
+    /** Игрок без связи: отпускаем клавиши. */
+    private record Release(int slot) implements PlayerInput {}
+
     // Состояния всех игроков и стрел в текущей сессии
     private final Map<String, ServerPlayerState> players = new ConcurrentHashMap<>();
     private final Map<String, ServerArrowState>  arrows  = new ConcurrentHashMap<>();
+    /** Те же игроки по слоту: кадр ввода находит своё состояние без поиска по строке. */
+    private final AtomicReferenceArray<ServerPlayerState> bySlot =
+            new AtomicReferenceArray<>(GameRoom.MAX_PLAYERS);
 
     private final ServerTargetState nearTarget;
     private final ServerTargetState farTarget;
@@ -65,22 +89,23 @@ public final class ServerGameSession {
     /** Функция рассылки снимка — передаётся из GameRoom при создании сессии. */
     private final Consumer<GameStateMessage> broadcaster;
 
-    private final ScheduledExecutorService scheduler =
-            Executors.newSingleThreadScheduledExecutor(r -> {
-                Thread t = new Thread(r, "marksman-game-loop");
-                t.setDaemon(true);
-                return t;
-            });
+    private final GameLoopEngine loop;
+
+    /** Пишут потоки ClientHandler и UDP, читает только тик. */
+    private final MpscRing<PlayerInput> inputs = new MpscRing<>(INPUT_CAPACITY);
 
     private volatile boolean paused  = false;
     private volatile boolean stopped = false;
-    private ScheduledFuture<?> tickFuture;
+    /** Победитель, набравший очки на текущем тике; комнате о нём сообщаем после рассылки снимка. */
+    private ServerPlayerState winner;
 
     public ServerGameSession(List<ServerPlayerState> initialPlayers,
                              GameOverCallback callback,
-                             Consumer<GameStateMessage> broadcaster) {
+                             Consumer<GameStateMessage> broadcaster,
+                             GameLoopEngine loop) {
         this.callback    = callback;
         this.broadcaster = broadcaster;
+        this.loop        = loop;
 
         // Создаём мишени и сбрасываем их в центральное положение
         nearTarget = new ServerTargetState(NEAR_X, NEAR_SIZE, NEAR_SPEED, TARGET_TOP_Y, TARGET_BOTTOM_Y, 1);
@@ -89,26 +114,30 @@ public final class ServerGameSession {
         // Регистрируем всех игроков и создаём для каждого слот стрелы
         for (ServerPlayerState p : initialPlayers) {
             players.put(p.playerId, p);
-            arrows.put(p.playerId, new ServerArrowState(p.playerId));
+            bySlot.set(p.slot, p);
+            arrows.put(p.playerId, new ServerArrowState(p.playerId, p.slot));
         }
     }
 
     // ─── Управление жизненным циклом сессии ──────────────────────────────────
 
-    /** Запускаем игровой цикл. */
+    /** Запускаем игровой цикл: ставим сессию в шард общего цикла. */
     public void start() {
         LOG.info("[Сессия] Игровой цикл запущен: " + TPS + " тиков/сек");
-        tickFuture = scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+        loop.add(this);
     }
 
-    /** Останавливаем игровой цикл и освобождаем ресурсы. */
+    /** Останавливаем игровой цикл; шард выбросит сессию на ближайшем проходе. */
     public void stop() {
         stopped = true;
-        if (tickFuture != null) tickFuture.cancel(false);
-        scheduler.shutdown();
+        loop.remove(this);
         LOG.info("[Сессия] Игровой цикл остановлен");
     }
 
+    boolean isStopped() {
+        return stopped;
+    }
+
     /** Замораживаем физику (мишени и стрелы не двигаются). */
     public void pause() {
         paused = true;
@@ -121,32 +150,55 @@ public final class ServerGameSession {
         LOG.info("[Сессия] Игра возобновлена");
     }
 
-    // ─── Сеттеры ввода (вызываются из потоков ClientHandler) ─────────────────
+    // ─── Ввод игроков (вызывается из потоков ClientHandler и UDP) ──────────────
 
-    public void playerMove(String playerId, String direction, boolean pressed) {
-        ServerPlayerState p = players.get(playerId);
-        if (p == null) return;
-        switch (direction) {
-            case "UP"    -> p.moveUp    = pressed;
-            case "DOWN"  -> p.moveDown  = pressed;
-            case "LEFT"  -> p.moveLeft  = pressed;
-            case "RIGHT" -> p.moveRight = pressed;
-        }
+    /**
+     * Кадр ввода игрока в слоте {@code slot}. Идёт мимо замка комнаты и её состояния:
+     * на паузе и после остановки цикла ввод просто не применяется.
+     */
+    public void playerInput(int slot, int seq, int buttons) {
+        submit(new Buttons(slot, seq, buttons));
+    }
+
+    /** Игрок без связи: отпускаем все клавиши, пока он не вернётся. */
+    public void releaseInput(int slot) {
+        submit(new Release(slot));
     }
 
-    public void playerAim(String playerId, String direction, boolean pressed) {
-        ServerPlayerState p = players.get(playerId);
-        if (p == null) return;
-        switch (direction) {
-            case "UP"   -> p.aimUp   = pressed;
-            case "DOWN" -> p.aimDown = pressed;
+    /** Выстрел игрока в слоте {@code slot}; стрелу выпустит ближайший тик. */
+    public void playerFireArrow(int slot, double chargeRatio) {
+        submit(new Fire(slot, chargeRatio));
+    }
+
+    private void submit(PlayerInput input) {
+        if (stopped) return;
+        if (!inputs.offer(input)) LOG.fine("[Сессия] Очередь ввода заполнена, ввод отброшен: " + input);
+    }
+
+    /** Разбираем весь ввод, пришедший с прошлого тика; вызывается только из {@link #tick()}. */
+    private void drainInputs() {
+        inputs.drain(this::apply, INPUT_CAPACITY);
+    }
+
+    private void apply(PlayerInput input) {
+        switch (input) {
+            case Buttons b -> {
+                ServerPlayerState p = playerInSlot(b.slot());
+                if (p != null) p.acceptInput(b.seq(), b.buttons());
+            }
+            case Fire f -> {
+                ServerPlayerState p = playerInSlot(f.slot());
+                if (p != null) fireArrow(p, f.chargeRatio());
+            }
+            case Release r -> {
+                ServerPlayerState p = playerInSlot(r.slot());
+                if (p != null) p.releaseButtons();
+            }
         }
     }
 
-    public void playerCrouch(String playerId, boolean crouching) {
-        ServerPlayerState p = players.get(playerId);
-        if (p == null) return;
-        if (crouching != p.isCrouched()) p.toggleCrouch();
+    private ServerPlayerState playerInSlot(int slot) {
+        return slot >= 0 && slot < bySlot.length() ? bySlot.get(slot) : null;
     }
 
     /**
@@ -156,10 +208,9 @@ public final class ServerGameSession {
      * Новая стрела создаётся только когда предыдущая достигла мишени
      * или вылетела за границу поля.
      */
-    public void playerFireArrow(String playerId, double chargeRatio) {
-        ServerPlayerState p = players.get(playerId);
-        ServerArrowState  a = arrows.get(playerId);
-        if (p == null || a == null || paused || stopped) return;
+    private void fireArrow(ServerPlayerState p, double chargeRatio) {
+        ServerArrowState a = arrows.get(p.playerId);
+        if (a == null || paused) return;
 
         // Пока стрела летит — новый выстрел невозможен
         if (a.isActive()) {
@@ -174,11 +225,15 @@ public final class ServerGameSession {
 
     // ─── Основной тик ─────────────────────────────────────────────────────────
 
-    private void tick() {
+    /** Один тик; вызывается только потоком шарда {@link GameLoopEngine}. */
+    void tick() {
         if (stopped) return;
 
         final double dt = TICK_MS / 1000.0; // шаг времени в секундах
 
+        // Ввод разбираем и на паузе: номера кадров должны расти, а выстрелы на паузе отбрасываются
+        drainInputs();
+
         if (!paused) {
             // Применяем накопленный ввод всех игроков
             for (ServerPlayerState p : players.values()) p.applyInput(dt);
@@ -195,6 +250,14 @@ public final class ServerGameSession {
 
         // Рассылаем снимок состояния независимо от паузы
         broadcastState();
+
+        // Комната узнаёт об итоге уже после последнего снимка матча, и не в потоке шарда:
+        // ей нужны замки комнаты и лобби, а шард тем временем тикает другие комнаты.
+        ServerPlayerState w = winner;
+        if (w != null) {
+            winner = null;
+            loop.dispatch(() -> callback.onGameOver(this, w.playerId, w.nickname));
+        }
     }
 
     /** Проверяем, попала ли кончик каждой стрелы в зону мишени. */
@@ -229,9 +292,8 @@ public final class ServerGameSession {
             stopped = true;
             LOG.info("[Сессия] ИГРА ОКОНЧЕНА — победитель: " + scorer.nickname
                     + " (" + scorer.getScore() + " очков)");
-            if (tickFuture != null) tickFuture.cancel(false);
-            // Уведомляем GameRoom из отдельного потока, чтобы избежать дедлока
-            scheduler.execute(() -> callback.onGameOver(scorer.playerId, scorer.nickname));
+            loop.remove(this);
+            winner = scorer;
         }
     }
 
@@ -262,12 +324,14 @@ public final class ServerGameSession {
     /** Добавляем нового игрока в уже запущенную сессию. */
     public void addPlayer(ServerPlayerState p) {
         players.put(p.playerId, p);
-        arrows.put(p.playerId, new ServerArrowState(p.playerId));
+        bySlot.set(p.slot, p);
+        arrows.put(p.playerId, new ServerArrowState(p.playerId, p.slot));
     }
 
     /** Удаляем отключившегося игрока и деактивируем его стрелу. */
     public void removePlayer(String playerId) {
-        players.remove(playerId);
+        ServerPlayerState p = players.remove(playerId);
+        if (p != null) bySlot.compareAndSet(p.slot, p, null);
         ServerArrowState a = arrows.remove(playerId);
         if (a != null) a.deactivate();
     }
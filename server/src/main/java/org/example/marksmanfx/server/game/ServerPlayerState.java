@@ -1,10 +1,13 @@
 package org.example.marksmanfx.server.game;
 
+import org.example.marksmanfx.common.event.InputFrameEvent;
 import org.example.marksmanfx.common.model.PlayerStateDto;
 
 /**
  * Авторитетное серверное состояние игрока.
- * Флаги ввода выставляются потоками ClientHandler и потребляются игровым циклом.
+ * Кадры ввода ({@link InputFrameEvent}) потоки ClientHandler и UDP ставят в очередь
+ * {@link ServerGameSession}, а сюда их записывает уже игровой цикл, так что всё состояние
+ * игрока принадлежит одному потоку.
  */
 public final class ServerPlayerState {
 
@@ -19,6 +22,7 @@ public final class ServerPlayerState {
     private static final double MOVE_SPEED    = 237.5;
     private static final double AIM_SPEED     = 84.375;
 
+    public final int    slot;
     public final String playerId;
     public final String nickname;
 
@@ -29,15 +33,12 @@ public final class ServerPlayerState {
     private boolean crouched;
     private int score;
 
-    // Флаги ввода пишутся из потоков ClientHandler и читаются игровым циклом.
-    public volatile boolean moveUp;
-    public volatile boolean moveDown;
-    public volatile boolean moveLeft;
-    public volatile boolean moveRight;
-    public volatile boolean aimUp;
-    public volatile boolean aimDown;
+    /** Последний принятый кадр ввода; кадры с меньшим номером устарели. */
+    private int inputSeq;
+    private int buttons;
 
-    public ServerPlayerState(String playerId, String nickname) {
+    public ServerPlayerState(int slot, String playerId, String nickname) {
+        this.slot     = slot;
         this.playerId = playerId;
         this.nickname = nickname;
         reset();
@@ -49,22 +50,38 @@ public final class ServerPlayerState {
         aimAngleDegrees = 0.0;
         crouched        = false;
         score           = 0;
-        moveUp = moveDown = moveLeft = moveRight = aimUp = aimDown = false;
+        // Номер кадра не сбрасываем: он растёт в пределах соединения, а не матча.
+        releaseButtons();
+    }
+
+    /**
+     * Принимаем кадр ввода, если он новее последнего принятого.
+     *
+     * @return {@code false}, если кадр устарел (например, UDP переставил датаграммы)
+     */
+    public boolean acceptInput(int seq, int buttons) {
+        if (seq <= inputSeq) return false;
+        this.inputSeq = seq;
+        this.buttons  = buttons & InputFrameEvent.ALL;
+        return true;
+    }
+
+    /** Отпускаем все клавиши; номер последнего кадра остаётся, и устаревшие кадры по-прежнему отбрасываются. */
+    public void releaseButtons() {
+        buttons = 0;
     }
 
     /** Вызывается один раз за тик игрового цикла. */
     public void applyInput(double dt) {
-        double dx = (moveRight ? 1 : 0) - (moveLeft  ? 1 : 0);
-        double dy = (moveDown  ? 1 : 0) - (moveUp    ? 1 : 0);
-        double da = (aimUp     ? 1 : 0) - (aimDown   ? 1 : 0);
+        int b = buttons;
+        double dx = bit(b, InputFrameEvent.MOVE_RIGHT) - bit(b, InputFrameEvent.MOVE_LEFT);
+        double dy = bit(b, InputFrameEvent.MOVE_DOWN)  - bit(b, InputFrameEvent.MOVE_UP);
+        double da = bit(b, InputFrameEvent.AIM_UP)     - bit(b, InputFrameEvent.AIM_DOWN);
 
         archerX         = clamp(archerX + dx * MOVE_SPEED * dt, ARCHER_MIN_X, ARCHER_MAX_X);
         archerY         = clamp(archerY + dy * MOVE_SPEED * dt, ARCHER_MIN_Y, ARCHER_MAX_Y);
         aimAngleDegrees = clamp(aimAngleDegrees + da * AIM_SPEED * dt, AIM_MIN, AIM_MAX);
-    }
-
-    public void toggleCrouch() {
-        crouched = !crouched;
+        crouched        = bit(b, InputFrameEvent.CROUCH) != 0;
     }
 
     public void addScore(int delta) {
@@ -89,10 +106,14 @@ public final class ServerPlayerState {
     public int getScore()              { return score; }
 
     public PlayerStateDto toDto() {
-        return new PlayerStateDto(playerId, nickname, archerX, archerY,
+        return new PlayerStateDto(slot, archerX, archerY,
                 aimAngleDegrees, crouched, score);
     }
 
+    private static int bit(int buttons, int button) {
+        return (buttons & button) != 0 ? 1 : 0;
+    }
+
     private static double clamp(double v, double min, double max) {
         return Math.max(min, Math.min(max, v));
     }
@@ -0,0 +1,76 @@
+package org.example.marksmanfx.server.game;
+
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.protocol.Capabilities;
+import org.example.marksmanfx.common.protocol.SnapshotDelta;
+import org.example.marksmanfx.server.network.ClientHandler;
+import org.example.marksmanfx.server.network.OutboundFrame;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Рассылка снимков комнаты дельтами относительно последнего снимка, подтверждённого клиентом.
+ *
+ * <p>Хранит кольцо последних {@value #HISTORY} снимков. Клиент без подтверждения,
+ * с устаревшим подтверждением или вошедший в комнату только что получает ключевой кадр;
+ * кроме того, ключевой кадр уходит всем раз в {@code marksman.snapshot.keyframeInterval} тиков.
+ * Клиенты с одинаковой базой получают один и тот же закодированный кадр, а клиенты,
+ * не согласовавшие дельты ({@link Capabilities#DELTA_SNAPSHOTS}), — полный {@link GameStateMessage}.</p>
+ *
+ * <p>Клиент со слабой связью получает снимок не на каждом тике ({@link ClientHandler#wantsSnapshot(int)});
+ * история при этом пишется на каждом, и дельта строится от того, что клиент подтвердил.</p>
+ *
+ * <p>Номера снимков растут на протяжении жизни комнаты, а не сессии, поэтому подтверждение
+ * из прошлого матча не может совпасть с чужим снимком. Вызывается под замком комнаты.</p>
+ */
+final class SnapshotBroadcaster {
+
+    private static final int KEYFRAME_INTERVAL = Integer.getInteger("marksman.snapshot.keyframeInterval", 120);
+    /** Размер кольца истории, степень двойки: около секунды при 60 тиках. */
+    private static final int HISTORY           = 64;
+
+    private final GameStateMessage[] states = new GameStateMessage[HISTORY];
+    private final int[]              ticks  = new int[HISTORY];
+    private int                      tick   = -1;
+
+    void broadcast(GameStateMessage state, Collection<ClientHandler> clients) {
+        tick++;
+        states[tick & (HISTORY - 1)] = state;
+        ticks[tick & (HISTORY - 1)]  = tick;
+        boolean keyframe = tick % KEYFRAME_INTERVAL == 0;
+
+        Map<Integer, OutboundFrame> byBase = new HashMap<>(4);
+        OutboundFrame               full   = null;
+        try {
+            for (ClientHandler c : clients) {
+                if (!c.wantsSnapshot(tick)) continue;
+                if (!c.supports(Capabilities.DELTA_SNAPSHOTS)) {
+                    if (full == null) full = OutboundFrame.of(state);
+                    c.send(full);
+                    continue;
+                }
+                int base = keyframe ? GameStateDeltaMessage.KEYFRAME : usableBase(c.getAckedSnapshotTick());
+                OutboundFrame frame = byBase.get(base);
+                if (frame == null) {
+                    GameStateMessage baseState = base == GameStateDeltaMessage.KEYFRAME ? null : states[base & (HISTORY - 1)];
+                    frame = OutboundFrame.of(new GameStateDeltaMessage(tick, base, SnapshotDelta.encode(baseState, state)));
+                    byBase.put(base, frame);
+                }
+                c.send(frame);
+            }
+        } finally {
+            // Очереди клиентов держат собственные ссылки; буферы вернутся в пул, когда кадр запишут всем.
+            if (full != null) full.release();
+            for (OutboundFrame frame : byBase.values()) frame.release();
+        }
+    }
+
+    /** Подтверждённый снимок, если он ещё есть в истории, иначе ключевой кадр. */
+    private int usableBase(int acked) {
+        if (acked < 0 || acked >= tick || tick - acked >= HISTORY) return GameStateDeltaMessage.KEYFRAME;
+        return ticks[acked & (HISTORY - 1)] == acked ? acked : GameStateDeltaMessage.KEYFRAME;
+    }
+}
@@ -3,23 +3,32 @@ package org.example.marksmanfx.server.lobby;
 import org.example.marksmanfx.common.message.ErrorMessage;
 import org.example.marksmanfx.common.message.LobbyStateMessage;
 import org.example.marksmanfx.common.model.RoomInfo;
+import org.example.marksmanfx.server.game.GameLoopEngine;
 import org.example.marksmanfx.server.game.GameRoom;
 import org.example.marksmanfx.server.network.ClientHandler;
+import org.example.marksmanfx.server.network.OutboundFrame;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
  * Центральный координатор лобби и всех активных комнат.
- * Все изменяющие методы синхронизированы по {@code this}.
+ * Все изменяющие методы выполняются под {@link ReentrantLock}: монитор {@code synchronized}
+ * закреплял бы виртуальный поток клиента за потоком-носителем на время отправки.
  * {@link CopyOnWriteArraySet} для lobbyClients позволяет безопасно итерироваться
  * по клиентам во время рассылки без удержания монитора.
+ *
+ * <p>Сессии с возобновлением ({@code Capabilities.RESUME}) учитываются по токену. После обрыва
+ * соединения игрок остаётся в комнате до возвращения клиента или до истечения ожидания;
+ * вернувшийся клиент встаёт на место прежнего обработчика.</p>
  */
 public final class LobbyManager {
 
@@ -31,6 +40,23 @@ public final class LobbyManager {
     /** Активные комнаты по roomId. Порядок вставки сохраняется для стабильного списка. */
     private final Map<String, GameRoom> rooms = new LinkedHashMap<>();
 
+    /** Текущий обработчик каждой сессии с возобновлением, в том числе ждущей возврата клиента. */
+    private final Map<Long, ClientHandler> sessions = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Общий игровой цикл, в который комнаты ставят свои сессии. */
+    private final GameLoopEngine gameLoop;
+
+    /** @param gameLoop игровой цикл комнат; его останавливает тот, кто его запустил */
+    public LobbyManager(GameLoopEngine gameLoop) {
+        this.gameLoop = gameLoop;
+    }
+
+    public GameLoopEngine gameLoop() {
+        return gameLoop;
+    }
+
     // Регистрация в лобби.
     public void addLobbyClient(ClientHandler client) {
         lobbyClients.add(client);
@@ -44,116 +70,236 @@ public final class LobbyManager {
     }
 
     // Операции с комнатами.
-    public synchronized void createRoom(ClientHandler client, String roomName) {
-        if (client.getCurrentRoomId() != null) {
-            client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате."));
-            return;
+    public void createRoom(ClientHandler client, String roomName) {
+        lock.lock();
+        try {
+            if (client.getCurrentRoomId() != null) {
+                client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате."));
+                return;
+            }
+            String roomId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+            GameRoom room = new GameRoom(roomId, roomName, this);
+            rooms.put(roomId, room);
+            LOG.info("[Лобби] Комната '" + roomName + "' (" + roomId + ") создана игроком " + client.getNickname());
+
+            moveToRoom(client, room);
+        } finally {
+            lock.unlock();
         }
-        String roomId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        GameRoom room = new GameRoom(roomId, roomName, this);
-        rooms.put(roomId, room);
-        LOG.info("[Лобби] Комната '" + roomName + "' (" + roomId + ") создана игроком " + client.getNickname());
+    }
 
-        moveToRoom(client, room);
+    public void joinRoom(ClientHandler client, String roomId) {
+        lock.lock();
+        try {
+            if (client.getCurrentRoomId() != null) {
+                client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате. Сначала выйдите из неё."));
+                return;
+            }
+            GameRoom room = rooms.get(roomId);
+            if (room == null) {
+                client.sendMessage(new ErrorMessage("Комната не найдена: " + roomId));
+                return;
+            }
+            if (room.isFull()) {
+                client.sendMessage(new ErrorMessage("Комната заполнена."));
+                return;
+            }
+            moveToRoom(client, room);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void joinRoom(ClientHandler client, String roomId) {
-        if (client.getCurrentRoomId() != null) {
-            client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате. Сначала выйдите из неё."));
-            return;
+    public void quickMatch(ClientHandler client) {
+        lock.lock();
+        try {
+            if (client.getCurrentRoomId() != null) {
+                client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате."));
+                return;
+            }
+
+            // Ищем первую комнату, в которой ещё есть место.
+            GameRoom target = rooms.values().stream()
+                    .filter(r -> !r.isFull())
+                    .findFirst()
+                    .orElse(null);
+
+            if (target == null) {
+                // Если свободных комнат нет, создаём новую автоматически.
+                String roomId   = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+                String roomName = "Комната игрока " + client.getNickname();
+                target = new GameRoom(roomId, roomName, this);
+                rooms.put(roomId, target);
+                LOG.info("[Лобби] Быстрый матч: создана новая комната '" + roomName + "' (" + roomId + ")");
+            } else {
+                LOG.info("[Лобби] Быстрый матч: " + client.getNickname()
+                        + " направлен в существующую комнату " + target.getRoomId());
+            }
+            moveToRoom(client, target);
+        } finally {
+            lock.unlock();
         }
-        GameRoom room = rooms.get(roomId);
-        if (room == null) {
-            client.sendMessage(new ErrorMessage("Комната не найдена: " + roomId));
-            return;
+    }
+
+    public void leaveRoom(ClientHandler client) {
+        lock.lock();
+        try {
+            String roomId = client.getCurrentRoomId();
+            if (roomId == null) return;
+            GameRoom room = rooms.get(roomId);
+            if (room != null) {
+                room.removePlayer(client);
+            }
+            lobbyClients.add(client);
+            client.setCurrentRoomId(null);
+            client.sendMessage(new LobbyStateMessage(getRoomList()));
+            LOG.info("[Лобби] " + client.getNickname() + " вернулся в лобби");
+        } finally {
+            lock.unlock();
         }
-        if (room.isFull()) {
-            client.sendMessage(new ErrorMessage("Комната заполнена."));
-            return;
+    }
+
+    /** Вызывается, когда сокет клиента неожиданно закрывается. */
+    public void handleDisconnect(ClientHandler client) {
+        lock.lock();
+        try {
+            LOG.info("[Лобби] Отключение: " + client.getNickname());
+            lobbyClients.remove(client);
+            String roomId = client.getCurrentRoomId();
+            if (roomId != null) {
+                GameRoom room = rooms.get(roomId);
+                if (room != null) {
+                    room.removePlayer(client);
+                }
+            }
+        } finally {
+            lock.unlock();
         }
-        moveToRoom(client, room);
     }
 
-    public synchronized void quickMatch(ClientHandler client) {
-        if (client.getCurrentRoomId() != null) {
-            client.sendMessage(new ErrorMessage("Вы уже находитесь в комнате."));
-            return;
+    // Возобновление сессий.
+    /** Запоминаем обработчик новой сессии под её токеном возобновления. */
+    public void trackSession(long token, ClientHandler client) {
+        lock.lock();
+        try {
+            sessions.put(token, client);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // Ищем первую комнату, в которой ещё есть место.
-        GameRoom target = rooms.values().stream()
-                .filter(r -> !r.isFull())
-                .findFirst()
-                .orElse(null);
-
-        if (target == null) {
-            // Если свободных комнат нет, создаём новую автоматически.
-            String roomId   = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-            String roomName = "Комната игрока " + client.getNickname();
-            target = new GameRoom(roomId, roomName, this);
-            rooms.put(roomId, target);
-            LOG.info("[Лобби] Быстрый матч: создана новая комната '" + roomName + "' (" + roomId + ")");
-        } else {
-            LOG.info("[Лобби] Быстрый матч: " + client.getNickname()
-                    + " направлен в существующую комнату " + target.getRoomId());
+    /**
+     * Соединение сессии оборвалось: игрок не уходит из лобби и комнаты, а ждёт возврата.
+     *
+     * @return {@code false}, если сессию уже забрал новый обработчик и ждать нечего
+     */
+    public boolean suspendSession(ClientHandler client) {
+        lock.lock();
+        try {
+            if (sessions.get(client.getResumeToken()) != client) return false;
+            lobbyClients.remove(client);
+            String roomId = client.getCurrentRoomId();
+            GameRoom room = roomId != null ? rooms.get(roomId) : null;
+            if (room != null) room.suspendPlayer(client);
+            LOG.info("[Лобби] Связь с " + client.getNickname() + " потеряна, ждём возврата "
+                    + ClientHandler.resumeGraceMillis() + " мс");
+            return true;
+        } finally {
+            lock.unlock();
         }
-        moveToRoom(client, target);
     }
 
-    public synchronized void leaveRoom(ClientHandler client) {
-        String roomId = client.getCurrentRoomId();
-        if (roomId == null) return;
-        GameRoom room = rooms.get(roomId);
-        if (room != null) {
-            room.removePlayer(client);
+    /**
+     * Передаём сессию по токену новому обработчику.
+     *
+     * @return прежний обработчик сессии или {@code null}, если токен неизвестен или ожидание истекло
+     */
+    public ClientHandler claimSession(long token, ClientHandler resumed) {
+        lock.lock();
+        try {
+            ClientHandler previous = sessions.get(token);
+            if (previous != null) sessions.put(token, resumed);
+            return previous;
+        } finally {
+            lock.unlock();
         }
-        lobbyClients.add(client);
-        client.setCurrentRoomId(null);
-        client.sendMessage(new LobbyStateMessage(getRoomList()));
-        LOG.info("[Лобби] " + client.getNickname() + " вернулся в лобби");
     }
 
-    /** Вызывается, когда сокет клиента неожиданно закрывается. */
-    public synchronized void handleDisconnect(ClientHandler client) {
-        LOG.info("[Лобби] Отключение: " + client.getNickname());
-        lobbyClients.remove(client);
-        String roomId = client.getCurrentRoomId();
-        if (roomId != null) {
-            GameRoom room = rooms.get(roomId);
-            if (room != null) {
-                room.removePlayer(client);
-            }
+    /** Ставим вернувшийся обработчик на место прежнего: в его комнату и слот или в лобби. */
+    public void resumeSession(ClientHandler previous, ClientHandler resumed) {
+        lock.lock();
+        try {
+            lobbyClients.remove(previous);
+            String roomId = previous.getCurrentRoomId();
+            GameRoom room = roomId != null ? rooms.get(roomId) : null;
+            if (room != null && room.replacePlayer(previous, resumed)) return;
+            addLobbyClient(resumed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ожидание истекло: клиент не вернулся, и игрок уходит как при обычном отключении. */
+    public void expireSession(ClientHandler client) {
+        lock.lock();
+        try {
+            if (!sessions.remove(client.getResumeToken(), client)) return;
+            LOG.info("[Лобби] " + client.getNickname() + " не вернулся за "
+                    + ClientHandler.resumeGraceMillis() + " мс");
+            handleDisconnect(client);
+        } finally {
+            lock.unlock();
         }
     }
 
     /** Удаляет пустую комнату, когда из неё выходит последний игрок. */
-    public synchronized void removeRoom(String roomId) {
-        GameRoom removed = rooms.remove(roomId);
-        if (removed != null) {
-            LOG.info("[Лобби] Комната " + roomId + " (" + removed.getRoomName() + ") расформирована");
-            broadcastLobbyState();
+    public void removeRoom(String roomId) {
+        lock.lock();
+        try {
+            GameRoom removed = rooms.remove(roomId);
+            if (removed != null) {
+                LOG.info("[Лобби] Комната " + roomId + " (" + removed.getRoomName() + ") расформирована");
+                broadcastLobbyState();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     // Рассылка состояния лобби.
+    /** Список комнат кодируется один раз на всю рассылку, а не для каждого клиента. */
     public void broadcastLobbyState() {
-        LobbyStateMessage msg = new LobbyStateMessage(getRoomList());
-        for (ClientHandler c : lobbyClients) {
-            c.sendMessage(msg);
+        OutboundFrame frame = OutboundFrame.of(new LobbyStateMessage(getRoomList()));
+        try {
+            for (ClientHandler c : lobbyClients) {
+                c.send(frame);
+            }
+        } finally {
+            frame.release();
         }
     }
 
     // Запросы состояния.
-    public synchronized List<RoomInfo> getRoomList() {
-        List<RoomInfo> list = new ArrayList<>();
-        for (GameRoom r : rooms.values()) {
-            list.add(r.toRoomInfo());
+    public List<RoomInfo> getRoomList() {
+        lock.lock();
+        try {
+            List<RoomInfo> list = new ArrayList<>();
+            for (GameRoom r : rooms.values()) {
+                list.add(r.toRoomInfo());
+            }
+            return list;
+        } finally {
+            lock.unlock();
         }
-        return list;
     }
 
-    public synchronized GameRoom getRoomById(String roomId) {
-        return rooms.get(roomId);
+    public GameRoom getRoomById(String roomId) {
+        lock.lock();
+        try {
+            return rooms.get(roomId);
+        } finally {
+            lock.unlock();
+        }
     }
 
     // Вспомогательные методы.
@@ -0,0 +1,66 @@
+package org.example.marksmanfx.server.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Пул буферов вне кучи для закодированных кадров, по классам размеров — степеням двойки
+ * от {@value #MIN_SIZE} байт до {@value #MAX_SIZE}.
+ *
+ * <p>Неблокирующий канал пишет буфер вне кучи напрямую, а массив из кучи сначала копирует
+ * во временный буфер. Буферы снимков, которые комната рассылает 60 раз в секунду, после записи
+ * возвращаются сюда, и в установившемся режиме рассылка почти не создаёт мусора.
+ * Кадры крупнее {@value #MAX_SIZE} байт редки (огромный список комнат) и идут в обычной куче мимо пула.</p>
+ *
+ * <p>В каждом классе хранится не больше {@code marksman.pool.maxPerClass} свободных буферов:
+ * лишние после всплеска отдаются сборщику мусора. Очереди — на массиве, чтобы сам возврат
+ * буфера не создавал узлов списка.</p>
+ */
+final class BufferPool {
+
+    static final int MIN_SIZE = 256;
+    static final int MAX_SIZE = 64 * 1024;
+
+    private static final int MIN_SHIFT     = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int CLASSES       = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+    private static final int MAX_PER_CLASS = Integer.getInteger("marksman.pool.maxPerClass", 1024);
+
+    private static final ArrayBlockingQueue<ByteBuffer>[] FREE = newQueues();
+
+    private BufferPool() {}
+
+    /** Буфер вместимостью не меньше {@code size}, очищенный и готовый к записи. */
+    static ByteBuffer acquire(int size) {
+        if (size > MAX_SIZE) {
+            ServerMetrics.bufferAllocated();
+            return ByteBuffer.allocate(size);
+        }
+        int        cls = classOf(size);
+        ByteBuffer buf = FREE[cls].poll();
+        if (buf != null) {
+            ServerMetrics.bufferReused();
+            return buf.clear();
+        }
+        ServerMetrics.bufferAllocated();
+        return ByteBuffer.allocateDirect(MIN_SIZE << cls);
+    }
+
+    /** Возвращаем буфер, полученный из {@link #acquire}; буферы из кучи и чужие размеры пропускаем. */
+    static void release(ByteBuffer buf) {
+        if (!buf.isDirect()) return;
+        int cls = classOf(buf.capacity());
+        if (cls >= CLASSES || MIN_SIZE << cls != buf.capacity()) return;
+        FREE[cls].offer(buf);
+    }
+
+    private static int classOf(int size) {
+        return Math.max(0, 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayBlockingQueue<ByteBuffer>[] newQueues() {
+        ArrayBlockingQueue<ByteBuffer>[] queues = new ArrayBlockingQueue[CLASSES];
+        for (int i = 0; i < CLASSES; i++) queues[i] = new ArrayBlockingQueue<>(MAX_PER_CLASS);
+        return queues;
+    }
+}
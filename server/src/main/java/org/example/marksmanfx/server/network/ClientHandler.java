@@ -1,98 +1,302 @@
 package org.example.marksmanfx.server.network;
 
-import org.example.marksmanfx.common.event.AimEvent;
 import org.example.marksmanfx.common.event.ClientEvent;
 import org.example.marksmanfx.common.event.CreateRoomEvent;
-import org.example.marksmanfx.common.event.CrouchEvent;
 import org.example.marksmanfx.common.event.FireArrowEvent;
+import org.example.marksmanfx.common.event.HeartbeatEvent;
+import org.example.marksmanfx.common.event.InputFrameEvent;
 import org.example.marksmanfx.common.event.JoinLobbyEvent;
 import org.example.marksmanfx.common.event.JoinRoomEvent;
 import org.example.marksmanfx.common.event.LeaveRoomEvent;
-import org.example.marksmanfx.common.event.MoveEvent;
 import org.example.marksmanfx.common.event.PauseRequestEvent;
+import org.example.marksmanfx.common.event.PingEvent;
 import org.example.marksmanfx.common.event.PlayerReadyEvent;
+import org.example.marksmanfx.common.event.PongEvent;
 import org.example.marksmanfx.common.event.QuickMatchEvent;
 import org.example.marksmanfx.common.event.RematchRequestEvent;
+import org.example.marksmanfx.common.event.SnapshotAckEvent;
 import org.example.marksmanfx.common.message.ConnectedMessage;
 import org.example.marksmanfx.common.message.ErrorMessage;
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.HeartbeatMessage;
+import org.example.marksmanfx.common.message.PingMessage;
+import org.example.marksmanfx.common.message.PongMessage;
 import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.protocol.Capabilities;
+import org.example.marksmanfx.common.protocol.ClientEventType;
+import org.example.marksmanfx.common.protocol.ClockSync;
+import org.example.marksmanfx.common.protocol.Datagrams;
+import org.example.marksmanfx.common.protocol.Frame;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.WireCodec;
 import org.example.marksmanfx.server.game.GameRoom;
 import org.example.marksmanfx.server.lobby.LobbyManager;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
  * Один экземпляр на каждого подключённого клиента.
- * Работает в отдельном потоке: читает ClientEvent из сокета и
- * передаёт их в LobbyManager или GameRoom.
- * Отправка сериализуется через {@code synchronized} по выходному потоку.
+ * Разбирает входящие кадры в ClientEvent и передаёт их в LobbyManager или GameRoom.
+ *
+ * <p>Сам сокет обслуживает {@link ClientTransport}: блокирующий поток на клиента
+ * или общий селектор. Транспорт читает преамбулу (см. {@link Frames}), создаёт обработчик
+ * с выбранным кодеком и дальше передаёт ему каждый прочитанный кадр.</p>
+ *
+ * <p>Исходящие сообщения не пишутся в сокет из вызывающего потока: они попадают
+ * в {@link OutboundMailbox}, которую вычитывает писатель транспорта.</p>
+ *
+ * <p>Если клиент подтвердил UDP-канал ({@link UdpGateway}), снимки уходят датаграммами мимо очереди,
+ * а подтверждения снимков и клавиши движения и прицела приходят оттуда же. Когда датаграммы
+ * от клиента перестают приходить дольше {@code marksman.udp.timeoutMillis}, снимки снова идут по TCP.</p>
+ *
+ * <p>Клиент раз в несколько секунд присылает {@link HeartbeatEvent}. Если по TCP дольше
+ * {@code marksman.idle.timeoutMillis} не пришло ни одного кадра, {@link TimingWheel} сервера
+ * закрывает соединение, и игрок уходит из лобби и комнаты как при обычном отключении.
+ * Тот же срок действует и до появления обработчика: соединение, не приславшее преамбулу,
+ * транспорт закрывает по таймеру {@link #awaitPreamble}.</p>
+ *
+ * <p>При входе клиент сообщает версию протокола и возможности ({@link Capabilities}); обработчик
+ * оставляет те, что поддерживает сервер, и держит этот набор до конца сессии: от него зависят
+ * дельты снимков, сжатие крупных сообщений и выдача UDP-токена. Клиент с версией протокола ниже
+ * {@link Capabilities#MIN_VERSION} получает ошибку: он шлёт события клавиш, которых сервер не принимает.</p>
+ *
+ * <p>Частота входящих событий ограничена отдельно для каждого класса ({@link EventLimit}):
+ * лишний кадр отбрасывается по тегу, до разбора тела и замка комнаты. Для кадров ввода это
+ * то же, что слияние: каждый несёт полное состояние клавиш, и следующий кадр его восстановит.</p>
+ *
+ * <p>Если согласован {@link Capabilities#CLOCK_SYNC}, обработчик раз в {@code marksman.ping.intervalMillis}
+ * шлёт {@link PingMessage} и по ответам ведёт {@link ClockSync}: задержку, джиттер и смещение часов
+ * клиента. На {@link PingEvent} клиента отвечает {@link PongMessage}, чтобы те же оценки были у клиента.</p>
+ *
+ * <p>Частоту снимков обработчик подбирает сам ({@link SnapshotRate}): когда очередь отправки
+ * не успевает опустеть или растут RTT и джиттер, комната шлёт этому клиенту снимок не на каждом тике.</p>
+ *
+ * <p>При согласованном {@link Capabilities#RESUME} клиент получает в {@link ConnectedMessage} токен
+ * возобновления. Если соединение обрывается, игрок не уходит из комнаты: его место и состояние в матче
+ * держатся {@code marksman.resume.graceMillis}, а он сам стоит на месте с отпущенными клавишами. Клиент,
+ * переподключившийся с тем же токеном, получает новый обработчик с прежними playerId, комнатой и слотом
+ * и продолжает с одного ключевого кадра. Не вернулся за это время — уходит как при обычном отключении.</p>
  */
-public final class ClientHandler implements Runnable {
+public final class ClientHandler {
 
     private static final Logger LOG = Logger.getLogger(ClientHandler.class.getName());
 
-    private final String         playerId   = UUID.randomUUID().toString();
-    private final Socket         socket;
-    private final LobbyManager   lobbyManager;
-    private       ObjectOutputStream out;
-    private       ObjectInputStream  in;
+    /** Сколько надёжных кадров может ждать отправки, прежде чем клиент считается медленным. */
+    private static final int  MAILBOX_CAPACITY = Integer.getInteger("marksman.mailbox.capacity", 256);
+    /** Сколько писатель может не забирать кадры из непустой очереди, прежде чем клиент будет отключён. */
+    private static final long STALL_MILLIS     = Long.getLong("marksman.mailbox.stallMillis", 5_000);
+    /** Сколько UDP может молчать, прежде чем снимки вернутся на TCP. */
+    private static final long UDP_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.udp.timeoutMillis", 2_000));
+    /** Сколько TCP может молчать, прежде чем соединение считается мёртвым; 0 — не отключать. */
+    private static final long IDLE_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.idle.timeoutMillis", 15_000));
+    /** Сколько место игрока ждёт его после обрыва соединения; 0 — не предлагать возобновление. */
+    private static final long RESUME_GRACE_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.resume.graceMillis", 10_000));
+    private static final SecureRandom RESUME_TOKENS = new SecureRandom();
+    /**
+     * {@code -Dmarksman.snapshot.full=true} не предлагает клиентам дельты, и снимки идут целиком;
+     * {@code -Dmarksman.compress=false} не предлагает сжатие, {@code -Dmarksman.resume.graceMillis=0} — возобновление.
+     */
+    private static final int  SERVER_CAPABILITIES = Capabilities.ALL
+            & (Boolean.getBoolean("marksman.snapshot.full") ? ~Capabilities.DELTA_SNAPSHOTS : ~0)
+            & (Boolean.parseBoolean(System.getProperty("marksman.compress", "true")) ? ~0 : ~Capabilities.COMPRESSION)
+            & (RESUME_GRACE_NANOS > 0 ? ~0 : ~Capabilities.RESUME);
+    /** Интервал замеров задержки до клиента; 0 — не замерять. */
+    private static final long PING_INTERVAL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.ping.intervalMillis", 1_000));
+    private static final HeartbeatMessage HEARTBEAT = new HeartbeatMessage();
 
+    private final ClientTransport transport;
+    private final WireCodec       codec;
+    private final LobbyManager    lobbyManager;
+    private final AtomicBoolean   disconnected = new AtomicBoolean();
+    private final OutboundMailbox mailbox      = new OutboundMailbox(MAILBOX_CAPACITY, STALL_MILLIS);
+    private final UdpGateway      udp;
+    private final TimingWheel     timers;
+    /** Вёдра токенов по {@link EventLimit#ordinal()}; общие для TCP и UDP. */
+    private final TokenBucket[]   limits       = EventLimit.newBuckets();
+    /** Задержка и смещение часов клиента; замеры записывает только поток чтения. */
+    private final ClockSync       clock        = new ClockSync();
+    /** Частота снимков; её пересматривает и читает только игровой цикл комнаты. */
+    private final SnapshotRate    snapshotRate = new SnapshotRate();
+
+    /** Новый для каждого входа; возобновлённая сессия забирает его у оборвавшегося обработчика. */
+    private volatile String playerId = UUID.randomUUID().toString();
     private volatile String nickname;
+    /** Согласованные при входе версия и возможности; до регистрации — нули. */
+    private volatile int    protocolVersion;
+    private volatile int    capabilities;
     private volatile String currentRoomId;
+    /** Слот в текущей комнате, которым игрок обозначен в снимках; {@code -1} вне комнаты. */
+    private volatile int    roomSlot          = -1;
+    /** Последний снимок, который клиент подтвердил; база для дельт. */
+    private volatile int    ackedSnapshotTick = GameStateDeltaMessage.KEYFRAME;
+
+    // UDP-канал: токен выдаётся при регистрации, адрес и активность обновляет поток приёма датаграмм.
+    private long                   udpToken;
+    private volatile SocketAddress udpAddress;
+    private volatile boolean       udpActive;
+    private volatile long          lastDatagramNanos;
+    private int                    lastDatagramSeq;
+
+    // Проверка простоя: поток чтения отмечает время кадра, колесо таймеров сверяет его с дедлайном.
+    private volatile long                lastFrameNanos = System.nanoTime();
+    private volatile TimingWheel.Timeout idleCheck;
+    private volatile boolean             limitLogged;
+
+    // Замер задержки: колесо таймеров шлёт замер, поток чтения принимает ответ только на последний.
+    private volatile TimingWheel.Timeout pingTimer;
+    private volatile long                pendingPingNanos;
+
+    // Возобновление: токен выдаётся при регистрации, таймер ожидания ставится при обрыве.
+    private long                         resumeToken;
+    private volatile TimingWheel.Timeout resumeExpiry;
+    private volatile long                disconnectedNanos;
 
-    public ClientHandler(Socket socket, LobbyManager lobbyManager) {
-        this.socket       = socket;
+    /**
+     * @param udp    UDP-канал сервера или {@code null}: тогда всё идёт по TCP
+     * @param timers колесо таймеров сервера, общее для всех соединений
+     */
+    public ClientHandler(ClientTransport transport, WireCodec codec, LobbyManager lobbyManager,
+                         UdpGateway udp, TimingWheel timers) {
+        this.transport    = transport;
+        this.codec        = codec;
         this.lobbyManager = lobbyManager;
+        this.udp          = udp;
+        this.timers       = timers;
+        if (IDLE_TIMEOUT_NANOS > 0) idleCheck = timers.schedule(this::checkIdle, IDLE_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+        LOG.info("[Обработчик] Новое подключение: " + transport.remoteAddress()
+                + " (id=" + playerId + ", кодек=" + codec.name() + ")");
     }
 
-    @Override
-    public void run() {
-        try {
-            // Сначала создаём ObjectOutputStream, чтобы избежать взаимной блокировки.
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in  = new ObjectInputStream(socket.getInputStream());
-
-            LOG.info("[Обработчик] Новое подключение: " + socket.getRemoteSocketAddress()
-                    + " (id=" + playerId + ")");
-
-            // Первым сообщением должен быть JoinLobbyEvent.
-            Object first = in.readObject();
-            if (!(first instanceof JoinLobbyEvent join)) {
-                sendMessage(new ErrorMessage("Первым сообщением должен быть JoinLobbyEvent."));
-                return;
-            }
+    /**
+     * Дедлайн преамбулы для только что принятого соединения: обработчика ещё нет, и следить
+     * за простоем некому. Транспорт отменяет таймер, когда создаёт обработчик или закрывается сам.
+     *
+     * @return таймер или {@code null}, если проверка простоя выключена
+     */
+    static TimingWheel.Timeout awaitPreamble(ClientTransport transport, TimingWheel timers) {
+        if (IDLE_TIMEOUT_NANOS <= 0) return null;
+        return timers.schedule(() -> {
+            ServerMetrics.idleTimeout();
+            LOG.warning("[Обработчик] " + transport.remoteAddress() + " не прислал преамбулу за "
+                    + TimeUnit.NANOSECONDS.toMillis(IDLE_TIMEOUT_NANOS) + " мс, соединение закрыто");
+            transport.abort();
+        }, IDLE_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+    }
 
-            nickname = join.nickname().trim();
-            if (nickname.isEmpty()) {
-                sendMessage(new ErrorMessage("Никнейм не может быть пустым."));
-                return;
-            }
+    /** Вызывается транспортом для каждого полностью прочитанного кадра. */
+    public void onFrame(Frame frame) throws ProtocolException {
+        lastFrameNanos = System.nanoTime();
+        if (!withinLimit(frame.tag())) return;
+        ClientEvent event = Frames.decodeEvent(codec, frame);
+        if (event instanceof HeartbeatEvent) {
+            // До регистрации тоже отвечаем: клиент начинает слать сигналы сразу после подключения.
+            sendMessage(HEARTBEAT);
+        } else if (nickname == null) {
+            register(event);
+        } else {
+            dispatch(event);
+        }
+    }
 
-            LOG.info("[Обработчик] Зарегистрирован игрок " + nickname + " (id=" + playerId + ")");
-            sendMessage(new ConnectedMessage(playerId, nickname));
-            lobbyManager.addLobbyClient(this);
+    // Первым сообщением должен быть JoinLobbyEvent.
+    private void register(ClientEvent first) {
+        if (!(first instanceof JoinLobbyEvent join)) {
+            sendMessage(new ErrorMessage("Первым сообщением должен быть JoinLobbyEvent."));
+            transport.close();
+            return;
+        }
 
-            // Основной цикл чтения сообщений.
-            while (!socket.isClosed()) {
-                Object obj = in.readObject();
-                if (obj instanceof ClientEvent event) {
-                    dispatch(event);
-                }
-            }
+        String name = join.nickname() != null ? join.nickname().trim() : "";
+        if (name.isEmpty()) {
+            sendMessage(new ErrorMessage("Никнейм не может быть пустым."));
+            transport.close();
+            return;
+        }
 
-        } catch (IOException e) {
-            LOG.info("[Обработчик] " + nicknameOrId() + " отключился: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
-            LOG.warning("[Обработчик] От " + nicknameOrId() + " получен объект неизвестного класса: " + e.getMessage());
-        } finally {
-            cleanup();
+        if (join.protocolVersion() < Capabilities.MIN_VERSION) {
+            LOG.info("[Обработчик] " + name + " отклонён: протокол " + join.protocolVersion()
+                    + ", сервер принимает от " + Capabilities.MIN_VERSION);
+            sendMessage(new ErrorMessage("Версия клиента устарела (протокол " + join.protocolVersion()
+                    + ", сервер принимает от " + Capabilities.MIN_VERSION + "), обновите игру."));
+            transport.close();
+            return;
+        }
+
+        int offered = SERVER_CAPABILITIES & (udp != null ? Capabilities.ALL : ~Capabilities.DATAGRAMS);
+        int agreed  = join.capabilities() & offered;
+
+        protocolVersion = Math.min(join.protocolVersion(), Capabilities.VERSION);
+        capabilities    = agreed;
+        if (join.resumeToken() != 0) {
+            resume(join.resumeToken());
+            return;
+        }
+
+        nickname = name;
+        LOG.info("[Обработчик] Зарегистрирован игрок " + nickname + " (id=" + playerId + ", протокол "
+                + protocolVersion + ", возможности " + Capabilities.describe(capabilities) + ")");
+        if (supports(Capabilities.RESUME)) {
+            resumeToken = newResumeToken();
+            lobbyManager.trackSession(resumeToken, this);
         }
+        sendConnected();
+        lobbyManager.addLobbyClient(this);
+    }
+
+    /**
+     * Клиент вернулся после обрыва: забираем сессию у прежнего обработчика и встаём на его место
+     * в лобби или комнате. Прежнее соединение сервер мог ещё не признать мёртвым — тогда закрываем его сами.
+     */
+    private void resume(long token) {
+        ClientHandler previous = supports(Capabilities.RESUME) ? lobbyManager.claimSession(token, this) : null;
+        if (previous == null) {
+            sendMessage(new ErrorMessage("Сессия истекла, войдите заново."));
+            transport.close();
+            return;
+        }
+        previous.transport.abort();
+        TimingWheel.Timeout expiry = previous.resumeExpiry;
+        if (expiry != null) expiry.cancel();
+
+        playerId    = previous.playerId;
+        nickname    = previous.nickname;
+        resumeToken = token;
+        long away   = previous.disconnectedNanos != 0 ? System.nanoTime() - previous.disconnectedNanos : 0;
+        ServerMetrics.sessionResumed();
+        LOG.info("[Обработчик] " + nickname + " вернулся в сессию (id=" + playerId + ", без связи "
+                + TimeUnit.NANOSECONDS.toMillis(away) + " мс, возможности " + Capabilities.describe(capabilities) + ")");
+        // ConnectedMessage уходит раньше состояния комнаты: клиент сначала узнаёт, что сессия та же.
+        sendConnected();
+        lobbyManager.resumeSession(previous, this);
+    }
+
+    private void sendConnected() {
+        if (supports(Capabilities.DATAGRAMS)) udpToken = udp.register(this);
+        sendMessage(new ConnectedMessage(playerId, nickname, udpToken, protocolVersion, capabilities, resumeToken));
+        // Первый замер — через интервал: сразу после входа клиент занят сменой экрана, и RTT вышел бы завышенным.
+        if (supports(Capabilities.CLOCK_SYNC) && PING_INTERVAL_NANOS > 0) {
+            pingTimer = timers.schedule(this::sendPing, PING_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Ноль зарезервирован за «без возобновления». */
+    private static long newResumeToken() {
+        long token;
+        do {
+            token = RESUME_TOKENS.nextLong();
+        } while (token == 0);
+        return token;
     }
 
     // Разбор входящих событий.
@@ -106,13 +310,85 @@ public final class ClientHandler implements Runnable {
             case PlayerReadyEvent e    -> withRoom(r -> r.onPlayerReady(this, e.ready()));
             case PauseRequestEvent e   -> withRoom(r -> r.onPauseRequest(this, e.pausing()));
             case FireArrowEvent e      -> withRoom(r -> r.onFireArrow(this, e.chargeRatio()));
-            case MoveEvent e           -> withRoom(r -> r.onMove(this, e.direction(), e.pressed()));
-            case AimEvent e            -> withRoom(r -> r.onAim(this, e.direction(), e.pressed()));
-            case CrouchEvent e         -> withRoom(r -> r.onCrouch(this, e.crouching()));
+            case InputFrameEvent e     -> withRoom(r -> r.onInput(this, e.seq(), e.buttons()));
+            case HeartbeatEvent e      -> sendMessage(HEARTBEAT);
             case RematchRequestEvent e -> withRoom(r -> r.onRematchRequest(this));
+            case SnapshotAckEvent e    -> ackedSnapshotTick = e.tick();
+            case PingEvent e           -> sendMessage(new PongMessage(e.clientSendNanos(), lastFrameNanos, System.nanoTime()));
+            case PongEvent e           -> onPong(e);
+        }
+    }
+
+    // Замеры задержки.
+    /** Задача колеса таймеров: шлём замер и ставим следующий. */
+    private void sendPing() {
+        if (disconnected.get()) return;
+        long now = System.nanoTime();
+        pendingPingNanos = now;
+        sendMessage(new PingMessage(now));
+        pingTimer = timers.schedule(this::sendPing, PING_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Ответ на замер. Принимаем только ответ на последний отправленный замер: так клиент
+     * не подсунет выдуманные отметки, а ответ, опоздавший дольше интервала, просто пропадает.
+     */
+    private void onPong(PongEvent pong) {
+        if (pendingPingNanos == 0 || pong.serverSendNanos() != pendingPingNanos) return;
+        pendingPingNanos = 0;
+        long rtt = clock.sample(pong.serverSendNanos(), pong.clientReceiveNanos(), pong.clientSendNanos(), lastFrameNanos);
+        if (rtt >= 0) ServerMetrics.rttSampled(rtt);
+    }
+
+    /**
+     * Датаграмма с токеном этой сессии; вызывается только потоком приёма {@link UdpGateway}.
+     * Приветствие ({@code seq == 0}) запоминает адрес и получает ответ; первая датаграмма
+     * после него доказывает, что клиент слышит сервер, и переводит снимки на UDP.
+     */
+    void onDatagram(SocketAddress from, int seq, ByteBuffer frames) throws ProtocolException {
+        if (nickname == null || disconnected.get()) return;
+        if (seq == Datagrams.HELLO_SEQ) {
+            udpAddress = from;
+            udp.sendHelloAck(from);
+            return;
+        }
+        // Датаграммы приходят в любом порядке, а каждая несёт полное состояние: старые только мешают.
+        if (seq <= lastDatagramSeq) return;
+        lastDatagramSeq   = seq;
+        udpAddress        = from;
+        lastDatagramNanos = System.nanoTime();
+        if (!udpActive) {
+            udpActive = true;
+            LOG.info("[Обработчик] " + nicknameOrId() + ": снимки по UDP (" + from + ")");
+        }
+        for (Frame frame : Datagrams.readFrames(frames)) {
+            Frames.checkEventHeader(codec, frame.tag(), frame.body().length);
+            if (!withinLimit(frame.tag())) continue;
+            switch (Frames.decodeEvent(codec, frame)) {
+                case InputFrameEvent e  -> withRoom(r -> r.onInput(this, e.seq(), e.buttons()));
+                case SnapshotAckEvent e -> ackedSnapshotTick = e.tick();
+                // Всё, что должно дойти наверняка, принимаем только по TCP.
+                default                 -> throw new ProtocolException("Недопустимое по UDP событие: " + frame.tag());
+            }
         }
     }
 
+    /** Списываем токен класса события по тегу кадра; {@code false} — событие нужно отбросить. */
+    private boolean withinLimit(int tag) {
+        ClientEventType type  = ClientEventType.fromTag(tag);
+        EventLimit      limit = type != null ? EventLimit.of(type) : null;
+        if (limit == null) return true;
+        TokenBucket bucket = limits[limit.ordinal()];
+        if (bucket == null || bucket.tryAcquire()) return true;
+        ServerMetrics.eventLimited(limit);
+        if (!limitLogged) {
+            limitLogged = true;
+            LOG.warning("[Обработчик] " + nicknameOrId() + " превышает лимит событий «"
+                    + limit.label() + "», лишние отбрасываются");
+        }
+        return false;
+    }
+
     private void withRoom(java.util.function.Consumer<GameRoom> action) {
         String rid = currentRoomId;
         if (rid == null) return;
@@ -122,33 +398,195 @@ public final class ClientHandler implements Runnable {
 
     // Потокобезопасная отправка.
     public void sendMessage(ServerMessage message) {
-        if (out == null) return;
+        OutboundFrame frame = OutboundFrame.of(message);
         try {
-            synchronized (out) {
-                out.writeObject(message);
-                out.flush();
-                out.reset();   // Не даём кэшу ObjectOutputStream бесконечно расти.
+            send(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Ставим кадр в очередь отправки; используется и при рассылке одного сообщения многим.
+     * Вызов не блокируется на сокете, поэтому безопасен из игрового цикла под замком комнаты.
+     * Ссылку вызывающего на кадр не забирает: очередь при необходимости берёт собственную.
+     */
+    public void send(OutboundFrame outbound) {
+        if (udpActive && OutboundFrame.isSnapshot(outbound.message()) && sendDatagram(outbound)) return;
+        if (mailbox.offer(outbound)) {
+            transport.outboundReady();
+        } else {
+            disconnectSlowConsumer();
+        }
+    }
+
+    /**
+     * Решение игрового цикла на тике {@code tick}: отправлять ли этому клиенту снимок.
+     * Заодно пересматривает частоту снимков по очереди отправки, отставанию подтверждений
+     * и оценкам {@link ClockSync}. Вызывается под замком комнаты на каждом тике.
+     */
+    public boolean wantsSnapshot(int tick) {
+        // Игрок без связи ждёт возвращения: строить для него снимки незачем, вернувшись, он получит ключевой кадр.
+        if (disconnected.get()) return false;
+        // По UDP снимки идут мимо очереди, и о перегрузке говорят подтверждения и задержка.
+        boolean backlogged = !udpActive && mailbox.isBacklogged(SnapshotRate.QUEUE_LIMIT);
+        int     acked      = ackedSnapshotTick;
+        int     ackLag     = acked >= 0 && acked <= tick ? tick - acked : -1;
+        int     before     = snapshotRate.hz();
+        if (snapshotRate.review(System.nanoTime(), backlogged, ackLag, clock)) {
+            if (snapshotRate.hz() < before) ServerMetrics.snapshotRateDecreased();
+            LOG.info("[Обработчик] " + nicknameOrId() + ": снимки " + before + " → " + snapshotRate.hz()
+                    + " Гц (" + (backlogged ? "очередь отправки растёт, " : "") + "отставание подтверждений "
+                    + Math.max(ackLag, 0) + " тиков, " + clock.describe() + ")");
+        }
+        if (snapshotRate.due()) return true;
+        ServerMetrics.snapshotThrottled();
+        return false;
+    }
+
+    /** @return {@code false}, если UDP замолчал или кадр не влез в датаграмму и его нужно отправить по TCP */
+    private boolean sendDatagram(OutboundFrame outbound) {
+        if (System.nanoTime() - lastDatagramNanos > UDP_TIMEOUT_NANOS) {
+            udpActive = false;
+            LOG.info("[Обработчик] " + nicknameOrId() + ": UDP молчит, снимки по TCP");
+            return false;
+        }
+        return udp.send(udpAddress, outbound.bufferFor(codec));
+    }
+
+    /**
+     * Задача колеса таймеров. Кадр мог прийти после постановки проверки: тогда переносим её
+     * на новый дедлайн, а не переставляем таймер на каждом кадре.
+     */
+    private void checkIdle() {
+        if (disconnected.get()) return;
+        long idle = System.nanoTime() - lastFrameNanos;
+        if (idle < IDLE_TIMEOUT_NANOS) {
+            idleCheck = timers.schedule(this::checkIdle, IDLE_TIMEOUT_NANOS - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+        ServerMetrics.idleTimeout();
+        LOG.warning("[Обработчик] " + nicknameOrId() + " молчит "
+                + TimeUnit.NANOSECONDS.toMillis(idle) + " мс, соединение закрыто");
+        // Как и для медленного клиента, отключение обработчика выполнит поток чтения транспорта.
+        transport.abort();
+    }
+
+    /** Клиент не успевает забирать данные: сбрасываем очередь и рвём соединение. */
+    private void disconnectSlowConsumer() {
+        String stats = mailbox.describe();
+        if (!mailbox.abort()) return;
+        ServerMetrics.slowConsumer();
+        LOG.warning("[Обработчик] " + nicknameOrId() + " не успевает принимать данные ("
+                + stats + ", " + clock.describe() + "), соединение закрыто");
+        // Сам обработчик отключения выполнит поток чтения транспорта, а не вызывающий поток.
+        transport.abort();
+    }
+
+    // Очередь отправки для писателя транспорта.
+    /** Добираем в пачку кадры, уже стоящие в очереди, в формате кодека клиента; не ждём. */
+    void pollOutbound(WriteBatch batch) {
+        OutboundFrame frame;
+        while (!batch.isFull() && (frame = mailbox.poll()) != null) {
+            batch.add(frame, frame.bufferFor(codec, compress()));
+        }
+    }
+
+    /**
+     * Ждём первый кадр и собираем пачку; неполную пачку ещё до {@link WriteBatch#LINGER_NANOS}
+     * дополняем кадрами, пришедшими следом.
+     *
+     * @return {@code false}, если очередь закрыта и опустела: писатель может завершиться
+     */
+    boolean takeOutbound(WriteBatch batch) throws InterruptedException {
+        OutboundFrame first = mailbox.take();
+        if (first == null) return false;
+        batch.add(first, first.bufferFor(codec, compress()));
+        pollOutbound(batch);
+        if (WriteBatch.LINGER_NANOS > 0) {
+            long          deadline = System.nanoTime() + WriteBatch.LINGER_NANOS;
+            OutboundFrame frame;
+            while (!batch.isFull() && (frame = mailbox.poll(deadline - System.nanoTime())) != null) {
+                batch.add(frame, frame.bufferFor(codec, compress()));
+                pollOutbound(batch);
             }
-        } catch (IOException e) {
-            LOG.fine("[Обработчик] Не удалось отправить сообщение игроку " + nicknameOrId() + ": " + e.getMessage());
         }
+        return true;
+    }
+
+    private boolean compress() {
+        return supports(Capabilities.COMPRESSION);
     }
 
-    // Очистка ресурсов.
-    private void cleanup() {
-        lobbyManager.handleDisconnect(this);
-        try { socket.close(); } catch (IOException ignored) {}
-        LOG.info("[Обработчик] Очистка завершена: " + nicknameOrId());
+    boolean hasOutbound() {
+        return !mailbox.isEmpty();
+    }
+
+    /** Новые кадры больше не принимаются, уже поставленные писатель допишет. */
+    void closeOutbound() {
+        mailbox.close();
+    }
+
+    /** Новые кадры больше не принимаются, неотправленные выбрасываются. */
+    void abortOutbound() {
+        mailbox.abort();
+    }
+
+    /**
+     * Вызывается транспортом ровно один раз после закрытия соединения,
+     * в том числе если клиент так и не прислал JoinLobbyEvent.
+     */
+    public void onDisconnected() {
+        if (!disconnected.compareAndSet(false, true)) return;
+        disconnectedNanos = System.nanoTime();
+        TimingWheel.Timeout check = idleCheck;
+        if (check != null) check.cancel();
+        TimingWheel.Timeout ping = pingTimer;
+        if (ping != null) ping.cancel();
+        if (udpToken != 0) udp.unregister(udpToken);
+        if (resumeToken != 0) {
+            // Место держится до возвращения; сессию, которую уже забрал новый обработчик, не трогаем.
+            if (lobbyManager.suspendSession(this)) {
+                ServerMetrics.sessionSuspended();
+                resumeExpiry = timers.schedule(() -> lobbyManager.expireSession(this),
+                        RESUME_GRACE_NANOS, TimeUnit.NANOSECONDS);
+            }
+        } else if (nickname != null) {
+            lobbyManager.handleDisconnect(this);
+        }
+        LOG.info("[Обработчик] Очистка завершена: " + nicknameOrId() + " (" + clock.describe() + ")");
     }
 
     // Методы доступа.
-    public String getPlayerId()      { return playerId; }
-    public String getNickname()      { return nickname != null ? nickname : "?"; }
-    public String getCurrentRoomId() { return currentRoomId; }
+    public String getPlayerId()          { return playerId; }
+    public String getNickname()          { return nickname != null ? nickname : "?"; }
+    public String getCurrentRoomId()     { return currentRoomId; }
+    public int    getRoomSlot()          { return roomSlot; }
+    public int    getAckedSnapshotTick() { return ackedSnapshotTick; }
+    public int    getProtocolVersion()   { return protocolVersion; }
+    public int    getSnapshotRateHz()    { return snapshotRate.hz(); }
+    public long   getResumeToken()       { return resumeToken; }
+
+    /** Сколько место игрока держится после обрыва соединения. */
+    public static long resumeGraceMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(RESUME_GRACE_NANOS);
+    }
+
+    /** Задержка, джиттер и смещение часов клиента; без {@link Capabilities#CLOCK_SYNC} замеров нет. */
+    public ClockSync getClock()          { return clock; }
+
+    /** Согласована ли при входе возможность {@code flag} из {@link Capabilities}. */
+    public boolean supports(int flag) {
+        return Capabilities.has(capabilities, flag);
+    }
 
     public void setCurrentRoomId(String roomId) { this.currentRoomId = roomId; }
+    public void setRoomSlot(int slot)           { this.roomSlot = slot; }
+
+    /** Следующий снимок получит ключевым кадром, например после смены комнаты. */
+    public void resetSnapshotAck() { this.ackedSnapshotTick = GameStateDeltaMessage.KEYFRAME; }
 
-    private String nicknameOrId() {
+    String nicknameOrId() {
         return nickname != null ? nickname : playerId;
     }
 }
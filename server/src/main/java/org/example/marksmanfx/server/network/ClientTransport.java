@@ -0,0 +1,27 @@
+package org.example.marksmanfx.server.network;
+
+/**
+ * Транспорт одного клиентского соединения.
+ *
+ * <p>{@link ClientHandler} не знает, как устроен сокет: блокирующий поток на клиента
+ * ({@link SocketTransport}) или общий селектор ({@link NioGameServer}).
+ * Обработчик складывает кадры в свою {@link OutboundMailbox}, а писатель транспорта
+ * забирает их оттуда и пишет в сокет со своей скоростью.</p>
+ */
+public interface ClientTransport {
+
+    /**
+     * В очереди обработчика появился кадр. Можно вызывать из любого потока;
+     * ошибки записи не пробрасываются, а приводят к закрытию соединения.
+     */
+    void outboundReady();
+
+    /** Закрываем соединение, когда писатель допишет уже поставленные кадры; повторный вызов ничего не делает. */
+    void close();
+
+    /** Закрываем соединение немедленно, не дожидаясь отправки очереди. */
+    void abort();
+
+    /** Адрес клиента для логов. */
+    String remoteAddress();
+}
@@ -0,0 +1,60 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.protocol.ClientEventType;
+
+/**
+ * Классы входящих событий с отдельными лимитами частоты (см. {@link TokenBucket}).
+ *
+ * <p>Лимит проверяется по тегу кадра, до разбора тела и до замка комнаты, поэтому клиент,
+ * засыпающий сервер событиями, не конкурирует за комнату с остальными игроками и игровым циклом.
+ * Частоту и запас задают свойства {@code marksman.limit.<класс>.rate} (событий в секунду,
+ * 0 — без лимита) и {@code marksman.limit.<класс>.burst}.</p>
+ */
+enum EventLimit {
+    /**
+     * Кадры ввода: клиент шлёт 60 в секунду, и ещё столько же повторов последнего кадра приходит
+     * в датаграммах с подтверждениями снимков. Запас покрывает пачки после задержек в сети.
+     */
+    INPUT("input", 240, 60),
+    /** Выстрелы: на каждый нужно натянуть лук, чаще нескольких в секунду человек не стреляет. */
+    FIRE("fire", 10, 5),
+    /** Лобби, комнаты, голосования, сигналы активности и замеры задержки: редкие события. */
+    CONTROL("control", 5, 10);
+
+    private final String name;
+    private final double rate;
+    private final int    burst;
+
+    EventLimit(String name, double defaultRate, int defaultBurst) {
+        this.name  = name;
+        this.rate  = Double.parseDouble(System.getProperty("marksman.limit." + name + ".rate",
+                Double.toString(defaultRate)));
+        this.burst = Integer.getInteger("marksman.limit." + name + ".burst", defaultBurst);
+    }
+
+    /** @return класс события или {@code null}, если оно не ограничивается */
+    static EventLimit of(ClientEventType type) {
+        return switch (type) {
+            case INPUT_FRAME  -> INPUT;
+            case FIRE_ARROW   -> FIRE;
+            // Подтверждение снимка — запись одного поля, ограничивать его дороже, чем принять.
+            case SNAPSHOT_ACK -> null;
+            case JOIN_LOBBY, CREATE_ROOM, JOIN_ROOM, QUICK_MATCH, PLAYER_READY, PAUSE_REQUEST,
+                 REMATCH_REQUEST, LEAVE_ROOM, HEARTBEAT, PING, PONG -> CONTROL;
+        };
+    }
+
+    /** Вёдра для нового соединения; для выключенных лимитов — {@code null}. */
+    static TokenBucket[] newBuckets() {
+        EventLimit[]  limits  = values();
+        TokenBucket[] buckets = new TokenBucket[limits.length];
+        for (EventLimit limit : limits) {
+            if (limit.rate > 0) buckets[limit.ordinal()] = new TokenBucket(limit.rate, limit.burst);
+        }
+        return buckets;
+    }
+
+    String label() {
+        return name;
+    }
+}
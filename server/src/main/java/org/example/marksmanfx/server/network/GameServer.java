@@ -10,39 +10,62 @@ import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
- * Принимает TCP-подключения и создаёт отдельный поток {@link ClientHandler} для каждого клиента.
- * Использует кэшируемый пул потоков, чего достаточно для небольшого числа одновременных игроков.
+ * Принимает TCP-подключения и запускает для каждого клиента {@link SocketTransport} с потоками чтения и записи.
+ * По умолчанию использует кэшируемый пул платформенных потоков, чего достаточно для небольшого
+ * числа одновременных игроков. В режиме виртуальных потоков каждый клиент обслуживается
+ * виртуальным потоком: блокирующий код остаётся прежним, а простаивающее соединение
+ * не занимает поток ОС. Для тысяч подключений без виртуальных потоков предназначен {@link NioGameServer}.
  */
-public final class GameServer {
+public final class GameServer implements NetworkServer {
 
     private static final Logger LOG = Logger.getLogger(GameServer.class.getName());
 
     private final int             port;
-    private final LobbyManager    lobbyManager = new LobbyManager();
-    private final ExecutorService executor     = Executors.newCachedThreadPool(r -> {
-        Thread t = new Thread(r);
-        t.setDaemon(true);
-        return t;
-    });
+    private final LobbyManager    lobbyManager;
+    private final boolean         virtualThreads;
+    private final ExecutorService executor;
 
     private volatile boolean running;
     private ServerSocket serverSocket;
+    private UdpGateway   udp;
+    private TimingWheel  timers;
 
-    public GameServer(int port) {
-        this.port = port;
+    public GameServer(int port, LobbyManager lobbyManager) {
+        this(port, lobbyManager, false);
     }
 
+    /**
+     * @param virtualThreads {@code true} — по виртуальному потоку на клиента,
+     *                       {@code false} — кэшируемый пул платформенных потоков
+     */
+    public GameServer(int port, LobbyManager lobbyManager, boolean virtualThreads) {
+        this.port           = port;
+        this.lobbyManager   = lobbyManager;
+        this.virtualThreads = virtualThreads;
+        this.executor       = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("marksman-client-", 0).factory())
+                : Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @Override
     public void start() throws IOException {
         serverSocket = new ServerSocket(port);
+        udp          = UdpGateway.open(port);
+        timers       = TimingWheel.open();
         running      = true;
-        LOG.info("[Сервер] Прослушивается порт " + port);
+        LOG.info("[Сервер] Прослушивается порт " + port
+                + (virtualThreads ? ", клиенты на виртуальных потоках" : ""));
 
         while (running) {
             try {
                 Socket socket = serverSocket.accept();
                 socket.setTcpNoDelay(true);
                 LOG.info("[Сервер] Принято подключение: " + socket.getRemoteSocketAddress());
-                executor.execute(new ClientHandler(socket, lobbyManager));
+                executor.execute(new SocketTransport(socket, lobbyManager, executor, udp, timers));
             } catch (IOException e) {
                 if (running) {
                     LOG.warning("[Сервер] Ошибка при accept: " + e.getMessage());
@@ -51,11 +74,14 @@ public final class GameServer {
         }
     }
 
+    @Override
     public void stop() {
         running = false;
         try {
             if (serverSocket != null) serverSocket.close();
         } catch (IOException ignored) {}
+        if (udp != null) udp.close();
+        if (timers != null) timers.stop();
         executor.shutdownNow();
         LOG.info("[Сервер] Остановлен");
     }
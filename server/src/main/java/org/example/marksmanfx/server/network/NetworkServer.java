@@ -0,0 +1,15 @@
+package org.example.marksmanfx.server.network;
+
+import java.io.IOException;
+
+/**
+ * Сетевой транспорт сервера, выбираемый при запуске в {@link org.example.marksmanfx.server.ServerApp}.
+ * Все реализации передают разобранные события в один и тот же {@code LobbyManager}.
+ */
+public interface NetworkServer {
+
+    /** Открываем порт и принимаем подключения; блокирует вызывающий поток до {@link #stop()}. */
+    void start() throws IOException;
+
+    void stop();
+}
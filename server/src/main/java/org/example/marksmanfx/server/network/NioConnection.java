@@ -0,0 +1,248 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.protocol.Frame;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.server.lobby.LobbyManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Состояние одного неблокирующего соединения: буфер чтения, недописанный кадр
+ * и {@link ClientHandler}, который появляется после разбора преамбулы.
+ *
+ * <p>Чтение и запись в канал выполняет только поток {@link NioWorker}. Писатель забирает
+ * из очереди обработчика следующий кадр лишь тогда, когда канал принял предыдущий,
+ * поэтому у медленного клиента снимки вытесняются в очереди, а не копятся в памяти.</p>
+ *
+ * <p>Кадры, накопившиеся в очереди, уходят пачкой ({@link WriteBatch}) одной собирающей записью
+ * {@link SocketChannel#write(ByteBuffer[], int, int)}. При ненулевом {@code marksman.write.lingerMillis}
+ * воркер начинает запись не сразу, а спустя это время после первого кадра пачки.</p>
+ */
+final class NioConnection implements ClientTransport {
+
+    private static final Logger LOG = Logger.getLogger(NioConnection.class.getName());
+
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey  key;
+    private final NioWorker     worker;
+    private final LobbyManager  lobbyManager;
+    private final UdpGateway    udp;
+    private final TimingWheel   timers;
+    private final String        remoteAddress;
+
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private final AtomicBoolean closed         = new AtomicBoolean();
+    private volatile boolean    closeRequested;
+    private volatile boolean    abortRequested;
+
+    private ByteBuffer    readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private WireCodec     codec;
+    private ClientHandler handler;
+    /** Закрывает соединение, если преамбула не пришла вовремя; до появления обработчика. */
+    private TimingWheel.Timeout preambleDeadline;
+
+    // Недописанная пачка: буферы начиная с writeFrom ещё не ушли в канал целиком.
+    private final WriteBatch batch = new WriteBatch();
+    private int              writeFrom;
+
+    NioConnection(SocketChannel channel, SelectionKey key, NioWorker worker, LobbyManager lobbyManager,
+                  UdpGateway udp, TimingWheel timers) throws IOException {
+        this.channel       = channel;
+        this.key           = key;
+        this.worker        = worker;
+        this.lobbyManager  = lobbyManager;
+        this.udp           = udp;
+        this.timers        = timers;
+        this.remoteAddress = String.valueOf(channel.getRemoteAddress());
+    }
+
+    /** Соединение принято и зарегистрировано в селекторе: с этого момента ждём преамбулу. */
+    void start() {
+        preambleDeadline = ClientHandler.awaitPreamble(this, timers);
+    }
+
+    // ─── Чтение (поток воркера) ──────────────────────────────────────────────
+
+    void onReadable() {
+        try {
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                LOG.info("[NIO] " + who() + " отключился");
+                closeNow();
+                return;
+            }
+            readBuffer.flip();
+            parseFrames();
+            readBuffer.compact();
+        } catch (ProtocolException e) {
+            LOG.warning("[NIO] От " + who() + " получен некорректный кадр: " + e.getMessage());
+            closeNow();
+        } catch (IOException e) {
+            LOG.info("[NIO] " + who() + " отключился: " + e.getMessage());
+            closeNow();
+        }
+    }
+
+    /** Разбираем все целые кадры из буфера; незавершённый хвост остаётся до следующего чтения. */
+    private void parseFrames() throws ProtocolException {
+        if (handler == null) {
+            if (readBuffer.remaining() < Frames.PREAMBLE_SIZE) return;
+            int magic = readBuffer.getInt();
+            codec   = Frames.parsePreamble(magic, readBuffer.get() & 0xFF);
+            cancelPreambleDeadline();
+            handler = new ClientHandler(this, codec, lobbyManager, udp, timers);
+        }
+
+        while (!closed.get() && !closeRequested && !abortRequested && readBuffer.remaining() >= Frames.HEADER_SIZE) {
+            int start  = readBuffer.position();
+            int length = readBuffer.getInt(start + 2);
+            // Тег и лимит длины его типа проверяем до того, как расширять буфер под тело.
+            Frames.checkEventHeader(codec, readBuffer.get(start) & 0xFF, length);
+            if (readBuffer.remaining() < Frames.HEADER_SIZE + length) {
+                ensureCapacity(Frames.HEADER_SIZE + length);
+                return;
+            }
+            int tag   = readBuffer.get() & 0xFF;
+            int flags = readBuffer.get() & 0xFF;
+            readBuffer.getInt();
+            byte[] body = new byte[length];
+            readBuffer.get(body);
+            handler.onFrame(new Frame(tag, flags, body));
+        }
+    }
+
+    /** Увеличиваем буфер, если следующий кадр в него не помещается; буфер остаётся в режиме чтения. */
+    private void ensureCapacity(int needed) {
+        if (readBuffer.capacity() >= needed) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(needed, readBuffer.capacity() * 2));
+        bigger.put(readBuffer);
+        bigger.flip();
+        readBuffer = bigger;
+    }
+
+    // ─── Запись ──────────────────────────────────────────────────────────────
+
+    @Override
+    public void outboundReady() {
+        if (closed.get()) return;
+        if (WriteBatch.LINGER_NANOS > 0) {
+            // Первый кадр пачки откладывает запись, следующие просто ложатся в очередь.
+            if (writeRequested.compareAndSet(false, true)) worker.requestWriteLater(this);
+        } else {
+            wakeWriter();
+        }
+    }
+
+    /** Пишем пачки кадров из очереди обработчика, пока канал принимает данные; остаток дописываем по OP_WRITE. */
+    void flush() {
+        if (closed.get()) return;
+        if (abortRequested) {
+            closeNow();
+            return;
+        }
+        try {
+            while (true) {
+                if (batch.isEmpty() && !nextBatch()) break;
+                ByteBuffer[] buffers = batch.buffers();
+                channel.write(buffers, writeFrom, batch.size() - writeFrom);
+                while (writeFrom < batch.size() && !buffers[writeFrom].hasRemaining()) {
+                    ServerMetrics.frameWritten(buffers[writeFrom].limit());
+                    writeFrom++;
+                }
+                if (writeFrom < batch.size()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                ServerMetrics.batchWritten();
+                // Пачка записана целиком: буферы её кадров можно вернуть в пул.
+                batch.release();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            writeRequested.set(false);
+            // Кадр мог попасть в очередь между последней проверкой и сбросом флага.
+            if (handler != null && handler.hasOutbound() && writeRequested.compareAndSet(false, true)) {
+                worker.requestWrite(this);
+            } else if (closeRequested) {
+                closeNow();
+            }
+        } catch (IOException e) {
+            LOG.fine("[NIO] Не удалось отправить кадр игроку " + who() + ": " + e.getMessage());
+            closeNow();
+        }
+    }
+
+    /** Забираем из очереди следующую пачку; {@code false}, если очередь пуста. */
+    private boolean nextBatch() {
+        writeFrom = 0;
+        if (handler == null) return false;
+        // Каждый получатель читает общий буфер кадра через собственную копию позиции.
+        handler.pollOutbound(batch);
+        return !batch.isEmpty();
+    }
+
+    // ─── Закрытие ────────────────────────────────────────────────────────────
+
+    /** Закрываем соединение после того, как уйдут уже поставленные в очередь кадры. */
+    @Override
+    public void close() {
+        if (handler != null) handler.closeOutbound();
+        closeRequested = true;
+        wakeWriter();
+    }
+
+    /**
+     * Сбрасываем очередь и просим воркер закрыть канал. Сам {@link #closeNow()} выполняет
+     * только поток воркера: отключение обработчика не должно идти из игрового цикла под замком комнаты.
+     */
+    @Override
+    public void abort() {
+        if (handler != null) handler.abortOutbound();
+        abortRequested = true;
+        // Без проверки флага: при недописанном кадре запись может быть уже запрошена через OP_WRITE,
+        // а медленный клиент так и не освободит буфер.
+        worker.requestWrite(this);
+    }
+
+    private void wakeWriter() {
+        if (writeRequested.compareAndSet(false, true)) {
+            worker.requestWrite(this);
+        }
+    }
+
+    /** Немедленно закрываем канал и уведомляем обработчик. */
+    void closeNow() {
+        if (!closed.compareAndSet(false, true)) return;
+        cancelPreambleDeadline();
+        key.cancel();
+        try { channel.close(); } catch (IOException ignored) {}
+        batch.release();
+        writeFrom = 0;
+        if (handler != null) {
+            handler.abortOutbound();
+            handler.onDisconnected();
+        }
+    }
+
+    private void cancelPreambleDeadline() {
+        if (preambleDeadline != null) preambleDeadline.cancel();
+        preambleDeadline = null;
+    }
+
+    @Override
+    public String remoteAddress() {
+        return remoteAddress;
+    }
+
+    private String who() {
+        return handler != null ? handler.nicknameOrId() : remoteAddress;
+    }
+}
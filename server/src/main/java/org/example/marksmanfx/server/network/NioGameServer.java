@@ -0,0 +1,82 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.server.lobby.LobbyManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Logger;
+
+/**
+ * Неблокирующий транспорт на {@link ServerSocketChannel} и селекторах.
+ *
+ * <p>Вызывающий {@link #start()} поток только принимает подключения и по кругу раздаёт их
+ * фиксированному пулу {@link NioWorker}. Каждый воркер владеет своим селектором
+ * и обслуживает чтение, разбор кадров и запись для всех своих соединений,
+ * поэтому число потоков не зависит от числа клиентов.</p>
+ */
+public final class NioGameServer implements NetworkServer {
+
+    private static final Logger LOG = Logger.getLogger(NioGameServer.class.getName());
+
+    private final int          port;
+    private final LobbyManager lobbyManager;
+    private final NioWorker[]  workers;
+
+    private volatile boolean    running;
+    private ServerSocketChannel serverChannel;
+    private UdpGateway          udp;
+    private TimingWheel         timers;
+    private int                 nextWorker;
+
+    public NioGameServer(int port, int ioThreads, LobbyManager lobbyManager) {
+        this.port         = port;
+        this.lobbyManager = lobbyManager;
+        this.workers      = new NioWorker[Math.max(1, ioThreads)];
+    }
+
+    @Override
+    public void start() throws IOException {
+        udp    = UdpGateway.open(port);
+        timers = TimingWheel.open();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new NioWorker(i, lobbyManager, udp, timers);
+            workers[i].start();
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        running = true;
+        LOG.info("[Сервер] NIO: прослушивается порт " + port + ", потоков ввода-вывода: " + workers.length);
+
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                LOG.fine("[Сервер] Принято подключение: " + channel.getRemoteAddress());
+                workers[nextWorker++ % workers.length].register(channel);
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warning("[Сервер] Ошибка при accept: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException ignored) {}
+        if (udp != null) udp.close();
+        if (timers != null) timers.stop();
+        for (NioWorker w : workers) {
+            if (w != null) w.shutdown();
+        }
+        LOG.info("[Сервер] Остановлен");
+    }
+}
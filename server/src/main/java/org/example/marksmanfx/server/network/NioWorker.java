@@ -0,0 +1,168 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.server.lobby.LobbyManager;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Поток ввода-вывода с собственным {@link Selector}.
+ *
+ * <p>Регистрация каналов и запросы на запись приходят из других потоков через очереди
+ * и {@link Selector#wakeup()}; с самими ключами работает только этот поток.</p>
+ *
+ * <p>Отложенные запросы на запись ({@link #requestWriteLater}) ждут {@link WriteBatch#LINGER_NANOS}
+ * в очереди с дедлайнами; воркер ограничивает ожидание селектора ближайшим из них.</p>
+ */
+final class NioWorker implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(NioWorker.class.getName());
+
+    private final int          index;
+    private final LobbyManager lobbyManager;
+    private final UdpGateway   udp;
+    private final TimingWheel  timers;
+    private final Selector     selector;
+
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingWrites   = new ConcurrentLinkedQueue<>();
+    /** Дедлайны одинаковой длины, поэтому очередь упорядочена по ним с точностью до гонки потоков. */
+    private final Queue<LingeringWrite> lingeringWrites = new ConcurrentLinkedQueue<>();
+
+    private record LingeringWrite(NioConnection connection, long deadlineNanos) {}
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /** @param udp UDP-канал сервера или {@code null}, если он недоступен */
+    NioWorker(int index, LobbyManager lobbyManager, UdpGateway udp, TimingWheel timers) throws IOException {
+        this.index        = index;
+        this.lobbyManager = lobbyManager;
+        this.udp          = udp;
+        this.timers       = timers;
+        this.selector     = Selector.open();
+    }
+
+    void start() {
+        thread = new Thread(this, "marksman-nio-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Передаём принятый канал этому воркеру; вызывается из потока accept. */
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    /** Просим воркер начать запись очереди соединения; вызывается из любого потока. */
+    void requestWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        if (Thread.currentThread() != thread) selector.wakeup();
+    }
+
+    /** Как {@link #requestWrite}, но запись начнётся через {@link WriteBatch#LINGER_NANOS}. */
+    void requestWriteLater(NioConnection connection) {
+        lingeringWrites.add(new LingeringWrite(connection, System.nanoTime() + WriteBatch.LINGER_NANOS));
+        // Воркер мог уснуть в select() без тайм-аута: будим, чтобы он учёл новый дедлайн.
+        if (Thread.currentThread() != thread) selector.wakeup();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                long timeout = lingerTimeoutMillis();
+                if (timeout < 0) {
+                    selector.select();
+                } else if (timeout == 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(timeout);
+                }
+                registerPending();
+                processSelected();
+                releaseLingering();
+                // Запись после чтения: ответы, поставленные в очередь этим же потоком, уходят без ожидания.
+                flushPending();
+            } catch (IOException e) {
+                LOG.warning("[NIO-" + index + "] Ошибка селектора: " + e.getMessage());
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection c) c.closeNow();
+        }
+        try { selector.close(); } catch (IOException ignored) {}
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(channel, key, this, lobbyManager, udp, timers);
+                key.attach(connection);
+                connection.start();
+            } catch (IOException e) {
+                LOG.info("[NIO-" + index + "] Не удалось зарегистрировать канал: " + e.getMessage());
+                try { channel.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /** Сколько селектор может ждать до ближайшей отложенной записи: -1 — сколько угодно, 0 — нисколько. */
+    private long lingerTimeoutMillis() {
+        LingeringWrite head = lingeringWrites.peek();
+        if (head == null) return -1;
+        long left = head.deadlineNanos() - System.nanoTime();
+        return left <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(left + 999_999);
+    }
+
+    private void releaseLingering() {
+        long           now = System.nanoTime();
+        LingeringWrite w;
+        while ((w = lingeringWrites.peek()) != null && w.deadlineNanos() - now <= 0) {
+            lingeringWrites.poll();
+            pendingWrites.add(w.connection());
+        }
+    }
+
+    private void flushPending() {
+        NioConnection c;
+        while ((c = pendingWrites.poll()) != null) {
+            c.flush();
+        }
+    }
+
+    private void processSelected() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            NioConnection c = (NioConnection) key.attachment();
+            try {
+                if (key.isReadable()) c.onReadable();
+                if (key.isValid() && key.isWritable()) c.flush();
+            } catch (CancelledKeyException e) {
+                c.closeNow();
+            } catch (RuntimeException e) {
+                // Ошибка в обработке одного клиента не должна останавливать остальных.
+                LOG.warning("[NIO-" + index + "] Ошибка обработки соединения " + c.remoteAddress() + ": " + e);
+                c.closeNow();
+            }
+        }
+    }
+}
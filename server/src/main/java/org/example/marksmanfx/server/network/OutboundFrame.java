@@ -0,0 +1,192 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.ServerMessage;
+import org.example.marksmanfx.common.protocol.FrameCompression;
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.common.protocol.WireWriter;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Неизменяемый закодированный кадр для рассылки одного сообщения многим получателям.
+ *
+ * <p>Сообщение кодируется не более одного раза на каждый кодек, которым пользуются
+ * получатели; все {@link ClientHandler} с тем же кодеком пишут в сокет один и тот же буфер,
+ * каждый через собственную копию позиции ({@link ByteBuffer#duplicate()}).
+ * Содержимое буфера никогда не изменяется после кодирования, поэтому делиться им между потоками безопасно.</p>
+ *
+ * <p>Буферы берутся из {@link BufferPool} и возвращаются туда, когда отпущена последняя ссылка
+ * на кадр. Ссылки считаются явно: {@link #of} выдаёт кадр с одной ссылкой у создателя, очередь
+ * клиента берёт свою при постановке и отпускает её, когда кадр записан, вытеснен или выброшен.
+ * Создатель отпускает свою ссылку ({@link #release()}), когда раздал кадр всем получателям.
+ * С {@code -Dmarksman.pool.leakDetection=true} кадр, собранный сборщиком мусора с неотпущенными
+ * ссылками, попадает в журнал и в {@link ServerMetrics}, а его буферы возвращаются в пул.</p>
+ *
+ * <p>Так же, один раз на кодек, кэшируется сжатый вариант ({@link FrameCompression}) для клиентов,
+ * согласовавших сжатие. Сжимаются только кадры с телом от {@code marksman.compress.threshold} байт
+ * (512), и никогда — снимки: они малы, идут 60 раз в секунду и ждать не могут.</p>
+ */
+public final class OutboundFrame {
+
+    private static final Logger LOG = Logger.getLogger(OutboundFrame.class.getName());
+
+    private static final int     MAX_CODEC_ID       = 8;
+    private static final int     COMPRESS_THRESHOLD = Integer.getInteger("marksman.compress.threshold", 512);
+    private static final Cleaner LEAK_DETECTOR      =
+            Boolean.getBoolean("marksman.pool.leakDetection") ? Cleaner.create() : null;
+
+    /** Буферы записи для кодирования; огромные после редкого крупного кадра в пул не возвращаются. */
+    private static final Queue<WireWriter> WRITERS = new ConcurrentLinkedQueue<>();
+
+    private final ServerMessage     message;
+    private final Buffers           buffers;
+    private final Cleaner.Cleanable leakCheck;
+
+    private OutboundFrame(ServerMessage message) {
+        this.message   = message;
+        this.buffers   = new Buffers(message.getClass().getSimpleName());
+        this.leakCheck = LEAK_DETECTOR != null ? LEAK_DETECTOR.register(this, buffers) : null;
+    }
+
+    /** Новый кадр с одной ссылкой, которую вызывающий обязан отпустить через {@link #release()}. */
+    public static OutboundFrame of(ServerMessage message) {
+        return new OutboundFrame(message);
+    }
+
+    public ServerMessage message() {
+        return message;
+    }
+
+    /** Берём ещё одну ссылку, например на время, пока кадр стоит в очереди клиента. */
+    OutboundFrame retain() {
+        buffers.retain();
+        return this;
+    }
+
+    /** Отпускаем ссылку; после последней буферы кадра возвращаются в пул. */
+    public void release() {
+        if (buffers.release() && leakCheck != null) leakCheck.clean();
+    }
+
+    /** Число неотпущенных ссылок; для проверок. */
+    int refCount() {
+        return buffers.refs.get();
+    }
+
+    /**
+     * Кадр в формате указанного кодека, закодированный при первом обращении; у результата
+     * собственная позиция. При гонке двух потоков в кэше остаётся первый буфер, второй уходит в пул.
+     */
+    public ByteBuffer bufferFor(WireCodec codec) {
+        return encoded(codec).duplicate();
+    }
+
+    /** Кадр для клиента, согласовавшего сжатие: сжатый, если сообщение крупное и сжатие помогло. */
+    public ByteBuffer bufferFor(WireCodec codec, boolean compress) {
+        ByteBuffer plain = encoded(codec);
+        if (!compress || isSnapshot(message) || plain.remaining() - Frames.HEADER_SIZE < COMPRESS_THRESHOLD) {
+            return plain.duplicate();
+        }
+        ByteBuffer packed = buffers.deflated.get(codec.id());
+        if (packed == null) {
+            byte[] bytes = new byte[plain.remaining()];
+            plain.duplicate().get(bytes);
+            long   start    = System.nanoTime();
+            byte[] deflated = FrameCompression.deflate(bytes);
+            ServerMetrics.frameCompressed(bytes.length, deflated != null ? deflated.length : bytes.length,
+                    System.nanoTime() - start);
+            // Сжатые кадры редки и лежат в куче; если сжатие не помогло, здесь тот же буфер, что и без сжатия.
+            packed = deflated != null ? ByteBuffer.wrap(deflated) : plain;
+            if (!buffers.deflated.compareAndSet(codec.id(), null, packed)) {
+                packed = buffers.deflated.get(codec.id());
+            }
+        }
+        return packed.duplicate();
+    }
+
+    static boolean isSnapshot(ServerMessage message) {
+        return message instanceof GameStateMessage || message instanceof GameStateDeltaMessage;
+    }
+
+    private ByteBuffer encoded(WireCodec codec) {
+        ByteBuffer buf = buffers.encoded.get(codec.id());
+        if (buf == null) {
+            buf = encode(codec, message);
+            if (!buffers.encoded.compareAndSet(codec.id(), null, buf)) {
+                BufferPool.release(buf);
+                buf = buffers.encoded.get(codec.id());
+            }
+        }
+        return buf;
+    }
+
+    private static ByteBuffer encode(WireCodec codec, ServerMessage message) {
+        WireWriter w = WRITERS.poll();
+        if (w == null) w = new WireWriter(BufferPool.MIN_SIZE);
+        try {
+            w.reset();
+            Frames.encode(codec, message, w);
+            ByteBuffer buf = BufferPool.acquire(w.size());
+            w.writeTo(buf);
+            return buf.flip();
+        } finally {
+            if (w.size() <= BufferPool.MAX_SIZE) WRITERS.offer(w);
+        }
+    }
+
+    /**
+     * Счётчик ссылок и буферы кадра. Отдельный объект, чтобы проверка утечек в {@link Cleaner}
+     * не удерживала сам кадр.
+     */
+    private static final class Buffers implements Runnable {
+        private final String                           type;
+        private final AtomicInteger                    refs     = new AtomicInteger(1);
+        private final AtomicReferenceArray<ByteBuffer> encoded  = new AtomicReferenceArray<>(MAX_CODEC_ID);
+        private final AtomicReferenceArray<ByteBuffer> deflated = new AtomicReferenceArray<>(MAX_CODEC_ID);
+
+        private Buffers(String type) {
+            this.type = type;
+        }
+
+        void retain() {
+            if (refs.getAndIncrement() <= 0) throw new IllegalStateException("Кадр " + type + " уже освобождён");
+        }
+
+        /** @return {@code true}, если это была последняя ссылка */
+        boolean release() {
+            int left = refs.decrementAndGet();
+            if (left < 0) throw new IllegalStateException("Кадр " + type + " освобождён дважды");
+            if (left > 0) return false;
+            free();
+            return true;
+        }
+
+        private void free() {
+            for (int i = 0; i < MAX_CODEC_ID; i++) {
+                // Сжатые буферы лежат в куче, а несжатый вариант освобождается ниже.
+                deflated.set(i, null);
+                ByteBuffer buf = encoded.getAndSet(i, null);
+                if (buf != null) BufferPool.release(buf);
+            }
+        }
+
+        /** Действие {@link Cleaner}: кадр стал недостижим; если ссылки не отпущены — это утечка. */
+        @Override
+        public void run() {
+            int left = refs.get();
+            if (left <= 0) return;
+            ServerMetrics.frameLeaked();
+            LOG.warning("[Буферы] Кадр " + type + " собран сборщиком мусора с неотпущенными ссылками: " + left);
+            free();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.message.GameStateDeltaMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная очередь исходящих кадров одного клиента.
+ *
+ * <p>Игровой цикл и обработчики событий только кладут кадры в очередь, а в сокет их пишет
+ * писатель транспорта, поэтому медленный клиент больше не задерживает тик комнаты.
+ * Снимок ({@link GameStateMessage} или {@link GameStateDeltaMessage}) в очереди не накапливается:
+ * новый снимок вытесняет ещё не отправленный и встаёт в конец, так что надёжные сообщения
+ * ({@code GameOverMessage}, {@code RoomUpdatedMessage} и др.) сохраняют свой порядок
+ * относительно друг друга и снимков.</p>
+ *
+ * <p>Политика медленного клиента: {@link #offer} возвращает {@code false}, если в очереди
+ * накопилось больше {@code capacity} надёжных кадров или писатель не забирал кадры
+ * дольше {@code stallNanos}. Решение об отключении принимает {@link ClientHandler}.</p>
+ *
+ * <p>Принятый кадр очередь удерживает собственной ссылкой ({@link OutboundFrame#retain()}):
+ * вытесненный или выброшенный кадр она отпускает сама, а выданный писателю — передаёт ему,
+ * и писатель отпускает кадр, когда тот записан.</p>
+ */
+final class OutboundMailbox {
+
+    private final int  capacity;
+    private final long stallNanos;
+
+    private final ReentrantLock             lock     = new ReentrantLock();
+    private final Condition                 notEmpty = lock.newCondition();
+    private final ArrayDeque<OutboundFrame> queue    = new ArrayDeque<>();
+
+    private OutboundFrame pendingSnapshot;
+    private long          lastTakeNanos = System.nanoTime();
+    private boolean       closed;
+
+    // Счётчики для журнала при отключении медленного клиента.
+    private long coalesced;
+    private int  highWater;
+
+    OutboundMailbox(int capacity, long stallMillis) {
+        this.capacity   = capacity;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+    }
+
+    /**
+     * Ставим кадр в очередь.
+     *
+     * @return {@code false}, если клиент не успевает забирать данные и его следует отключить;
+     *         после закрытия очереди кадры молча отбрасываются
+     */
+    boolean offer(OutboundFrame frame) {
+        lock.lock();
+        try {
+            if (closed) return true;
+            long now = System.nanoTime();
+            if (queue.isEmpty()) {
+                // Отсчёт простоя писателя начинается с момента, когда ему появилась работа.
+                lastTakeNanos = now;
+            } else if (now - lastTakeNanos > stallNanos) {
+                return false;
+            }
+
+            // Дельту тоже можно вытеснить: она построена от подтверждённого снимка, а не от предыдущей дельты.
+            if (frame.message() instanceof GameStateMessage || frame.message() instanceof GameStateDeltaMessage) {
+                if (pendingSnapshot != null && queue.remove(pendingSnapshot)) {
+                    pendingSnapshot.release();
+                    coalesced++;
+                    ServerMetrics.snapshotCoalesced();
+                }
+                pendingSnapshot = frame;
+            } else if (queue.size() - (pendingSnapshot != null ? 1 : 0) >= capacity) {
+                return false;
+            }
+            queue.addLast(frame.retain());
+            highWater = Math.max(highWater, queue.size());
+            ServerMetrics.frameQueued();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Следующий кадр без ожидания или {@code null}; для писателя, который сам следит за готовностью сокета.
+     * Ссылка очереди на кадр переходит к вызывающему, как и в {@link #take()}.
+     */
+    OutboundFrame poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждём следующий кадр. Возвращает {@code null}, когда очередь закрыта и опустела:
+     * это сигнал писателю завершиться.
+     */
+    OutboundFrame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждём следующий кадр не дольше {@code timeoutNanos}; {@code null} — время вышло
+     * или очередь закрыта и опустела.
+     */
+    OutboundFrame poll(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long left = timeoutNanos;
+            while (queue.isEmpty() && !closed && left > 0) {
+                left = notEmpty.awaitNanos(left);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private OutboundFrame next() {
+        OutboundFrame frame = queue.pollFirst();
+        if (frame == pendingSnapshot) pendingSnapshot = null;
+        lastTakeNanos = System.nanoTime();
+        return frame;
+    }
+
+    /** Писатель не успевает: в очереди ещё лежит прошлый снимок или больше {@code limit} кадров. */
+    boolean isBacklogged(int limit) {
+        lock.lock();
+        try {
+            return pendingSnapshot != null || queue.size() > limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Больше не принимаем кадры; уже поставленные писатель ещё допишет. */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Закрываем очередь и выбрасываем всё, что не успели отправить.
+     *
+     * @return {@code true}, если очередь закрыл именно этот вызов
+     */
+    boolean abort() {
+        lock.lock();
+        try {
+            boolean wasOpen = !closed;
+            closed = true;
+            for (OutboundFrame frame; (frame = queue.pollFirst()) != null; ) frame.release();
+            pendingSnapshot = null;
+            notEmpty.signalAll();
+            return wasOpen;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Краткая сводка для журнала: глубина, максимум и число вытесненных снимков. */
+    String describe() {
+        lock.lock();
+        try {
+            return "в очереди " + queue.size() + ", максимум " + highWater + ", вытеснено снимков " + coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
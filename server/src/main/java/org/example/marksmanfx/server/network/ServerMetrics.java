@@ -0,0 +1,145 @@
+package org.example.marksmanfx.server.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сетевые счётчики процесса сервера.
+ * {@link LongAdder} не создаёт общей точки конкуренции для игровых циклов и писателей.
+ */
+public final class ServerMetrics {
+
+    private static final LongAdder FRAMES_QUEUED       = new LongAdder();
+    private static final LongAdder FRAMES_WRITTEN      = new LongAdder();
+    private static final LongAdder BYTES_WRITTEN       = new LongAdder();
+    private static final LongAdder BATCHES_WRITTEN     = new LongAdder();
+    private static final LongAdder SNAPSHOTS_COALESCED = new LongAdder();
+    private static final LongAdder SNAPSHOTS_THROTTLED = new LongAdder();
+    private static final LongAdder RATE_DECREASES      = new LongAdder();
+    private static final LongAdder SLOW_CONSUMERS      = new LongAdder();
+    private static final LongAdder DATAGRAMS_SENT      = new LongAdder();
+    private static final LongAdder DATAGRAMS_RECEIVED  = new LongAdder();
+    private static final LongAdder IDLE_TIMEOUTS       = new LongAdder();
+    private static final LongAdder SESSIONS_SUSPENDED  = new LongAdder();
+    private static final LongAdder SESSIONS_RESUMED    = new LongAdder();
+    private static final LongAdder FRAMES_COMPRESSED   = new LongAdder();
+    private static final LongAdder COMPRESS_IN_BYTES   = new LongAdder();
+    private static final LongAdder COMPRESS_OUT_BYTES  = new LongAdder();
+    private static final LongAdder COMPRESS_NANOS      = new LongAdder();
+    private static final LongAdder BUFFERS_ALLOCATED   = new LongAdder();
+    private static final LongAdder BUFFERS_REUSED      = new LongAdder();
+    private static final LongAdder FRAMES_LEAKED       = new LongAdder();
+    private static final LongAdder RTT_SAMPLES         = new LongAdder();
+    private static final LongAdder RTT_NANOS           = new LongAdder();
+    private static final LongAccumulator RTT_MAX_NANOS = new LongAccumulator(Math::max, 0);
+    /** Отброшенные лимитом частоты события по {@link EventLimit#ordinal()}. */
+    private static final LongAdder[] EVENTS_LIMITED    = new LongAdder[EventLimit.values().length];
+
+    static {
+        for (int i = 0; i < EVENTS_LIMITED.length; i++) EVENTS_LIMITED[i] = new LongAdder();
+    }
+
+    private ServerMetrics() {}
+
+    static void frameQueued()       { FRAMES_QUEUED.increment(); }
+    static void snapshotCoalesced() { SNAPSHOTS_COALESCED.increment(); }
+    static void snapshotThrottled() { SNAPSHOTS_THROTTLED.increment(); }
+    static void snapshotRateDecreased() { RATE_DECREASES.increment(); }
+    static void slowConsumer()      { SLOW_CONSUMERS.increment(); }
+    static void datagramSent()      { DATAGRAMS_SENT.increment(); }
+    static void datagramReceived()  { DATAGRAMS_RECEIVED.increment(); }
+    static void idleTimeout()       { IDLE_TIMEOUTS.increment(); }
+    static void sessionSuspended()  { SESSIONS_SUSPENDED.increment(); }
+    static void sessionResumed()    { SESSIONS_RESUMED.increment(); }
+    static void batchWritten()      { BATCHES_WRITTEN.increment(); }
+    static void bufferAllocated()   { BUFFERS_ALLOCATED.increment(); }
+    static void bufferReused()      { BUFFERS_REUSED.increment(); }
+    static void frameLeaked()       { FRAMES_LEAKED.increment(); }
+    static void eventLimited(EventLimit limit) { EVENTS_LIMITED[limit.ordinal()].increment(); }
+
+    /** Попытка сжатия кадра; {@code outBytes == inBytes}, если сжатие не помогло и кадр ушёл как есть. */
+    static void frameCompressed(int inBytes, int outBytes, long nanos) {
+        FRAMES_COMPRESSED.increment();
+        COMPRESS_IN_BYTES.add(inBytes);
+        COMPRESS_OUT_BYTES.add(outBytes);
+        COMPRESS_NANOS.add(nanos);
+    }
+
+    /** Замер задержки до клиента (см. {@link org.example.marksmanfx.common.protocol.ClockSync}). */
+    static void rttSampled(long nanos) {
+        RTT_SAMPLES.increment();
+        RTT_NANOS.add(nanos);
+        RTT_MAX_NANOS.accumulate(nanos);
+    }
+
+    static void frameWritten(int bytes) {
+        FRAMES_WRITTEN.increment();
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    public static long framesQueued()       { return FRAMES_QUEUED.sum(); }
+    public static long framesWritten()      { return FRAMES_WRITTEN.sum(); }
+    public static long bytesWritten()       { return BYTES_WRITTEN.sum(); }
+    public static long batchesWritten()     { return BATCHES_WRITTEN.sum(); }
+    public static long snapshotsCoalesced() { return SNAPSHOTS_COALESCED.sum(); }
+    public static long snapshotsThrottled() { return SNAPSHOTS_THROTTLED.sum(); }
+    public static long snapshotRateDecreases() { return RATE_DECREASES.sum(); }
+    public static long slowConsumers()      { return SLOW_CONSUMERS.sum(); }
+    public static long datagramsSent()      { return DATAGRAMS_SENT.sum(); }
+    public static long datagramsReceived()  { return DATAGRAMS_RECEIVED.sum(); }
+    public static long idleTimeouts()       { return IDLE_TIMEOUTS.sum(); }
+    public static long sessionsSuspended()  { return SESSIONS_SUSPENDED.sum(); }
+    public static long sessionsResumed()    { return SESSIONS_RESUMED.sum(); }
+    public static long framesCompressed()   { return FRAMES_COMPRESSED.sum(); }
+    public static long compressInBytes()    { return COMPRESS_IN_BYTES.sum(); }
+    public static long compressOutBytes()   { return COMPRESS_OUT_BYTES.sum(); }
+    public static long compressNanos()      { return COMPRESS_NANOS.sum(); }
+    public static long buffersAllocated()   { return BUFFERS_ALLOCATED.sum(); }
+    public static long buffersReused()      { return BUFFERS_REUSED.sum(); }
+    public static long framesLeaked()       { return FRAMES_LEAKED.sum(); }
+    public static long rttSamples()         { return RTT_SAMPLES.sum(); }
+    public static long rttMaxNanos()        { return RTT_MAX_NANOS.get(); }
+
+    /** Средняя задержка по всем замерам всех клиентов; 0, пока замеров нет. */
+    public static long rttMeanNanos() {
+        long n = RTT_SAMPLES.sum();
+        return n > 0 ? RTT_NANOS.sum() / n : 0;
+    }
+
+    /** Все события, отброшенные лимитами частоты. */
+    public static long eventsLimited() {
+        long sum = 0;
+        for (LongAdder adder : EVENTS_LIMITED) sum += adder.sum();
+        return sum;
+    }
+
+    /** Отброшенные лимитом события по классам, например {@code input 12, fire 0, control 3}. */
+    static String eventsLimitedByClass() {
+        StringBuilder sb = new StringBuilder();
+        for (EventLimit limit : EventLimit.values()) {
+            if (!sb.isEmpty()) sb.append(", ");
+            sb.append(limit.label()).append(' ').append(EVENTS_LIMITED[limit.ordinal()].sum());
+        }
+        return sb.toString();
+    }
+
+    /** Однострочная сводка для журнала. */
+    public static String summary() {
+        return "кадров в очередь: " + framesQueued()
+                + ", записано: " + framesWritten() + " (" + bytesWritten() + " байт, пачек " + batchesWritten() + ")"
+                + ", вытеснено снимков: " + snapshotsCoalesced()
+                + ", пропущено по частоте: " + snapshotsThrottled() + " (снижений частоты " + snapshotRateDecreases() + ")"
+                + ", отключено медленных клиентов: " + slowConsumers()
+                + ", молчащих: " + idleTimeouts()
+                + ", возобновлено сессий: " + sessionsResumed() + " (ждали возврата: " + sessionsSuspended() + ")"
+                + ", отброшено лимитом: " + eventsLimited() + " (" + eventsLimitedByClass() + ")"
+                + ", сжато кадров: " + framesCompressed() + " (" + compressInBytes() + " → " + compressOutBytes()
+                + " байт, " + TimeUnit.NANOSECONDS.toMillis(compressNanos()) + " мс CPU)"
+                + ", буферов выделено/из пула: " + buffersAllocated() + "/" + buffersReused()
+                + ", утечек кадров: " + framesLeaked()
+                + ", RTT средний/макс: " + TimeUnit.NANOSECONDS.toMillis(rttMeanNanos()) + "/"
+                + TimeUnit.NANOSECONDS.toMillis(rttMaxNanos()) + " мс (" + rttSamples() + " замеров)"
+                + ", UDP отправлено/принято: " + datagramsSent() + "/" + datagramsReceived();
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.protocol.ClockSync;
+import org.example.marksmanfx.server.game.ServerGameSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Частота снимков одного клиента: каждый тик, каждый второй, каждый третий…
+ *
+ * <p>Симуляция комнаты всегда идёт {@value ServerGameSession#TPS} тиков в секунду, а клиенту
+ * со слабой связью лишние снимки только удлиняют очередь: он всё равно увидит лишь последний.
+ * Связь считается плохой:</p>
+ * <ul>
+ *   <li>если в очереди отправки ещё лежит прошлый снимок или больше {@code marksman.snapshot.rate.queueLimit} кадров;</li>
+ *   <li>если подтверждение последнего отправленного снимка идёт дольше наименьшего за соединение
+ *       больше чем на {@code marksman.snapshot.rate.rttRiseMillis} (50 мс): снимки копятся в буферах
+ *       сокета и на пути, которых очередь отправки не видит;</li>
+ *   <li>если на столько же вырос сглаженный RTT замеров {@link ClockSync} или джиттер больше
+ *       {@code marksman.snapshot.rate.jitterMillis} (30 мс); эти признаки учитываются, когда замеров
+ *       накопилось несколько.</li>
+ * </ul>
+ *
+ * <p>Признак должен держаться {@value #BAD_TICKS} тика подряд: одна задержка писателя или
+ * подтверждения (сборка мусора, планировщик) частоту не снижает.
+ * При плохой связи частота снижается на ступень, но не чаще раза в {@value #DOWN_COOLDOWN_MILLIS} мс
+ * и не ниже {@code marksman.snapshot.minRate} (20 Гц); после {@value #UP_AFTER_MILLIS} мс хорошей
+ * связи — повышается на ступень. Дельты от этого не ломаются: база следующей — последний
+ * подтверждённый снимок, а не предыдущий тик.</p>
+ *
+ * <p>Вызывается только игровым циклом комнаты под её замком.</p>
+ */
+final class SnapshotRate {
+
+    private static final int  DOWN_COOLDOWN_MILLIS = 500;
+    private static final int  UP_AFTER_MILLIS      = 2_000;
+    private static final long DOWN_COOLDOWN_NANOS  = TimeUnit.MILLISECONDS.toNanos(DOWN_COOLDOWN_MILLIS);
+    private static final long UP_AFTER_NANOS       = TimeUnit.MILLISECONDS.toNanos(UP_AFTER_MILLIS);
+    private static final int  BAD_TICKS            = 3;
+    /** Первые замеры RTT ловят прогрев JIT и соединения; джиттеру нужно время, чтобы улечься. */
+    private static final int  MIN_SAMPLES          = 5;
+
+    /** Наибольший делитель частоты тиков: 60 / 20 Гц = каждый третий тик. */
+    private static final int  MAX_DIVISOR  = Math.max(1,
+            ServerGameSession.TPS / Math.max(1, Integer.getInteger("marksman.snapshot.minRate", 20)));
+    static final int          QUEUE_LIMIT  = Integer.getInteger("marksman.snapshot.rate.queueLimit", 4);
+    private static final long RTT_RISE     =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.snapshot.rate.rttRiseMillis", 50));
+    private static final long RISE_TICKS   = RTT_RISE * ServerGameSession.TPS / TimeUnit.SECONDS.toNanos(1);
+    private static final long JITTER_LIMIT =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.snapshot.rate.jitterMillis", 30));
+
+    private int  divisor = 1;
+    private int  ticksSinceSent;
+    /** Наименьший путь снимка до подтверждения за соединение, в тиках. */
+    private int  minAckTicks = Integer.MAX_VALUE;
+    private int  badTicks;
+    private long lastChangeNanos = System.nanoTime();
+    private long goodSinceNanos  = lastChangeNanos;
+
+    /**
+     * Пересматриваем частоту на очередном тике.
+     *
+     * @param backlogged очередь отправки клиента не успевает опустеть за тик
+     * @param ackLagTicks на сколько тиков последний подтверждённый снимок отстаёт от текущего; {@code -1} — неизвестно
+     * @return {@code true}, если частота изменилась
+     */
+    boolean review(long now, boolean backlogged, int ackLagTicks, ClockSync clock) {
+        boolean ackDelayed = false;
+        if (ackLagTicks >= 0) {
+            // Последний снимок ушёл ticksSinceSent + 1 тиков назад; остальное отставание — путь и очереди.
+            int ackTicks = Math.max(0, ackLagTicks - ticksSinceSent - 1);
+            minAckTicks = Math.min(minAckTicks, ackTicks);
+            ackDelayed  = ackTicks - minAckTicks > RISE_TICKS;
+        }
+        boolean bad = backlogged || ackDelayed || clock.samples() >= MIN_SAMPLES
+                && (clock.rttNanos() - clock.minRttNanos() > RTT_RISE || clock.jitterNanos() > JITTER_LIMIT);
+        badTicks = bad ? badTicks + 1 : 0;
+        if (badTicks >= BAD_TICKS) {
+            goodSinceNanos = now;
+            if (divisor == MAX_DIVISOR || now - lastChangeNanos < DOWN_COOLDOWN_NANOS) return false;
+            divisor++;
+        } else {
+            if (bad || divisor == 1 || now - goodSinceNanos < UP_AFTER_NANOS || now - lastChangeNanos < UP_AFTER_NANOS) {
+                return false;
+            }
+            divisor--;
+        }
+        lastChangeNanos = now;
+        return true;
+    }
+
+    /** Подошла ли очередь снимка на этом тике при текущей частоте. */
+    boolean due() {
+        if (++ticksSinceSent < divisor) return false;
+        ticksSinceSent = 0;
+        return true;
+    }
+
+    /** Текущая частота снимков в герцах. */
+    int hz() {
+        return ServerGameSession.TPS / divisor;
+    }
+}
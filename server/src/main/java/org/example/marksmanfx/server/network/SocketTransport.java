@@ -0,0 +1,158 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.protocol.Frames;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.server.lobby.LobbyManager;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Блокирующий транспорт: один поток на клиента читает кадры из сокета
+ * и передаёт их своему {@link ClientHandler}, второй поток того же пула
+ * вычитывает очередь отправки обработчика и пишет её в сокет.
+ * Медленная запись задерживает только писателя этого клиента.
+ *
+ * <p>Писатель отправляет кадры пачками ({@link WriteBatch}): пачка копируется из буферов кадров
+ * в промежуточный массив и уходит одним системным вызовом, если помещается в него целиком.
+ * Массивы берутся из общего пула только на время записи пачки, а не закрепляются за соединением:
+ * тысячи простаивающих клиентов не держат по буферу каждый.</p>
+ */
+final class SocketTransport implements ClientTransport, Runnable {
+
+    private static final Logger LOG = Logger.getLogger(SocketTransport.class.getName());
+
+    private static final int           SCRATCH_SIZE = 8 * 1024;
+    private static final Queue<byte[]> SCRATCH      = new ConcurrentLinkedQueue<>();
+
+    private final Socket        socket;
+    private final LobbyManager  lobbyManager;
+    private final Executor      writers;
+    private final UdpGateway    udp;
+    private final TimingWheel   timers;
+    private       ClientHandler handler;
+
+    /** @param udp UDP-канал сервера или {@code null}, если он недоступен */
+    SocketTransport(Socket socket, LobbyManager lobbyManager, Executor writers, UdpGateway udp, TimingWheel timers) {
+        this.socket       = socket;
+        this.lobbyManager = lobbyManager;
+        this.writers      = writers;
+        this.udp          = udp;
+        this.timers       = timers;
+    }
+
+    @Override
+    public void run() {
+        // Пока обработчика нет, за молчанием клиента следит только этот таймер: поток чтения иначе ждал бы вечно.
+        TimingWheel.Timeout preambleDeadline = ClientHandler.awaitPreamble(this, timers);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            WireCodec codec = Frames.readPreamble(in);
+            OutputStream out = socket.getOutputStream();
+            if (preambleDeadline != null) preambleDeadline.cancel();
+            handler = new ClientHandler(this, codec, lobbyManager, udp, timers);
+            writers.execute(() -> writeLoop(out));
+
+            // Основной цикл чтения кадров.
+            while (!socket.isClosed()) {
+                handler.onFrame(Frames.readEvent(in, codec));
+            }
+
+        } catch (ProtocolException e) {
+            LOG.warning("[Транспорт] От " + who() + " получен некорректный кадр: " + e.getMessage());
+        } catch (IOException e) {
+            LOG.info("[Транспорт] " + who() + " отключился: " + e.getMessage());
+        } finally {
+            if (preambleDeadline != null) preambleDeadline.cancel();
+            abort();
+            if (handler != null) handler.onDisconnected();
+        }
+    }
+
+    /** Пишем пачки кадров, пока очередь не закрыта; записанные кадры сразу отпускаем. */
+    private void writeLoop(OutputStream out) {
+        WriteBatch batch = new WriteBatch();
+        try {
+            while (handler.takeOutbound(batch)) {
+                writeBatch(out, batch);
+                ServerMetrics.batchWritten();
+                batch.release();
+            }
+        } catch (IOException e) {
+            LOG.fine("[Транспорт] Не удалось отправить кадр игроку " + who() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.release();
+            // Поток чтения получит ошибку сокета и выполнит отключение обработчика.
+            closeSocket();
+        }
+    }
+
+    /** Копируем буферы пачки в промежуточный массив и пишем его каждый раз, когда он заполнится. */
+    private static void writeBatch(OutputStream out, WriteBatch batch) throws IOException {
+        byte[] scratch = SCRATCH.poll();
+        if (scratch == null) scratch = new byte[SCRATCH_SIZE];
+        try {
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                ByteBuffer frame = batch.buffer(i);
+                while (frame.hasRemaining()) {
+                    int chunk = Math.min(frame.remaining(), scratch.length - n);
+                    frame.get(scratch, n, chunk);
+                    n += chunk;
+                    if (n == scratch.length) {
+                        out.write(scratch, 0, n);
+                        n = 0;
+                    }
+                }
+                ServerMetrics.frameWritten(frame.limit());
+            }
+            if (n > 0) out.write(scratch, 0, n);
+        } finally {
+            SCRATCH.offer(scratch);
+        }
+    }
+
+    @Override
+    public void outboundReady() {
+        // Писатель сам просыпается по сигналу очереди.
+    }
+
+    @Override
+    public void close() {
+        if (handler != null) {
+            handler.closeOutbound();
+        } else {
+            closeSocket();
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (handler != null) handler.abortOutbound();
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        try { socket.close(); } catch (IOException ignored) {}
+    }
+
+    @Override
+    public String remoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    private String who() {
+        return handler != null ? handler.nicknameOrId() : remoteAddress();
+    }
+}
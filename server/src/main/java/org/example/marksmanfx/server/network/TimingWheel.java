@@ -0,0 +1,137 @@
+package org.example.marksmanfx.server.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Хешированное колесо таймеров: один поток на весь сервер следит за дедлайнами всех соединений.
+ *
+ * <p>Колесо — кольцо из {@code 2^k} корзин, стрелка переходит на следующую корзину раз в тик.
+ * Таймер попадает в корзину по номеру тика своего дедлайна, а если до него больше одного оборота,
+ * ждёт нужное число оборотов. Постановка и отмена стоят O(1) и не берут блокировок: новые таймеры
+ * приходят через очередь, отменённые выбрасываются, когда стрелка доходит до их корзины.
+ * Точность — один тик, что для тайм-аутов в секунды более чем достаточно.</p>
+ *
+ * <p>Задачи выполняются в потоке колеса и должны быть короткими: проверить время и, если нужно,
+ * попросить транспорт закрыть соединение.</p>
+ */
+final class TimingWheel {
+
+    private static final Logger LOG = Logger.getLogger(TimingWheel.class.getName());
+
+    /** Тик и число корзин по умолчанию: оборот колеса — около 51 секунды. */
+    private static final long DEFAULT_TICK_MS = 100;
+    private static final int  DEFAULT_BUCKETS = 512;
+
+    /** Отложенная задача; {@link #cancel()} можно вызывать из любого потока. */
+    static final class Timeout {
+        private final Runnable   task;
+        private final long       deadlineNanos;
+        private long             rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task          = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long             tickNanos;
+    private final int              mask;
+    private final List<Timeout>[]  buckets;
+    private final Queue<Timeout>   pending = new ConcurrentLinkedQueue<>();
+    private final long             startNanos;
+    private final Thread           worker;
+    private volatile boolean       running = true;
+
+    /** Номер текущего тика; меняется только потоком колеса. */
+    private long tick;
+
+    /**
+     * @param tick        длительность тика
+     * @param bucketCount число корзин, округляется вверх до степени двойки
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tick, TimeUnit unit, int bucketCount) {
+        int size = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.tickNanos  = unit.toNanos(tick);
+        this.mask       = size - 1;
+        this.buckets    = new List[size];
+        for (int i = 0; i < size; i++) buckets[i] = new ArrayList<>();
+        this.startNanos = System.nanoTime();
+        this.worker     = new Thread(this::run, "marksman-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Колесо с параметрами по умолчанию для тайм-аутов соединений. */
+    static TimingWheel open() {
+        return new TimingWheel(DEFAULT_TICK_MS, TimeUnit.MILLISECONDS, DEFAULT_BUCKETS);
+    }
+
+    /** Ставим задачу через {@code delay}; вызывается из любого потока. */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /** Останавливаем поток колеса; невыполненные задачи отбрасываются. */
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long tickStart = startNanos + tick * tickNanos;
+            long wait      = tickStart + tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /** Раскладываем новые таймеры по корзинам; просроченные попадают в текущую. */
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) continue;
+            long due  = Math.max(tick, (t.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            t.rounds  = (due - tick) / buckets.length;
+            buckets[(int) (due & mask)].add(t);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0, n = bucket.size(); i < n; i++) {
+            Timeout t = bucket.get(i);
+            if (t.cancelled) continue;
+            if (t.rounds > 0) {
+                t.rounds--;
+                bucket.set(kept++, t);
+                continue;
+            }
+            try {
+                t.task.run();
+            } catch (RuntimeException e) {
+                LOG.warning("[Таймеры] Ошибка в задаче: " + e);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.marksmanfx.server.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ведро токенов без блокировок: {@code rate} событий в секунду в среднем и до {@code burst} подряд.
+ *
+ * <p>Вместо числа токенов и времени пополнения храним одно число — момент, когда ведро снова
+ * станет полным (алгоритм GCRA). Событие проходит, если до этого момента осталось не больше
+ * {@code burst - 1} интервалов, и сдвигает его на один интервал. Так проверка — одна операция CAS,
+ * и ведро можно делить между потоком чтения TCP и потоком приёма UDP.</p>
+ */
+final class TokenBucket {
+
+    private final long       intervalNanos;
+    private final long       toleranceNanos;
+    private final AtomicLong fullAtNanos = new AtomicLong(System.nanoTime());
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.intervalNanos  = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+    }
+
+    /** @return {@code true}, если событие укладывается в лимит, и тогда токен списан */
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long from   = fullAt - now > 0 ? fullAt : now;
+            if (from - now > toleranceNanos) return false;
+            if (fullAtNanos.compareAndSet(fullAt, from + intervalNanos)) return true;
+        }
+    }
+}
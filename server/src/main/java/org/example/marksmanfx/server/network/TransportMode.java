@@ -0,0 +1,31 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.server.lobby.LobbyManager;
+
+/**
+ * Способ обслуживания клиентских сокетов.
+ */
+public enum TransportMode {
+    /** Поток из кэшируемого пула на каждого клиента, блокирующее чтение. */
+    BLOCKING,
+    /** Виртуальный поток на каждого клиента, блокирующее чтение без закрепления потоков ОС. */
+    VIRTUAL,
+    /** Небольшой фиксированный пул потоков-селекторов, неблокирующие чтение и запись. */
+    NIO;
+
+    public NetworkServer create(int port, int ioThreads, LobbyManager lobbyManager) {
+        return switch (this) {
+            case BLOCKING -> new GameServer(port, lobbyManager);
+            case VIRTUAL  -> new GameServer(port, lobbyManager, true);
+            case NIO      -> new NioGameServer(port, ioThreads, lobbyManager);
+        };
+    }
+
+    /** @return режим по имени без учёта регистра или {@code null}, если имя неизвестно */
+    public static TransportMode byName(String name) {
+        for (TransportMode m : values()) {
+            if (m.name().equalsIgnoreCase(name)) return m;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.protocol.Datagrams;
+import org.example.marksmanfx.common.protocol.ProtocolException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Необязательный UDP-канал сервера на том же номере порта, что и TCP (формат — {@link Datagrams}).
+ *
+ * <p>Один поток принимает датаграммы и по токену передаёт их {@link ClientHandler}; отправка идёт
+ * прямо из вызывающего потока, потому что {@link DatagramChannel} потокобезопасен и не ждёт
+ * медленного получателя. Если порт занят или UDP выключен ({@code -Dmarksman.udp=false}),
+ * сервер работает только по TCP, а клиенты получают нулевой токен.</p>
+ */
+final class UdpGateway {
+
+    private static final Logger  LOG     = Logger.getLogger(UdpGateway.class.getName());
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("marksman.udp", "true"));
+
+    private final DatagramChannel          channel;
+    private final Map<Long, ClientHandler> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom             random   = new SecureRandom();
+    private final Thread                   receiver;
+
+    private UdpGateway(DatagramChannel channel) {
+        this.channel  = channel;
+        this.receiver = new Thread(this::receiveLoop, "marksman-udp");
+        this.receiver.setDaemon(true);
+    }
+
+    /** Открываем UDP-порт; при ошибке или выключенном UDP возвращаем {@code null}. */
+    static UdpGateway open(int port) {
+        if (!ENABLED) {
+            LOG.info("[UDP] Выключен, снимки и ввод идут по TCP");
+            return null;
+        }
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(port));
+            UdpGateway gateway = new UdpGateway(channel);
+            gateway.receiver.start();
+            LOG.info("[UDP] Прослушивается порт " + port);
+            return gateway;
+        } catch (IOException e) {
+            LOG.warning("[UDP] Не удалось открыть порт " + port + ", только TCP: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Выдаём сессии ненулевой токен, по которому она опознаёт свои датаграммы. */
+    long register(ClientHandler handler) {
+        while (true) {
+            long token = random.nextLong();
+            if (token != 0 && sessions.putIfAbsent(token, handler) == null) return token;
+        }
+    }
+
+    void unregister(long token) {
+        sessions.remove(token);
+    }
+
+    /** @return {@code false}, если кадр слишком велик для датаграммы или отправить не удалось */
+    boolean send(SocketAddress to, ByteBuffer frame) {
+        if (frame.remaining() + 1 > Datagrams.MAX_SIZE) return false;
+        // Датаграмма собирается в буфере из пула: канал отправляет его без промежуточной копии.
+        ByteBuffer datagram = BufferPool.acquire(frame.remaining() + 1);
+        try {
+            channel.send(Datagrams.serverDatagram(datagram, frame), to);
+            ServerMetrics.datagramSent();
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            BufferPool.release(datagram);
+        }
+    }
+
+    void sendHelloAck(SocketAddress to) {
+        try {
+            channel.send(Datagrams.helloAck(), to);
+        } catch (IOException ignored) {
+            // Клиент повторит приветствие.
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(Datagrams.MAX_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress from = channel.receive(buf);
+                buf.flip();
+                if (buf.remaining() < Datagrams.CLIENT_HEADER) continue;
+                ClientHandler handler = sessions.get(buf.getLong());
+                // Чужие и устаревшие токены молча отбрасываем: отвечать на них значит помогать сканированию.
+                if (handler == null) continue;
+                ServerMetrics.datagramReceived();
+                handler.onDatagram(from, buf.getInt(), buf);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (ProtocolException e) {
+                LOG.fine("[UDP] Некорректная датаграмма: " + e.getMessage());
+            } catch (IOException e) {
+                if (channel.isOpen()) LOG.warning("[UDP] Ошибка приёма: " + e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.warning("[UDP] Ошибка обработки датаграммы: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.marksmanfx.server.network;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пачка кадров, которую писатель транспорта отправляет одной записью в сокет.
+ *
+ * <p>Когда клиент входит в комнату, за одну миллисекунду ему уходят {@code RoomUpdatedMessage},
+ * {@code LobbyStateMessage} и снимок; по отдельности это три системных вызова и три TCP-сегмента.
+ * Писатель забирает из очереди всё, что успело накопиться, но не больше
+ * {@code marksman.write.maxBatchFrames} кадров и примерно {@code marksman.write.maxBatchBytes} байт,
+ * и пишет пачку целиком. {@code marksman.write.lingerMillis} (по умолчанию 0) позволяет ещё
+ * немного подождать следующие кадры, прежде чем отправить неполную пачку.</p>
+ *
+ * <p>Экземпляр принадлежит одному писателю и переиспользуется между пачками. Пачка держит ссылки
+ * на свои кадры, пока они не записаны: после записи или при закрытии соединения писатель
+ * вызывает {@link #release()}, и буферы кадров возвращаются в {@link BufferPool}.</p>
+ */
+final class WriteBatch {
+
+    static final int  MAX_FRAMES   = Math.max(1, Integer.getInteger("marksman.write.maxBatchFrames", 32));
+    static final int  MAX_BYTES    = Math.max(1, Integer.getInteger("marksman.write.maxBatchBytes", 64 * 1024));
+    static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("marksman.write.lingerMillis", 0));
+
+    private final OutboundFrame[] frames  = new OutboundFrame[MAX_FRAMES];
+    private final ByteBuffer[]    buffers = new ByteBuffer[MAX_FRAMES];
+    private int                   size;
+    private int                   bytes;
+
+    /** Добавляем кадр вместе со ссылкой на него, полученной из очереди, и буфером для записи. */
+    void add(OutboundFrame frame, ByteBuffer buffer) {
+        frames[size]  = frame;
+        buffers[size] = buffer;
+        size++;
+        bytes += buffer.remaining();
+    }
+
+    /** Кадр, который переполнит лимит байт, всё равно попадает в пачку, если он в ней первый. */
+    boolean isFull() {
+        return size == MAX_FRAMES || bytes >= MAX_BYTES;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Буферы пачки для собирающей записи; значимы первые {@link #size()} элементов. */
+    ByteBuffer[] buffers() {
+        return buffers;
+    }
+
+    ByteBuffer buffer(int i) {
+        return buffers[i];
+    }
+
+    /** Отпускаем кадры пачки и очищаем её для следующей. */
+    void release() {
+        for (int i = 0; i < size; i++) frames[i].release();
+        Arrays.fill(frames, 0, size, null);
+        Arrays.fill(buffers, 0, size, null);
+        size  = 0;
+        bytes = 0;
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.marksmanfx.server.state;
 
+import org.example.marksmanfx.common.message.GameOverMessage;
 import org.example.marksmanfx.common.message.GameStartMessage;
 import org.example.marksmanfx.common.message.RematchOfferMessage;
 import org.example.marksmanfx.server.game.GameRoom;
@@ -73,6 +74,16 @@ public final class FinishedState implements RoomState {
         return this;
     }
 
+    @Override
+    public RoomState onPlayerResume(ClientHandler player, GameRoom room) {
+        // Итог матча и голоса за реванш могли прийти, пока игрока не было.
+        if (winnerId != null) player.sendMessage(new GameOverMessage(winnerId, room.getNickname(winnerId)));
+        if (!rematchVotes.isEmpty()) {
+            player.sendMessage(new RematchOfferMessage(new ArrayList<>(rematchVotes.values()), room.getPlayerCount()));
+        }
+        return this;
+    }
+
     @Override
     public String name() { return "FINISHED"; }
 }
@@ -73,6 +73,12 @@ public final class PauseRequestedState implements RoomState {
         return this;
     }
 
+    @Override
+    public RoomState onPlayerResume(ClientHandler player, GameRoom room) {
+        player.sendMessage(new PauseStateMessage(GamePhase.PAUSE_REQUESTED, requesterId, requesterNickname));
+        return this;
+    }
+
     @Override
     public String name() { return "PAUSE_REQUESTED"; }
 }
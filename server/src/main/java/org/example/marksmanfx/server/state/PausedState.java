@@ -74,6 +74,12 @@ public final class PausedState implements RoomState {
         return this;
     }
 
+    @Override
+    public RoomState onPlayerResume(ClientHandler player, GameRoom room) {
+        player.sendMessage(new PauseStateMessage(GamePhase.PAUSED, requesterId, requesterNickname));
+        return this;
+    }
+
     @Override
     public String name() { return "PAUSED"; }
 }
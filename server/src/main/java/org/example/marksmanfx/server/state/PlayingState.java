@@ -9,8 +9,8 @@ import org.example.marksmanfx.server.network.ClientHandler;
 import java.util.logging.Logger;
 
 /**
- * Матч идёт. Перенаправляем ввод игроков в {@code ServerGameSession}
- * и реагируем на запросы паузы и дисконнекты.
+ * Матч идёт. Реагируем на запросы паузы и дисконнекты; ввод игроков идёт
+ * в {@code ServerGameSession} мимо состояния комнаты.
  */
 public final class PlayingState implements RoomState {
 
@@ -40,40 +40,23 @@ public final class PlayingState implements RoomState {
             room.getSession().stop();
 
             // Если игрок остался один, то техническая победа
-            room.getPlayerIds().stream().findFirst().ifPresent(winnerId -> {
+            String winnerId = room.getPlayerIds().stream().findFirst().orElse(null);
+            if (winnerId != null) {
                 String winnerNick = room.getNickname(winnerId);
                 LOG.info("[Комната " + room.getRoomId() + "] Техническая победа у: " + winnerNick
                         + " (соперник " + player.getNickname() + " ушёл)");
                 room.broadcast(new TechnicalWinMessage(winnerId, winnerNick, player.getNickname()));
-                room.transitionToState(new FinishedState(winnerId));
-            });
-            return new FinishedState(null);
+            }
+            // Победителя запоминаем в состоянии: вернувшемуся после обрыва его сообщит onPlayerResume.
+            return new FinishedState(winnerId);
         }
         return this;
     }
 
-    // Передаём игровые команды напрямую в сессию
     @Override
-    public RoomState onFireArrow(ClientHandler player, double chargeRatio, GameRoom room) {
-        room.getSession().playerFireArrow(player.getPlayerId(), chargeRatio);
-        return this;
-    }
-
-    @Override
-    public RoomState onMove(ClientHandler player, String direction, boolean pressed, GameRoom room) {
-        room.getSession().playerMove(player.getPlayerId(), direction, pressed);
-        return this;
-    }
-
-    @Override
-    public RoomState onAim(ClientHandler player, String direction, boolean pressed, GameRoom room) {
-        room.getSession().playerAim(player.getPlayerId(), direction, pressed);
-        return this;
-    }
-
-    @Override
-    public RoomState onCrouch(ClientHandler player, boolean crouching, GameRoom room) {
-        room.getSession().playerCrouch(player.getPlayerId(), crouching);
+    public RoomState onPlayerResume(ClientHandler player, GameRoom room) {
+        // Пауза могла закончиться, а матч — начаться, пока игрока не было.
+        player.sendMessage(new PauseStateMessage(GamePhase.PLAYING, null, null));
         return this;
     }
 
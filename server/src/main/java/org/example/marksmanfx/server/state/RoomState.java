@@ -25,19 +25,11 @@ public interface RoomState {
         return this;
     }
 
-    default RoomState onFireArrow(ClientHandler player, double chargeRatio, GameRoom room) {
-        return this;
-    }
-
-    default RoomState onMove(ClientHandler player, String direction, boolean pressed, GameRoom room) {
-        return this;
-    }
-
-    default RoomState onAim(ClientHandler player, String direction, boolean pressed, GameRoom room) {
-        return this;
-    }
-
-    default RoomState onCrouch(ClientHandler player, boolean crouching, GameRoom room) {
+    /**
+     * Игрок вернулся после обрыва связи ({@code GameRoom#replacePlayer}). Пока его не было,
+     * фаза могла смениться: состояние досылает ему то, что он пропустил.
+     */
+    default RoomState onPlayerResume(ClientHandler player, GameRoom room) {
         return this;
     }
 
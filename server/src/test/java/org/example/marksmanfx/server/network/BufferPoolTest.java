@@ -0,0 +1,57 @@
+package org.example.marksmanfx.server.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Пул буферов: классы размеров, повторное использование и обход пула крупными кадрами. */
+class BufferPoolTest {
+
+    @Test
+    void releasedBufferIsReused() {
+        drain(1000);
+        ByteBuffer first = BufferPool.acquire(1000);
+        assertTrue(first.isDirect());
+        assertEquals(1024, first.capacity());
+        first.putInt(42).flip();
+        BufferPool.release(first);
+
+        long       reused = ServerMetrics.buffersReused();
+        ByteBuffer second = BufferPool.acquire(700);
+        assertSame(first, second);
+        assertEquals(reused + 1, ServerMetrics.buffersReused());
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+    }
+
+    @Test
+    void oversizedBufferBypassesPool() {
+        ByteBuffer big = BufferPool.acquire(BufferPool.MAX_SIZE + 1);
+        assertFalse(big.isDirect());
+        assertEquals(BufferPool.MAX_SIZE + 1, big.capacity());
+        BufferPool.release(big);
+
+        drain(BufferPool.MAX_SIZE);
+        long       allocated = ServerMetrics.buffersAllocated();
+        ByteBuffer largest   = BufferPool.acquire(BufferPool.MAX_SIZE);
+        assertNotSame(big, largest);
+        assertTrue(largest.isDirect());
+        assertEquals(allocated + 1, ServerMetrics.buffersAllocated());
+        BufferPool.release(largest);
+    }
+
+    /** Опустошаем класс размера, чтобы следующий {@link BufferPool#acquire} был предсказуем. */
+    static void drain(int size) {
+        while (true) {
+            long allocated = ServerMetrics.buffersAllocated();
+            BufferPool.acquire(size);
+            if (ServerMetrics.buffersAllocated() > allocated) return;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.marksmanfx.server.network;
+
+import org.example.marksmanfx.common.message.ErrorMessage;
+import org.example.marksmanfx.common.message.GameStateMessage;
+import org.example.marksmanfx.common.message.LobbyStateMessage;
+import org.example.marksmanfx.common.model.GamePhase;
+import org.example.marksmanfx.common.model.RoomInfo;
+import org.example.marksmanfx.common.protocol.WireCodec;
+import org.example.marksmanfx.common.protocol.WireCodecs;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Счётчик ссылок кадра рассылки: очереди клиентов, пачки писателей, возврат буферов в пул
+ * и обнаружение утечек. Запускается с {@code -Dmarksman.pool.leakDetection=true} (см. pom.xml).
+ */
+class OutboundFrameTest {
+
+    private static final WireCodec CODEC = WireCodecs.byId(1);
+
+    @BeforeAll
+    static void leakDetectionIsOn() {
+        assertTrue(Boolean.getBoolean("marksman.pool.leakDetection"), "тесты запускаются с marksman.pool.leakDetection");
+    }
+
+    @Test
+    void lastRecipientReturnsBufferToPool() {
+        OutboundFrame frame = OutboundFrame.of(new ErrorMessage("всем"));
+        int           size  = frame.bufferFor(CODEC).remaining();
+        BufferPoolTest.drain(size);
+
+        List<OutboundMailbox> mailboxes = List.of(new OutboundMailbox(16, 5000),
+                new OutboundMailbox(16, 5000), new OutboundMailbox(16, 5000));
+        for (OutboundMailbox mailbox : mailboxes) assertTrue(mailbox.offer(frame));
+        frame.release();
+        assertEquals(mailboxes.size(), frame.refCount());
+
+        long reused = ServerMetrics.buffersReused();
+        for (int i = 0; i < mailboxes.size(); i++) {
+            // Буфер не возвращается в пул, пока кадр ждёт хотя бы одного получателя.
+            BufferPool.acquire(size);
+            assertEquals(reused, ServerMetrics.buffersReused());
+
+            OutboundFrame queued = mailboxes.get(i).poll();
+            WriteBatch    batch  = new WriteBatch();
+            batch.add(queued, queued.bufferFor(CODEC));
+            batch.release();
+            assertEquals(mailboxes.size() - i - 1, frame.refCount());
+        }
+
+        BufferPool.acquire(size);
+        assertEquals(reused + 1, ServerMetrics.buffersReused());
+        assertThrows(IllegalStateException.class, frame::retain);
+    }
+
+    @Test
+    void coalescedSnapshotReleasesQueueReference() {
+        OutboundMailbox mailbox = new OutboundMailbox(16, 5000);
+        OutboundFrame   older   = OutboundFrame.of(snapshot());
+        OutboundFrame   newer   = OutboundFrame.of(snapshot());
+        assertTrue(mailbox.offer(older));
+        assertTrue(mailbox.offer(newer));
+        older.release();
+        newer.release();
+        assertEquals(0, older.refCount());
+        assertEquals(1, newer.refCount());
+
+        mailbox.poll().release();
+        assertEquals(0, newer.refCount());
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    void doubleReleaseThrows() {
+        OutboundFrame frame = OutboundFrame.of(new ErrorMessage("раз"));
+        frame.bufferFor(CODEC);
+        frame.release();
+        assertThrows(IllegalStateException.class, frame::release);
+        assertThrows(IllegalStateException.class, frame::retain);
+    }
+
+    @Test
+    void oversizedFrameBypassesPool() {
+        // Огромный список комнат — тот редкий случай, ради которого крупные кадры идут мимо пула.
+        List<RoomInfo> rooms = IntStream.range(0, 2000)
+                .mapToObj(i -> new RoomInfo("room-" + i, "Комната номер " + i, 1, 4, GamePhase.WAITING))
+                .toList();
+        OutboundFrame frame = OutboundFrame.of(new LobbyStateMessage(rooms));
+        try {
+            ByteBuffer buf = frame.bufferFor(CODEC);
+            assertTrue(buf.remaining() > BufferPool.MAX_SIZE);
+            assertFalse(buf.isDirect());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void unreleasedFrameIsReportedByCleaner() throws InterruptedException {
+        Logger              log      = Logger.getLogger(OutboundFrame.class.getName());
+        List<String>        warnings = new CopyOnWriteArrayList<>();
+        Handler             handler  = new Handler() {
+            @Override public void publish(LogRecord record) { warnings.add(record.getMessage()); }
+            @Override public void flush() {}
+            @Override public void close() {}
+        };
+        log.addHandler(handler);
+        try {
+            long leaked = ServerMetrics.framesLeaked();
+            leakFrame();
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            // Поток Cleaner сначала считает утечку, затем пишет в журнал — ждём и то и другое.
+            while ((ServerMetrics.framesLeaked() == leaked || warnings.isEmpty()) && System.nanoTime() < deadline) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertEquals(leaked + 1, ServerMetrics.framesLeaked());
+            assertTrue(warnings.stream().anyMatch(m -> m.startsWith("[Буферы] Кадр ErrorMessage")), warnings::toString);
+        } finally {
+            log.removeHandler(handler);
+        }
+    }
+
+    private static GameStateMessage snapshot() {
+        return new GameStateMessage(List.of(), List.of(), null, null, null);
+    }
+
+    /** Кадр закодирован и забыт без {@link OutboundFrame#release()}. */
+    private static void leakFrame() {
+        OutboundFrame.of(new ErrorMessage("забытый")).bufferFor(CODEC);
+    }
+}